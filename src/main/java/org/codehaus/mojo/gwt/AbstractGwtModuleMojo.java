@@ -20,30 +20,20 @@ package org.codehaus.mojo.gwt;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.mojo.gwt.utils.ClasspathResourceIndex;
 import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
 import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
-import org.codehaus.plexus.util.DirectoryScanner;
-import org.codehaus.plexus.util.ReaderFactory;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.codehaus.mojo.gwt.utils.ModuleDiscovery;
 
 /**
  * Add support for GWT Modules.
@@ -69,6 +59,41 @@ public abstract class AbstractGwtModuleMojo
     @Parameter(property = "gwt.module")
     private String module;
 
+    /**
+     * Directory where the development modules are generated, by the <code>dev-module</code> goal or by the
+     * <code>compile</code> goal with <code>devModule</code> enabled.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/generated-sources/gwt-dev",
+               property = "gwt.devModuleDirectory")
+    private File devModuleDirectory;
+
+    /**
+     * Value of the <code>user.agent</code> property in the development modules. Empty to compile all user agents.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "safari", property = "gwt.devUserAgent")
+    private String devUserAgent;
+
+    /**
+     * Value of the <code>locale</code> property in the development modules. Defaults to the first locale of each
+     * module.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(property = "gwt.devLocale")
+    private String devLocale;
+
+    /**
+     * Whether the development modules collapse all properties, compiling all their values in a single permutation.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.devCollapseAllProperties")
+    private boolean devCollapseAllProperties;
+
     public List<String> getGwtModules()
     {
         String[] modules = getModules();
@@ -90,52 +115,14 @@ public abstract class AbstractGwtModuleMojo
         }
         if ( modules == null )
         {
-            //Use a Set to avoid duplicate when user set src/main/java as <resource>
-            Set<String> mods = new HashSet<String>();
-
-            Collection<String> sourcePaths = getProject().getCompileSourceRoots();
-            for ( String sourcePath : sourcePaths )
-            {
-                File sourceDirectory = new File( sourcePath );
-                if ( sourceDirectory.exists() )
-                {
-                    DirectoryScanner scanner = new DirectoryScanner();
-                    scanner.setBasedir( sourceDirectory.getAbsolutePath() );
-                    scanner.setIncludes( new String[] { "**/*" + DefaultGwtModuleReader.GWT_MODULE_EXTENSION } );
-                    scanner.scan();
-
-                    mods.addAll( Arrays.asList( scanner.getIncludedFiles() ) );
-                }
-            }
-
-            Collection<Resource> resources = getProject().getResources();
-            for ( Resource resource : resources )
-            {
-                File resourceDirectoryFile = new File( resource.getDirectory() );
-                if ( !resourceDirectoryFile.exists() )
-                {
-                    continue;
-                }
-                DirectoryScanner scanner = new DirectoryScanner();
-                scanner.setBasedir( resource.getDirectory() );
-                scanner.setIncludes( new String[] { "**/*" + DefaultGwtModuleReader.GWT_MODULE_EXTENSION } );
-                scanner.scan();
-                mods.addAll( Arrays.asList( scanner.getIncludedFiles() ) );
-            }
+            List<String> mods = ModuleDiscovery.findModules( getProject(), getLog() );
 
             if ( mods.isEmpty() )
             {
                 getLog().warn( "GWT plugin is configured to detect modules, but none were found." );
             }
 
-            modules = new String[mods.size()];
-            int i = 0;
-            for ( String fileName : mods )
-            {
-                String path =
-                    fileName.substring( 0, fileName.length() - DefaultGwtModuleReader.GWT_MODULE_EXTENSION.length() );
-                modules[i++] = path.replace( File.separatorChar, '.' );
-            }
+            modules = mods.toArray( new String[mods.size()] );
             if ( modules.length > 0 )
             {
                 getLog().info( "auto discovered modules " + Arrays.asList( modules ) );
@@ -174,64 +161,44 @@ public abstract class AbstractGwtModuleMojo
 
         try
         {
-            Collection<File> classpath = getClasspath( Artifact.SCOPE_COMPILE );
-            URL[] urls = new URL[classpath.size()];
-            int i = 0;
-            for ( File file : classpath )
-            {
-                urls[i++] = file.toURI().toURL();
-            }
-            InputStream stream = new URLClassLoader( urls ).getResourceAsStream( modulePath );
-            if ( stream != null )
+            ClasspathResourceIndex index = ClasspathResourceIndex.get( getClasspath( Artifact.SCOPE_COMPILE ) );
+            GwtModule module = GwtModuleCache.readModule( session, getProject(), name, index, this );
+            if ( module != null )
             {
-                return readModule( name, stream );
+                return module;
             }
         }
-        catch ( MalformedURLException e )
-        {
-            // ignored;
-        } catch (MojoExecutionException e)
+        catch ( MojoExecutionException e )
         {
-            throw new GwtModuleReaderException(e.getMessage(), e);
+            throw new GwtModuleReaderException( e.getMessage(), e );
         }
 
         throw new GwtModuleReaderException( "GWT Module " + name + " not found in project sources or resources." );
     }
 
-    private GwtModule readModule( String name, File file )
+    /**
+     * @param file the module descriptor, for a module outside of the project sources and resources
+     */
+    protected GwtModule readModule( String name, File file )
         throws GwtModuleReaderException
+    {
+        return GwtModuleCache.readModule( session, getProject(), name, file, this );
+    }
 
+    /**
+     * @return the directory where the development modules are generated
+     */
+    protected File getDevModuleDirectory()
     {
-        try
-        {
-            GwtModule module = readModule( name, new FileInputStream( file ) );
-            module.setSourceFile(file);
-            return module;
-        }
-        catch ( FileNotFoundException e )
-        {
-            throw new GwtModuleReaderException( "Failed to read module file " + file );
-        }
+        return devModuleDirectory;
     }
 
     /**
-     * @param module2
-     * @return
+     * @return a generator of the development modules, as configured by the <code>dev*</code> parameters
      */
-    private GwtModule readModule( String name, InputStream xml )
-        throws GwtModuleReaderException
+    protected DevModuleGenerator createDevModuleGenerator()
     {
-        try
-        {
-            Xpp3Dom dom = Xpp3DomBuilder.build( ReaderFactory.newXmlReader( xml ) );
-            return new GwtModule( name, dom, this );
-        }
-        catch ( Exception e )
-        {
-            String error = "Failed to read module XML file " + xml;
-            getLog().error( error );
-            throw new GwtModuleReaderException( error, e );
-        }
+        return new DevModuleGenerator( devUserAgent, devLocale, devCollapseAllProperties, getLog() );
     }
 
-}
\ No newline at end of file
+}
@@ -47,18 +47,23 @@ import org.apache.maven.project.artifact.MavenMetadataSource;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Abstract Support class for all GWT-related operations.
@@ -78,6 +83,13 @@ public abstract class AbstractGwtMojo
     /** GWT artifacts groupId */
     public static final String GWT_GROUP_ID = "org.gwtproject";
 
+    /**
+     * Resolved plugin artifacts with their dependencies, by Maven session, then by coordinates and repositories, so
+     * that each artifact graph is resolved once per build whatever the number of goals and projects.
+     */
+    private static final Map<MavenSession, Map<String, Collection<Artifact>>> RESOLVED_ARTIFACTS =
+        new WeakHashMap<MavenSession, Map<String, Collection<Artifact>>>();
+
     // --- Some Maven tools ----------------------------------------------------
 
     @Parameter(defaultValue = "${plugin.artifactMap}", required = true, readonly = true)
@@ -162,6 +174,15 @@ public abstract class AbstractGwtMojo
     @Parameter(defaultValue = "false", property = "gwt.gwtSdkFirstInClasspath")
     protected boolean gwtSdkFirstInClasspath;
 
+    /**
+     * File recording the resolved GWT SDK artifacts and explicit plugin dependencies, so that later builds don't have
+     * to resolve them again as long as the recorded files didn't change. Set it to an empty value to always resolve.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-artifacts.lock", property = "gwt.resolutionLockFile")
+    private File resolutionLockFile;
+
     public File getOutputDirectory()
     {
         File out = inplace ? warSourceDirectory : webappDirectory;
@@ -271,8 +292,177 @@ public abstract class AbstractGwtMojo
             if (dependencyKey.equals(artifactId)) return Collections.emptyList();
         }
 
+        Collection<Artifact> artifacts = getPluginArtifacts( artifactId );
+        Collection<File> files = new ArrayList<File>( artifacts.size() );
+        for ( Artifact artifact : artifacts )
+        {
+            files.add( artifact.getFile() );
+        }
+
+        return files;
+    }
+
+    /**
+     * @param artifactId versionless key of a GWT artifact the plugin depends on
+     * @return this artifact of the plugin version, followed by its transitive dependencies
+     * @since 2.12.0
+     */
+    protected Collection<Artifact> getPluginArtifacts( String artifactId ) throws MojoExecutionException
+    {
         Artifact rootArtifact = pluginArtifactMap.get( artifactId );
 
+        StringBuilder key = new StringBuilder( rootArtifact.getId() );
+        key.append( '|' ).append( localRepository.getBasedir() );
+        for ( ArtifactRepository repository : remoteRepositories )
+        {
+            key.append( '|' ).append( repository.getId() ).append( '=' ).append( repository.getUrl() );
+        }
+        synchronized ( RESOLVED_ARTIFACTS )
+        {
+            Map<String, Collection<Artifact>> resolved = RESOLVED_ARTIFACTS.get( session );
+            if ( resolved == null )
+            {
+                resolved = new HashMap<String, Collection<Artifact>>();
+                RESOLVED_ARTIFACTS.put( session, resolved );
+            }
+            Collection<Artifact> artifacts = resolved.get( key.toString() );
+            if ( artifacts == null )
+            {
+                artifacts = readLockedArtifacts( key.toString() );
+                if ( artifacts == null )
+                {
+                    artifacts = resolvePluginArtifacts( rootArtifact );
+                    writeLockedArtifacts( key.toString(), artifacts );
+                }
+                artifacts = Collections.unmodifiableCollection( artifacts );
+                resolved.put( key.toString(), artifacts );
+            }
+            else
+            {
+                getLog().debug( "Reusing resolved dependencies of " + rootArtifact.getId() );
+            }
+            return artifacts;
+        }
+    }
+
+    /**
+     * @return the artifacts recorded in the lock file for this key, or <code>null</code> if there are none or any of
+     *         their files changed
+     */
+    Collection<Artifact> readLockedArtifacts( String key )
+    {
+        if ( !isResolutionLocked() || !resolutionLockFile.isFile() )
+        {
+            return null;
+        }
+        Properties lock = readLockFile();
+        String value = lock.getProperty( key );
+        if ( value == null )
+        {
+            return null;
+        }
+        Collection<Artifact> artifacts = new ArrayList<Artifact>();
+        for ( String line : value.split( "\n" ) )
+        {
+            // groupId:artifactId:type:classifier:version,size,lastModified,path
+            String[] parts = line.split( ",", 4 );
+            String[] coordinates = parts.length == 4 ? parts[0].split( ":", -1 ) : new String[0];
+            if ( coordinates.length != 5 )
+            {
+                return null;
+            }
+            File file = new File( parts[3] );
+            if ( !file.isFile() || !parts[1].equals( String.valueOf( file.length() ) )
+                || !parts[2].equals( String.valueOf( file.lastModified() ) ) )
+            {
+                getLog().debug( "Resolving again GWT artifacts as " + file + " changed" );
+                return null;
+            }
+            Artifact artifact =
+                artifactFactory.createArtifactWithClassifier( coordinates[0], coordinates[1], coordinates[4],
+                                                              coordinates[2],
+                                                              coordinates[3].length() > 0 ? coordinates[3] : null );
+            artifact.setFile( file );
+            artifact.setResolved( true );
+            artifacts.add( artifact );
+        }
+        getLog().debug( "Using GWT artifacts recorded in " + resolutionLockFile );
+        return artifacts;
+    }
+
+    void writeLockedArtifacts( String key, Collection<Artifact> artifacts )
+    {
+        if ( !isResolutionLocked() )
+        {
+            return;
+        }
+        StringBuilder value = new StringBuilder();
+        for ( Artifact artifact : artifacts )
+        {
+            File file = artifact.getFile();
+            if ( file == null || !file.isFile() )
+            {
+                return;
+            }
+            if ( value.length() > 0 )
+            {
+                value.append( '\n' );
+            }
+            value.append( artifact.getGroupId() ).append( ':' ).append( artifact.getArtifactId() ).append( ':' )
+                 .append( artifact.getType() ).append( ':' )
+                 .append( artifact.getClassifier() != null ? artifact.getClassifier() : "" ).append( ':' )
+                 .append( artifact.getVersion() ).append( ',' ).append( file.length() ).append( ',' )
+                 .append( file.lastModified() ).append( ',' ).append( file.getAbsolutePath() );
+        }
+        Properties lock = readLockFile();
+        lock.setProperty( key, value.toString() );
+        resolutionLockFile.getParentFile().mkdirs();
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( resolutionLockFile );
+            lock.store( out, "Resolved GWT artifacts" );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to write " + resolutionLockFile, e );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( out );
+        }
+    }
+
+    private boolean isResolutionLocked()
+    {
+        return resolutionLockFile != null && resolutionLockFile.getPath().length() > 0;
+    }
+
+    private Properties readLockFile()
+    {
+        Properties lock = new Properties();
+        if ( resolutionLockFile.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( resolutionLockFile );
+                lock.load( in );
+            }
+            catch ( IOException e )
+            {
+                lock.clear();
+            }
+            finally
+            {
+                IOUtils.closeQuietly( in );
+            }
+        }
+        return lock;
+    }
+
+    private Collection<Artifact> resolvePluginArtifacts( Artifact rootArtifact ) throws MojoExecutionException
+    {
         ArtifactResolutionResult result;
         try
         {
@@ -295,14 +485,11 @@ public abstract class AbstractGwtMojo
         }
 
         Collection<Artifact> resolved = result.getArtifacts();
-        Collection<File> files = new ArrayList<File>(resolved.size() + 1 );
-        files.add( rootArtifact.getFile() );
-        for ( Artifact artifact : resolved )
-        {
-            files.add( artifact.getFile() );
-        }
+        Collection<Artifact> artifacts = new ArrayList<Artifact>( resolved.size() + 1 );
+        artifacts.add( rootArtifact );
+        artifacts.addAll( resolved );
 
-        return files;
+        return artifacts;
     }
 
     /**
@@ -0,0 +1,294 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * History of the last compilations of each module : estimated and actual number of permutations, duration, time spent
+ * compiling permutations, local workers and peak memory of the compiler. It turns the permutation estimate into real
+ * numbers, to plan the next compilations.
+ * <p>
+ * Runs are stored as a properties file, the most recent first, and only the last {@value #MAX_RUNS} runs of a module
+ * are kept.
+ *
+ * @since 2.12.0
+ */
+public class CompilationHistory
+{
+    private static final int MAX_RUNS = 10;
+
+    private final File file;
+
+    private final Properties runs = new Properties();
+
+    /**
+     * One compilation of a module.
+     */
+    private static class Run
+    {
+        int estimate;
+
+        int permutations;
+
+        long duration;
+
+        long permutationsDuration;
+
+        int workers;
+
+        long peakMemory;
+
+        static Run parse( String value )
+        {
+            String[] fields = value.split( "," );
+            if ( fields.length != 6 )
+            {
+                return null;
+            }
+            try
+            {
+                Run run = new Run();
+                run.estimate = Integer.parseInt( fields[0] );
+                run.permutations = Integer.parseInt( fields[1] );
+                run.duration = Long.parseLong( fields[2] );
+                run.permutationsDuration = Long.parseLong( fields[3] );
+                run.workers = Integer.parseInt( fields[4] );
+                run.peakMemory = Long.parseLong( fields[5] );
+                return run;
+            }
+            catch ( NumberFormatException e )
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return estimate + "," + permutations + "," + duration + "," + permutationsDuration + "," + workers + ","
+                + peakMemory;
+        }
+    }
+
+    public CompilationHistory( File file )
+    {
+        this.file = file;
+        if ( file.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( file );
+                runs.load( in );
+            }
+            catch ( IOException e )
+            {
+                runs.clear();
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Record a successful compilation.
+     *
+     * @param module name of the module
+     * @param estimate number of permutations estimated from the module graph
+     * @param permutations number of permutations actually compiled
+     * @param duration duration of the compilation, in milliseconds
+     * @param permutationsDuration time spent compiling permutations, in milliseconds, or -1 if unknown
+     * @param workers number of permutations compiled concurrently, or 0 if unknown
+     * @param peakMemory peak resident memory of the compiler, in bytes, or -1 if unknown
+     */
+    public synchronized void record( String module, int estimate, int permutations, long duration,
+                                     long permutationsDuration, int workers, long peakMemory )
+    {
+        Run run = new Run();
+        run.estimate = estimate;
+        run.permutations = permutations;
+        run.duration = duration;
+        run.permutationsDuration = permutationsDuration;
+        run.workers = workers;
+        run.peakMemory = peakMemory;
+
+        List<Run> previous = getRuns( module );
+        StringBuilder value = new StringBuilder( run.toString() );
+        for ( int i = 0; i < previous.size() && i < MAX_RUNS - 1; i++ )
+        {
+            value.append( ';' ).append( previous.get( i ) );
+        }
+        runs.setProperty( module, value.toString() );
+    }
+
+    /**
+     * Write the history, to be used by the next builds.
+     */
+    public synchronized void store()
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( file );
+            runs.store( out, "GWT compilation history" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    /**
+     * @return the number of permutations estimated for the last compilation of the module, or -1 if unknown
+     */
+    public synchronized int getLastEstimate( String module )
+    {
+        List<Run> previous = getRuns( module );
+        return previous.isEmpty() ? -1 : previous.get( 0 ).estimate;
+    }
+
+    /**
+     * @return the number of permutations compiled by the last compilation of the module, or -1 if unknown
+     */
+    public synchronized int getLastPermutations( String module )
+    {
+        List<Run> previous = getRuns( module );
+        return previous.isEmpty() ? -1 : previous.get( 0 ).permutations;
+    }
+
+    /**
+     * @param estimate number of permutations estimated from the current module graph
+     * @return the number of permutations compiled by the last compilation with the same estimate, as the module
+     *         graph is probably unchanged, else the estimate
+     */
+    public synchronized int getPermutations( String module, int estimate )
+    {
+        for ( Run run : getRuns( module ) )
+        {
+            if ( run.estimate == estimate )
+            {
+                return run.permutations;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimate the duration of a compilation from the recorded ones, as a fixed cost (startup, precompile and link)
+     * plus the cost of each permutation, permutations being compiled <code>workers</code> at a time.
+     *
+     * @return the estimated duration in milliseconds, or -1 if no compilation was recorded
+     */
+    public synchronized long estimateDuration( String module, int permutations, int workers )
+    {
+        long fixed = 0;
+        long perPermutation = 0;
+        int count = 0;
+        for ( Run run : getRuns( module ) )
+        {
+            if ( run.permutationsDuration < 0 || run.permutations <= 0 )
+            {
+                continue;
+            }
+            fixed += run.duration - run.permutationsDuration;
+            perPermutation += run.permutationsDuration / getRounds( run.permutations, run.workers );
+            count++;
+        }
+        if ( count == 0 )
+        {
+            List<Run> previous = getRuns( module );
+            return previous.isEmpty() ? -1 : previous.get( 0 ).duration;
+        }
+        return ( fixed + perPermutation * getRounds( permutations, workers ) ) / count;
+    }
+
+    /**
+     * @return the highest peak memory, in bytes, recorded for compilations with the same number of workers, else the
+     *         last recorded one, or -1 if unknown
+     */
+    public synchronized long estimatePeakMemory( String module, int workers )
+    {
+        long peak = -1;
+        long last = -1;
+        for ( Run run : getRuns( module ) )
+        {
+            if ( run.peakMemory < 0 )
+            {
+                continue;
+            }
+            if ( last < 0 )
+            {
+                last = run.peakMemory;
+            }
+            if ( run.workers == workers )
+            {
+                peak = Math.max( peak, run.peakMemory );
+            }
+        }
+        return peak >= 0 ? peak : last;
+    }
+
+    /**
+     * @return the number of rounds needed to compile the permutations, <code>workers</code> at a time
+     */
+    private static int getRounds( int permutations, int workers )
+    {
+        int parallel = Math.max( 1, workers );
+        return Math.max( 1, ( permutations + parallel - 1 ) / parallel );
+    }
+
+    private List<Run> getRuns( String module )
+    {
+        List<Run> list = new ArrayList<Run>();
+        String value = runs.getProperty( module );
+        if ( value != null )
+        {
+            for ( String entry : value.split( ";" ) )
+            {
+                Run run = Run.parse( entry );
+                if ( run != null )
+                {
+                    list.add( run );
+                }
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,146 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Derive from a module a development module, compiled as a single permutation for local builds : it inherits the
+ * module, pins the <code>user.agent</code> and <code>locale</code> properties (or collapses all properties), and keeps
+ * the same <code>rename-to</code> so that the output goes to the same directory.
+ * <p>
+ * The module <code>com.example.App</code> gives <code>com.example.AppDev</code>. Files are only written when their
+ * content changes, so that compilation fingerprints stay valid.
+ *
+ * @since 2.12.0
+ */
+public final class DevModuleGenerator
+{
+    private static final String SUFFIX = "Dev";
+
+    private final String userAgent;
+
+    private final String locale;
+
+    private final boolean collapseAllProperties;
+
+    private final Log log;
+
+    /**
+     * @param userAgent value of the <code>user.agent</code> property, or empty to keep all of them
+     * @param locale value of the <code>locale</code> property, or empty for the first one allowed by the module
+     * @param collapseAllProperties whether to compile all property values in a single permutation
+     */
+    public DevModuleGenerator( String userAgent, String locale, boolean collapseAllProperties, Log log )
+    {
+        this.userAgent = userAgent;
+        this.locale = locale;
+        this.collapseAllProperties = collapseAllProperties;
+        this.log = log;
+    }
+
+    /**
+     * @return the name of the development module derived from this module
+     */
+    public static String getName( String module )
+    {
+        return module + SUFFIX;
+    }
+
+    /**
+     * @return the descriptor of the development module derived from this module, in <code>directory</code>
+     */
+    public static File getFile( String module, File directory )
+    {
+        String path = getName( module ).replace( '.', '/' ) + DefaultGwtModuleReader.GWT_MODULE_EXTENSION;
+        return new File( directory, path );
+    }
+
+    /**
+     * Write the development module derived from a module.
+     *
+     * @param directory root directory of the generated modules
+     * @return the descriptor of the development module
+     */
+    public File generate( GwtModule module, File directory )
+        throws GwtModuleReaderException, IOException
+    {
+        Map<String, Set<String>> values = PermutationEstimator.getPropertyValues( module );
+        StringBuilder xml = new StringBuilder( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+        xml.append( "<!-- Generated by gwt-maven-plugin from " ).append( module.getName() )
+           .append( ", do not edit -->\n" );
+        xml.append( "<module rename-to=\"" ).append( escape( module.getPath() ) ).append( "\">\n" );
+        xml.append( "  <inherits name=\"" ).append( escape( module.getName() ) ).append( "\" />\n" );
+        if ( StringUtils.isNotEmpty( userAgent ) )
+        {
+            appendProperty( xml, module, "user.agent", userAgent, values.get( "user.agent" ) );
+        }
+        Set<String> locales = values.get( "locale" );
+        if ( StringUtils.isNotEmpty( locale ) )
+        {
+            appendProperty( xml, module, "locale", locale, locales );
+        }
+        else if ( locales != null && !locales.isEmpty() )
+        {
+            appendProperty( xml, module, "locale", locales.iterator().next(), locales );
+        }
+        if ( collapseAllProperties )
+        {
+            xml.append( "  <collapse-all-properties />\n" );
+        }
+        xml.append( "</module>\n" );
+
+        File file = getFile( module.getName(), directory );
+        if ( file.isFile() && xml.toString().equals( FileUtils.fileRead( file, "UTF-8" ) ) )
+        {
+            log.debug( "GWT development module " + file + " is up to date" );
+            return file;
+        }
+        log.debug( "Writing GWT development module " + file );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", xml.toString() );
+        return file;
+    }
+
+    private void appendProperty( StringBuilder xml, GwtModule module, String name, String value, Set<String> allowed )
+    {
+        if ( allowed != null && !allowed.contains( value ) )
+        {
+            log.warn( "Value " + value + " of " + name + " is not one of " + allowed + " known for module "
+                + module.getName() + ", the GWT compiler may reject it" );
+        }
+        xml.append( "  <set-property name=\"" ).append( name ).append( "\" value=\"" ).append( escape( value ) )
+           .append( "\" />\n" );
+    }
+
+    private static String escape( String value )
+    {
+        return value.replace( "&", "&amp;" ).replace( "\"", "&quot;" ).replace( "<", "&lt;" );
+    }
+}
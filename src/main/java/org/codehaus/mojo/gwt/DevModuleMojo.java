@@ -0,0 +1,78 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+
+/**
+ * Generate for each module a development module compiled as a single permutation, see {@link DevModuleGenerator}.
+ * The <code>compile</code> goal compiles them instead of the modules with <code>devModule</code> enabled.
+ * <p>
+ * The generated directory is not added to the project sources, so that the development modules are not detected as
+ * modules of the project : add it to the classpath of the tools that should use them.
+ *
+ * @since 2.12.0
+ */
+@Mojo(name = "dev-module", defaultPhase = LifecyclePhase.GENERATE_SOURCES,
+      requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class DevModuleMojo
+    extends AbstractGwtModuleMojo
+{
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        if ( "pom".equals( getProject().getPackaging() ) )
+        {
+            getLog().info( "GWT dev-module is skipped" );
+            return;
+        }
+        DevModuleGenerator generator = createDevModuleGenerator();
+        for ( String name : getModules() )
+        {
+            try
+            {
+                File file = generator.generate( readModule( name ), getDevModuleDirectory() );
+                getLog().info( "GWT development module " + DevModuleGenerator.getName( name ) + " generated in "
+                    + file );
+            }
+            catch ( GwtModuleReaderException e )
+            {
+                throw new MojoExecutionException( e.getMessage(), e );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Failed to generate the development module of " + name, e );
+            }
+        }
+    }
+}
@@ -69,6 +69,75 @@ public class GwtModule
         return ( node == null ? "public" : node.getAttribute( "path" ) );
     }
 
+    /**
+     * @return all public paths of this module, defaulting to <code>public</code> as the GWT compiler does
+     */
+    public String[] getPublicPaths()
+    {
+        Xpp3Dom nodes[] = xml.getChildren( "public" );
+        if ( nodes == null || nodes.length == 0 )
+        {
+            return new String[] { "public" };
+        }
+        String[] paths = new String[nodes.length];
+        int i = 0;
+        for ( Xpp3Dom node : nodes )
+        {
+            paths[i++] = node.getAttribute( "path" );
+        }
+        return paths;
+    }
+
+    /**
+     * @return the resource paths of this module, declared with <code>&lt;resource&gt;</code>
+     */
+    public String[] getResourcePaths()
+    {
+        Xpp3Dom nodes[] = xml.getChildren( "resource" );
+        if ( nodes == null )
+        {
+            return new String[0];
+        }
+        String[] paths = new String[nodes.length];
+        int i = 0;
+        for ( Xpp3Dom node : nodes )
+        {
+            paths[i++] = node.getAttribute( "path" );
+        }
+        return paths;
+    }
+
+    /**
+     * @param name element name, for example <code>set-property</code>
+     * @return copies of the elements with this name declared by this module, not the inherited ones
+     */
+    public Xpp3Dom[] getLocalElements( String name )
+    {
+        Xpp3Dom nodes[] = xml.getChildren( name );
+        return nodes == null ? new Xpp3Dom[0] : copy( nodes );
+    }
+
+    /**
+     * @return copies of all elements declared by this module, in document order
+     */
+    public Xpp3Dom[] getLocalElements()
+    {
+        return copy( xml.getChildren() );
+    }
+
+    /**
+     * The descriptor is shared by the modules read from the same file, callers only get copies of its elements.
+     */
+    private static Xpp3Dom[] copy( Xpp3Dom[] nodes )
+    {
+        Xpp3Dom[] copies = new Xpp3Dom[nodes.length];
+        for ( int i = 0; i < nodes.length; i++ )
+        {
+            copies[i] = new Xpp3Dom( nodes[i] );
+        }
+        return copies;
+    }
+
     public String[] getSuperSources()
     {
         Xpp3Dom nodes[] = xml.getChildren( "super-source" );
@@ -137,7 +206,7 @@ public class GwtModule
      * Build the set of inhertied modules. Due to xml inheritence mecanism, there may be cicles in the inheritence
      * graph, so we build a set of inherited modules
      */
-    public Set<GwtModule> getInherits()
+    public synchronized Set<GwtModule> getInherits()
 		throws GwtModuleReaderException
     {
         if ( inherits != null )
@@ -145,9 +214,11 @@ public class GwtModule
             return inherits;
         }
 
-        inherits = new HashSet<GwtModule>();
-        addInheritedModules( inherits, getLocalInherits() );
+        Set<GwtModule> modules = new HashSet<GwtModule>();
+        addInheritedModules( modules, getLocalInherits() );
 
+        // shared by all goals of the project, see GwtModuleCache
+        inherits = Collections.unmodifiableSet( modules );
         return inherits;
     }
 
@@ -244,6 +315,15 @@ public class GwtModule
         return name;
     }
 
+    /**
+     * @return the reader this module reads its inherited modules with
+     * @since 2.12.0
+     */
+    GwtModuleReader getReader()
+    {
+        return reader;
+    }
+
     public File getSourceFile() {
     	return sourceFile;
     }
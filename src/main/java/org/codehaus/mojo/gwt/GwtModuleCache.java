@@ -0,0 +1,244 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.gwt.utils.ClasspathResourceIndex;
+import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+
+/**
+ * Modules read by all goals of all projects of a Maven session, so that a module descriptor is parsed once and the
+ * inheritance graph of a module is built once per project.
+ * <p>
+ * Descriptors are keyed by their identity : path with size and modification time of the file, or of the jar holding
+ * it, so that a changed descriptor is read again, and shared by all projects of the session. Modules, which resolve
+ * their inherited modules from the sources and classpath of a project, are kept by project : the same instance, with
+ * its inherited modules resolved once by the reader that first read it, is handed out to all goals of the project.
+ *
+ * @since 2.12.0
+ */
+public final class GwtModuleCache
+{
+    private static final int MAX_DESCRIPTORS = 4096;
+
+    private static final Map<MavenSession, Map<String, Xpp3Dom>> DESCRIPTORS =
+        new WeakHashMap<MavenSession, Map<String, Xpp3Dom>>();
+
+    private static final String MODULES = GwtModuleCache.class.getName() + ".modules";
+
+    private GwtModuleCache()
+    {
+    }
+
+    /**
+     * @return identity of a module descriptor file
+     */
+    public static String getIdentity( File file )
+    {
+        return file.getAbsolutePath() + "," + file.length() + "," + file.lastModified();
+    }
+
+    /**
+     * @return identity of a module descriptor held by a classpath entry, jar or directory
+     */
+    public static String getIdentity( File entry, String path )
+    {
+        if ( entry.isDirectory() )
+        {
+            return getIdentity( new File( entry, path ) );
+        }
+        return entry.getAbsolutePath() + "!/" + path + "," + entry.length() + "," + entry.lastModified();
+    }
+
+    /**
+     * Read a module from its descriptor file, typically in the project sources or resources.
+     *
+     * @param session the Maven session sharing the parsed descriptors, may be <code>null</code>
+     * @param reader the reader resolving the inherited modules, if the module isn't already known by the project
+     */
+    public static GwtModule readModule( MavenSession session, MavenProject project, String name, File file,
+                                        GwtModuleReader reader )
+        throws GwtModuleReaderException
+    {
+        return readModule( session, project, name, getIdentity( file ), file, null, reader );
+    }
+
+    /**
+     * Read a module from the classpath.
+     *
+     * @param session the Maven session sharing the parsed descriptors, may be <code>null</code>
+     * @param index index of the classpath holding the module descriptor
+     * @param reader the reader resolving the inherited modules, if the module isn't already known by the project
+     * @return the module, or <code>null</code> if the classpath doesn't hold its descriptor
+     */
+    public static GwtModule readModule( MavenSession session, MavenProject project, String name,
+                                        ClasspathResourceIndex index, GwtModuleReader reader )
+        throws GwtModuleReaderException
+    {
+        String modulePath = getModulePath( name );
+        File entry = index.getEntry( modulePath );
+        if ( entry == null )
+        {
+            return null;
+        }
+        return readModule( session, project, name, getIdentity( entry, modulePath ), null, index, reader );
+    }
+
+    /**
+     * @param file the module descriptor file, or <code>null</code> to read it from the classpath index
+     */
+    private static GwtModule readModule( MavenSession session, MavenProject project, String name, String identity,
+                                         File file, ClasspathResourceIndex index, GwtModuleReader reader )
+        throws GwtModuleReaderException
+    {
+        GwtModule module;
+        synchronized ( project )
+        {
+            module = getModules( project ).get( identity );
+        }
+        if ( module != null )
+        {
+            return module;
+        }
+
+        Xpp3Dom dom = getDescriptor( session, identity );
+        if ( dom == null )
+        {
+            dom = readDescriptor( name, file, index );
+            putDescriptor( session, identity, dom );
+        }
+        module = new GwtModule( name, dom, reader );
+        module.setSourceFile( file );
+        synchronized ( project )
+        {
+            // another thread may have read it meanwhile, keep a single instance
+            GwtModule known = getModules( project ).get( identity );
+            if ( known != null )
+            {
+                return known;
+            }
+            getModules( project ).put( identity, module );
+        }
+        return module;
+    }
+
+    private static Xpp3Dom readDescriptor( String name, File file, ClasspathResourceIndex index )
+        throws GwtModuleReaderException
+    {
+        String modulePath = getModulePath( name );
+        InputStream xml = null;
+        try
+        {
+            xml = file != null ? new FileInputStream( file ) : index.getResourceAsStream( modulePath );
+            return Xpp3DomBuilder.build( ReaderFactory.newXmlReader( xml ) );
+        }
+        catch ( FileNotFoundException e )
+        {
+            throw new GwtModuleReaderException( "Failed to read module file " + file );
+        }
+        catch ( Exception e )
+        {
+            throw new GwtModuleReaderException( "Failed to read module XML file "
+                + ( file != null ? file : modulePath ), e );
+        }
+        finally
+        {
+            IOUtil.close( xml );
+        }
+    }
+
+    private static String getModulePath( String name )
+    {
+        return name.replace( '.', '/' ) + DefaultGwtModuleReader.GWT_MODULE_EXTENSION;
+    }
+
+    /**
+     * The module descriptor is never changed by {@link GwtModule}, which only hands out copies of its elements, so it
+     * is shared as is.
+     */
+    private static Xpp3Dom getDescriptor( MavenSession session, String identity )
+    {
+        if ( session == null )
+        {
+            return null;
+        }
+        synchronized ( DESCRIPTORS )
+        {
+            Map<String, Xpp3Dom> descriptors = DESCRIPTORS.get( session );
+            return descriptors != null ? descriptors.get( identity ) : null;
+        }
+    }
+
+    private static void putDescriptor( MavenSession session, String identity, Xpp3Dom descriptor )
+    {
+        if ( session == null )
+        {
+            return;
+        }
+        synchronized ( DESCRIPTORS )
+        {
+            Map<String, Xpp3Dom> descriptors = DESCRIPTORS.get( session );
+            if ( descriptors == null )
+            {
+                descriptors = new LinkedHashMap<String, Xpp3Dom>( 256, 0.75f, true )
+                {
+                    @Override
+                    protected boolean removeEldestEntry( Map.Entry<String, Xpp3Dom> eldest )
+                    {
+                        return size() > MAX_DESCRIPTORS;
+                    }
+                };
+                DESCRIPTORS.put( session, descriptors );
+            }
+            descriptors.put( identity, descriptor );
+        }
+    }
+
+    /**
+     * Modules are kept in the project context, which lives as long as the Maven session : a module read by a goal is
+     * reused by the next ones, but never by another build.
+     */
+    @SuppressWarnings( "unchecked" )
+    private static Map<String, GwtModule> getModules( MavenProject project )
+    {
+        Map<String, GwtModule> modules = (Map<String, GwtModule>) project.getContextValue( MODULES );
+        if ( modules == null )
+        {
+            modules = new HashMap<String, GwtModule>();
+            project.setContextValue( MODULES, modules );
+        }
+        return modules;
+    }
+}
@@ -0,0 +1,315 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Estimate the number of permutations the GWT compiler will build for a module, from the deferred binding properties
+ * declared by the module and the modules it inherits (<code>define-property</code>, <code>extend-property</code>,
+ * <code>set-property</code>, <code>collapse-property</code> and <code>collapse-all-properties</code>).
+ * <p>
+ * Modules are resolved as the GWT compiler does : elements are applied in document order, and an inherited module is
+ * applied where it is first inherited, so a later <code>set-property</code> overrides an earlier one. This is still an
+ * estimate : modules of the GWT SDK are not read, except for {@value #USER_AGENT_MODULE} which defines the
+ * <code>user.agent</code> values of the GWT version in use (the <code>locale</code> property is assumed to only have its
+ * <code>default</code> value), conditional <code>set-property</code> are ignored, and property providers are not run.
+ *
+ * @since 2.12.0
+ */
+public final class PermutationEstimator
+{
+    /** module of gwt-user defining the user.agent property */
+    static final String USER_AGENT_MODULE = "com.google.gwt.useragent.UserAgent";
+
+    /** values of the user.agent property in GWT 2.8, when gwt-user is not in the project dependencies */
+    private static final List<String> USER_AGENTS = Arrays.asList( "ie8", "ie9", "ie10", "gecko1_8", "safari" );
+
+    private PermutationEstimator()
+    {
+    }
+
+    /**
+     * @return the estimated number of permutations of the module, at least 1
+     */
+    public static int estimate( GwtModule module )
+        throws GwtModuleReaderException
+    {
+        long permutations = 1;
+        for ( int factor : getPermutationFactors( module ).values() )
+        {
+            permutations = Math.min( Integer.MAX_VALUE, permutations * factor );
+        }
+        return (int) permutations;
+    }
+
+    /**
+     * @return the allowed values of each deferred binding property, by property name
+     */
+    public static Map<String, Set<String>> getPropertyValues( GwtModule module )
+        throws GwtModuleReaderException
+    {
+        return resolve( module ).getValues();
+    }
+
+    /**
+     * @return the number of distinct permutations each deferred binding property contributes once collapsed values are
+     *         grouped, by property name. The estimated number of permutations is the product of these factors.
+     */
+    public static Map<String, Integer> getPermutationFactors( GwtModule module )
+        throws GwtModuleReaderException
+    {
+        Resolution resolution = resolve( module );
+        Map<String, Integer> factors = new TreeMap<String, Integer>();
+        if ( resolution.collapseAll )
+        {
+            return factors;
+        }
+        for ( Map.Entry<String, Set<String>> property : resolution.getValues().entrySet() )
+        {
+            List<Pattern> collapsed = resolution.collapsed.get( property.getKey() );
+            Set<Object> permutations = new HashSet<Object>();
+            for ( String value : property.getValue() )
+            {
+                permutations.add( getGroup( value, collapsed ) );
+            }
+            factors.put( property.getKey(), Math.max( 1, permutations.size() ) );
+        }
+        return factors;
+    }
+
+    private static Resolution resolve( GwtModule module )
+        throws GwtModuleReaderException
+    {
+        Map<String, GwtModule> inherits = new HashMap<String, GwtModule>();
+        for ( GwtModule inherited : module.getInherits() )
+        {
+            inherits.put( inherited.getName(), inherited );
+        }
+        Resolution resolution = new Resolution();
+        Set<String> applied = new HashSet<String>();
+        GwtModule userAgent = readUserAgentModule( module );
+        if ( userAgent != null )
+        {
+            resolution.apply( userAgent, inherits, applied );
+        }
+        else
+        {
+            resolution.defined.put( "user.agent", new LinkedHashSet<String>( USER_AGENTS ) );
+        }
+        resolution.apply( module, inherits, applied );
+        return resolution;
+    }
+
+    /**
+     * @return the module defining the <code>user.agent</code> property in gwt-user, or <code>null</code> if gwt-user
+     *         can't be found
+     */
+    private static GwtModule readUserAgentModule( GwtModule module )
+    {
+        if ( module.getReader() == null )
+        {
+            return null;
+        }
+        try
+        {
+            return module.getReader().readModule( USER_AGENT_MODULE );
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return the collapse group the value belongs to, or the value itself if it isn't collapsed
+     */
+    private static Object getGroup( String value, List<Pattern> collapsed )
+    {
+        if ( collapsed != null )
+        {
+            for ( Pattern pattern : collapsed )
+            {
+                if ( pattern.matcher( value ).matches() )
+                {
+                    return pattern;
+                }
+            }
+        }
+        return value;
+    }
+
+    private static List<String> split( String values )
+    {
+        List<String> list = new ArrayList<String>();
+        if ( values != null )
+        {
+            for ( String value : values.split( "," ) )
+            {
+                if ( value.trim().length() > 0 )
+                {
+                    list.add( value.trim() );
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Deferred binding properties of a module, as the elements of the inherited graph are applied.
+     */
+    private static class Resolution
+    {
+        /** values declared with define-property and extend-property */
+        private final Map<String, Set<String>> defined = new TreeMap<String, Set<String>>();
+
+        /** values restricted by the last unconditional set-property */
+        private final Map<String, Set<String>> restricted = new HashMap<String, Set<String>>();
+
+        /** collapse-property value patterns */
+        private final Map<String, List<Pattern>> collapsed = new HashMap<String, List<Pattern>>();
+
+        private boolean collapseAll;
+
+        Resolution()
+        {
+            defined.put( "locale", new LinkedHashSet<String>( Arrays.asList( "default" ) ) );
+        }
+
+        void apply( GwtModule module, Map<String, GwtModule> inherits, Set<String> applied )
+            throws GwtModuleReaderException
+        {
+            if ( !applied.add( module.getName() ) )
+            {
+                return;
+            }
+            for ( Xpp3Dom node : module.getLocalElements() )
+            {
+                String element = node.getName();
+                String name = node.getAttribute( "name" );
+                if ( "inherits".equals( element ) )
+                {
+                    // modules of the GWT SDK are not read
+                    GwtModule inherited = inherits.get( name );
+                    if ( inherited != null )
+                    {
+                        apply( inherited, inherits, applied );
+                    }
+                }
+                else if ( "define-property".equals( element ) )
+                {
+                    defined.put( name, new LinkedHashSet<String>( split( node.getAttribute( "values" ) ) ) );
+                    restricted.remove( name );
+                }
+                else if ( "extend-property".equals( element ) )
+                {
+                    Set<String> values = defined.get( name );
+                    if ( values == null )
+                    {
+                        values = new LinkedHashSet<String>();
+                        defined.put( name, values );
+                    }
+                    values.addAll( split( node.getAttribute( "values" ) ) );
+                }
+                else if ( "set-property".equals( element ) && node.getChildCount() == 0 )
+                {
+                    restricted.put( name, new LinkedHashSet<String>( split( node.getAttribute( "value" ) ) ) );
+                }
+                else if ( "collapse-property".equals( element ) )
+                {
+                    List<Pattern> patterns = collapsed.get( name );
+                    if ( patterns == null )
+                    {
+                        patterns = new ArrayList<Pattern>();
+                        collapsed.put( name, patterns );
+                    }
+                    patterns.add( toPattern( node.getAttribute( "values" ) ) );
+                }
+                else if ( "collapse-all-properties".equals( element ) )
+                {
+                    collapseAll = !"false".equals( node.getAttribute( "value" ) );
+                }
+            }
+        }
+
+        Map<String, Set<String>> getValues()
+        {
+            Map<String, Set<String>> values = new TreeMap<String, Set<String>>();
+            for ( Map.Entry<String, Set<String>> property : defined.entrySet() )
+            {
+                Set<String> allowed = new LinkedHashSet<String>( property.getValue() );
+                Set<String> restriction = restricted.get( property.getKey() );
+                if ( restriction != null )
+                {
+                    allowed.retainAll( restriction );
+                    if ( allowed.isEmpty() )
+                    {
+                        // restricted to values defined by a module we don't read
+                        allowed = restriction;
+                    }
+                }
+                values.put( property.getKey(), allowed );
+            }
+            for ( Map.Entry<String, Set<String>> property : restricted.entrySet() )
+            {
+                if ( !values.containsKey( property.getKey() ) )
+                {
+                    values.put( property.getKey(), property.getValue() );
+                }
+            }
+            return values;
+        }
+
+        /**
+         * @param values comma separated values of a collapse-property, where <code>*</code> matches any characters
+         * @return a pattern matching any of the values
+         */
+        private static Pattern toPattern( String values )
+        {
+            StringBuilder regex = new StringBuilder();
+            for ( String value : split( values ) )
+            {
+                if ( regex.length() > 0 )
+                {
+                    regex.append( '|' );
+                }
+                for ( String part : value.split( "\\*", -1 ) )
+                {
+                    regex.append( Pattern.quote( part ) ).append( ".*" );
+                }
+                regex.setLength( regex.length() - 2 );
+            }
+            return Pattern.compile( regex.toString() );
+        }
+    }
+}
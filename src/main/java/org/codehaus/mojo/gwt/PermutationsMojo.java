@@ -0,0 +1,134 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Report the number of permutations each module will produce, with the deferred binding properties they come from,
+ * and estimate the compilation time and memory from the history recorded by the <code>compile</code> goal. Development
+ * modules compiled with <code>devModule</code> are recorded under their own name, and reported with their module.
+ *
+ * @since 2.12.0
+ */
+@Mojo(name = "permutations", requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class PermutationsMojo
+    extends AbstractGwtModuleMojo
+{
+    /**
+     * File where the <code>compile</code> goal records the last compilations of each module.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-compile-history.properties",
+               property = "gwt.compiler.historyFile")
+    private File compileHistoryFile;
+
+    /**
+     * Number of local workers the estimates are computed for. Defaults to platform available processors number.
+     */
+    @Parameter(property = "gwt.compiler.localWorkers")
+    private int localWorkers;
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    public void execute()
+        throws MojoExecutionException, MojoFailureException
+    {
+        int workers = localWorkers > 0 ? localWorkers : Runtime.getRuntime().availableProcessors();
+        CompilationHistory history = new CompilationHistory( compileHistoryFile );
+        try
+        {
+            for ( String name : getModules() )
+            {
+                report( name, history, workers );
+            }
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
+    private void report( String name, CompilationHistory history, int workers )
+        throws GwtModuleReaderException
+    {
+        GwtModule module = readModule( name );
+        int estimate = PermutationEstimator.estimate( module );
+        int permutations = history.getPermutations( name, estimate );
+        getLog().info( "Module " + name + ": " + permutations + " permutation(s)"
+            + ( permutations != estimate ? " (estimated " + estimate + ")" : "" ) );
+
+        Map<String, Set<String>> values = PermutationEstimator.getPropertyValues( module );
+        for ( Map.Entry<String, Integer> factor : PermutationEstimator.getPermutationFactors( module ).entrySet() )
+        {
+            if ( factor.getValue() > 1 )
+            {
+                getLog().info( "  " + factor.getKey() + ": " + factor.getValue() + " ["
+                    + StringUtils.join( values.get( factor.getKey() ).iterator(), ", " ) + "]" );
+            }
+        }
+
+        int lastEstimate = history.getLastEstimate( name );
+        String devName = DevModuleGenerator.getName( name );
+        if ( lastEstimate < 0 )
+        {
+            getLog().info( "  No compilation recorded in " + compileHistoryFile + ", run the compile goal to estimate"
+                + " its duration" );
+        }
+        else
+        {
+            if ( lastEstimate != estimate )
+            {
+                getLog().warn( "  Permutations of " + name + " changed since the last compilation: estimated "
+                    + lastEstimate + " then, " + estimate + " now (" + history.getLastPermutations( name )
+                    + " compiled)" );
+            }
+            reportEstimate( "  Estimated compilation", name, permutations, history, workers );
+        }
+        if ( history.getLastEstimate( devName ) >= 0 )
+        {
+            reportEstimate( "  Estimated compilation of " + devName + " (devModule)", devName,
+                            history.getLastPermutations( devName ), history, workers );
+        }
+    }
+
+    private void reportEstimate( String label, String name, int permutations, CompilationHistory history,
+                                 int workers )
+    {
+        long duration = history.estimateDuration( name, permutations, workers );
+        long memory = history.estimatePeakMemory( name, workers );
+        getLog().info( label + " with " + workers + " local workers: "
+            + String.format( Locale.ENGLISH, "%.1fs", duration / 1000.0 )
+            + ( memory >= 0 ? ", peak memory " + memory / ( 1024 * 1024 ) + "m" : "" ) );
+    }
+}
@@ -0,0 +1,418 @@
+package org.codehaus.mojo.gwt.daemon;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.Properties;
+
+/**
+ * Long-lived JVM running GWT compilations and other tools on behalf of the plugin, so that builds after the first one
+ * don't pay for JVM startup, class loading and JIT warm-up of the compiler.
+ * <p>
+ * The daemon listens on a loopback port and writes this port and a random secret to a handshake file, in a directory
+ * only accessible to the user running the build. Commands are run one at a time, in the daemon JVM, with their output
+ * sent back to the client. The GWT compiler is run through its API; other main classes are invoked with
+ * <code>System.exit</code> turned into their exit status, when the JVM lets us install a security manager. The daemon
+ * exits when idle for too long, or when a command left too much of the heap in use.
+ * <p>
+ * Arguments : handshake file, idle timeout in minutes, maximum percentage of the heap in use after a command, whether
+ * to intercept <code>System.exit</code> (as decided by the client from the version and arguments of the daemon JVM),
+ * and optionally <code>session</code> to exit when the standard input is closed, i.e. when the client JVM exits.
+ *
+ * @since 2.12.0
+ */
+public class CompilerDaemon
+{
+    private static final String COMPILER = "com.google.gwt.dev.Compiler";
+
+    private final File handshake;
+
+    private final int idleTimeout;
+
+    private final int maxHeapUsage;
+
+    private final String secret = new BigInteger( 130, new SecureRandom() ).toString( 32 );
+
+    private boolean exitInterception;
+
+    private boolean shutdown;
+
+    public CompilerDaemon( File handshake, int idleTimeout, int maxHeapUsage, boolean exitInterception )
+    {
+        this.handshake = handshake;
+        this.idleTimeout = idleTimeout;
+        this.maxHeapUsage = maxHeapUsage;
+        this.exitInterception = exitInterception;
+    }
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        CompilerDaemon daemon = new CompilerDaemon( new File( args[0] ), Integer.parseInt( args[1] ),
+                                                    Integer.parseInt( args[2] ), Boolean.parseBoolean( args[3] ) );
+        if ( args.length > 4 && "session".equals( args[4] ) )
+        {
+            daemon.exitWithClient();
+        }
+        daemon.run();
+        // compiler threads may still be alive
+        System.exit( 0 );
+    }
+
+    public void run()
+        throws IOException
+    {
+        exitInterception = exitInterception && ExitInterceptor.install();
+        ServerSocket server = new ServerSocket( 0, 1, InetAddress.getByName( null ) );
+        try
+        {
+            server.setSoTimeout( idleTimeout * 60 * 1000 );
+            writeHandshake( server.getLocalPort() );
+            while ( true )
+            {
+                Socket socket;
+                try
+                {
+                    socket = server.accept();
+                }
+                catch ( SocketTimeoutException e )
+                {
+                    System.out.println( "Idle for " + idleTimeout + " minutes, exiting" );
+                    return;
+                }
+                try
+                {
+                    boolean served = serve( socket );
+                    if ( shutdown )
+                    {
+                        System.out.println( "Superseded by a daemon with an updated classpath, exiting" );
+                        return;
+                    }
+                    if ( served && isHeapExhausted() )
+                    {
+                        System.out.println( "Heap usage over " + maxHeapUsage + "% after command, exiting" );
+                        return;
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // client went away, wait for the next one
+                    e.printStackTrace();
+                }
+                finally
+                {
+                    socket.close();
+                }
+            }
+        }
+        finally
+        {
+            handshake.delete();
+            server.close();
+        }
+    }
+
+    /**
+     * @return true if a command was run
+     */
+    private boolean serve( Socket socket )
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+        if ( !secret.equals( DaemonProtocol.readString( in ) ) )
+        {
+            return false;
+        }
+        String mainClass = DaemonProtocol.readString( in );
+        String[] args = new String[in.readInt()];
+        for ( int i = 0; i < args.length; i++ )
+        {
+            args[i] = DaemonProtocol.readString( in );
+        }
+        if ( DaemonProtocol.SHUTDOWN.equals( mainClass ) )
+        {
+            shutdown = true;
+            DaemonProtocol.writeExit( out, 0 );
+            return false;
+        }
+
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        Charset charset = Charset.defaultCharset();
+        OutputStream compilerOut = new DaemonProtocol.LineOutputStream( out, DaemonProtocol.STDOUT, charset );
+        OutputStream compilerErr = new DaemonProtocol.LineOutputStream( out, DaemonProtocol.STDERR, charset );
+        int status;
+        try
+        {
+            System.setOut( new PrintStream( compilerOut, true ) );
+            System.setErr( new PrintStream( compilerErr, true ) );
+            ExitInterceptor.intercept();
+            status = COMPILER.equals( mainClass ) ? ( compile( args ) ? 0 : 1 ) : runMain( mainClass, args );
+        }
+        catch ( Throwable t )
+        {
+            t.printStackTrace();
+            status = 1;
+        }
+        finally
+        {
+            ExitInterceptor.release();
+            System.out.flush();
+            System.err.flush();
+            System.setOut( stdout );
+            System.setErr( stderr );
+        }
+        compilerOut.close();
+        compilerErr.close();
+        DaemonProtocol.writeExit( out, status );
+        return true;
+    }
+
+    /**
+     * Same as <code>Compiler.main</code>, without the <code>System.exit</code>. The GWT API is used by reflection, as
+     * the daemon runs with the GWT SDK of the project.
+     */
+    private boolean compile( String[] args )
+        throws Exception
+    {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        Class<?> compiler = loader.loadClass( COMPILER );
+        Class<?> optionsType = loader.loadClass( "com.google.gwt.dev.CompilerOptions" );
+        final Object options =
+            loader.loadClass( "com.google.gwt.dev.CompilerOptionsImpl" ).getDeclaredConstructor().newInstance();
+
+        Constructor<?> constructor = loader.loadClass( COMPILER + "$ArgProcessor" ).getDeclaredConstructor( optionsType );
+        constructor.setAccessible( true );
+        Object argProcessor = constructor.newInstance( options );
+        Method processArgs = argProcessor.getClass().getMethod( "processArgs", String[].class );
+        processArgs.setAccessible( true );
+        if ( !(Boolean) invoke( processArgs, argProcessor, (Object) args ) )
+        {
+            return false;
+        }
+
+        final Method compile =
+            compiler.getMethod( "compile", loader.loadClass( "com.google.gwt.core.ext.TreeLogger" ), optionsType );
+        Class<?> taskType = loader.loadClass( "com.google.gwt.dev.CompileTaskRunner$CompileTask" );
+        Object task = Proxy.newProxyInstance( loader, new Class<?>[] { taskType }, new InvocationHandler()
+        {
+            public Object invoke( Object proxy, Method method, Object[] methodArgs )
+                throws Throwable
+            {
+                if ( method.getDeclaringClass() == Object.class )
+                {
+                    return method.invoke( this, methodArgs );
+                }
+                // CompileTask.run( TreeLogger )
+                return CompilerDaemon.invoke( compile, null, methodArgs[0], options );
+            }
+        } );
+        Class<?> runner = loader.loadClass( "com.google.gwt.dev.CompileTaskRunner" );
+        Method run = runner.getMethod( "runWithAppropriateLogger",
+                                       loader.loadClass( "com.google.gwt.dev.CompileTaskOptions" ), taskType );
+        return (Boolean) invoke( run, null, options, task );
+    }
+
+    /**
+     * Run a main class, with <code>System.exit</code> turned into the exit status.
+     */
+    private int runMain( String mainClass, String[] args )
+        throws Exception
+    {
+        if ( !exitInterception )
+        {
+            throw new IllegalStateException( "Can't run " + mainClass + " as System.exit can't be intercepted" );
+        }
+        Method main = Thread.currentThread().getContextClassLoader().loadClass( mainClass )
+            .getMethod( "main", String[].class );
+        try
+        {
+            main.invoke( null, (Object) args );
+            return 0;
+        }
+        catch ( InvocationTargetException e )
+        {
+            Integer status = ExitInterceptor.getStatus( e.getCause() );
+            if ( status != null )
+            {
+                return status;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Exit when the standard input is closed, which happens when the client JVM that started the daemon exits.
+     */
+    private void exitWithClient()
+    {
+        Thread watcher = new Thread( "client-watcher" )
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    while ( System.in.read() >= 0 )
+                    {
+                        // nothing expected
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // closed
+                }
+                handshake.delete();
+                System.exit( 0 );
+            }
+        };
+        watcher.setDaemon( true );
+        watcher.start();
+    }
+
+    private static Object invoke( Method method, Object target, Object... args )
+        throws Exception
+    {
+        try
+        {
+            return method.invoke( target, args );
+        }
+        catch ( InvocationTargetException e )
+        {
+            if ( e.getCause() instanceof Exception )
+            {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private boolean isHeapExhausted()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used * 100 > runtime.maxMemory() * maxHeapUsage;
+    }
+
+    /**
+     * Write the handshake file atomically, so that clients never read a partial one.
+     */
+    private void writeHandshake( int port )
+        throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty( "port", String.valueOf( port ) );
+        properties.setProperty( "secret", secret );
+        properties.setProperty( "exitInterception", String.valueOf( exitInterception ) );
+        restrictToOwner( handshake.getParentFile() );
+        File temp = new File( handshake.getPath() + ".tmp" );
+        createPrivateFile( temp );
+        OutputStream out = new FileOutputStream( temp );
+        try
+        {
+            properties.store( out, "GWT compiler daemon" );
+        }
+        finally
+        {
+            out.close();
+        }
+        handshake.delete();
+        if ( !temp.renameTo( handshake ) )
+        {
+            throw new IOException( "Failed to write " + handshake );
+        }
+    }
+
+    /**
+     * Create a file only readable and writable by its owner, before the secret is written to it.
+     */
+    private static void createPrivateFile( File file )
+        throws IOException
+    {
+        Path path = file.toPath();
+        Files.deleteIfExists( path );
+        if ( isPosix() )
+        {
+            Files.createFile( path,
+                              PosixFilePermissions.asFileAttribute( PosixFilePermissions.fromString( "rw-------" ) ) );
+        }
+        else
+        {
+            Files.createFile( path );
+            restrictToOwner( file );
+        }
+    }
+
+    /**
+     * Make a file or directory only accessible to its owner, as handshake files hold the daemon secrets.
+     */
+    public static void restrictToOwner( File file )
+        throws IOException
+    {
+        if ( isPosix() )
+        {
+            String permissions = file.isDirectory() ? "rwx------" : "rw-------";
+            Files.setPosixFilePermissions( file.toPath(), PosixFilePermissions.fromString( permissions ) );
+            return;
+        }
+        boolean restricted = file.setReadable( false, false ) && file.setReadable( true, true )
+            && file.setWritable( false, false ) && file.setWritable( true, true );
+        if ( file.isDirectory() )
+        {
+            restricted &= file.setExecutable( false, false ) && file.setExecutable( true, true );
+        }
+        if ( !restricted )
+        {
+            throw new IOException( "Failed to restrict access to " + file );
+        }
+    }
+
+    private static boolean isPosix()
+    {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" );
+    }
+}
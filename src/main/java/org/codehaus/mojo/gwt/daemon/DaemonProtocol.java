@@ -0,0 +1,155 @@
+package org.codehaus.mojo.gwt.daemon;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Wire format between the plugin and a {@link CompilerDaemon}. Strings are sent as an int length followed by UTF-8
+ * bytes.
+ * <p>
+ * The client sends the daemon secret, the main class and the arguments (count then values). The daemon answers with
+ * frames made of a type byte and a payload : a line of standard output or error, then the exit status. The
+ * {@link #SHUTDOWN} main class asks the daemon to exit once it acknowledged with an exit status.
+ *
+ * @since 2.12.0
+ */
+public final class DaemonProtocol
+{
+    public static final int STDOUT = 'O';
+
+    public static final int STDERR = 'E';
+
+    public static final int EXIT = 'X';
+
+    /** Main class asking the daemon to exit, as its classpath changed since it started */
+    public static final String SHUTDOWN = "shutdown";
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private DaemonProtocol()
+    {
+    }
+
+    public static void writeString( DataOutputStream out, String value )
+        throws IOException
+    {
+        byte[] bytes = value.getBytes( UTF8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    public static String readString( DataInputStream in )
+        throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, UTF8 );
+    }
+
+    public static void writeLine( DataOutputStream out, int stream, String line )
+        throws IOException
+    {
+        synchronized ( out )
+        {
+            out.writeByte( stream );
+            writeString( out, line );
+            out.flush();
+        }
+    }
+
+    public static void writeExit( DataOutputStream out, int status )
+        throws IOException
+    {
+        synchronized ( out )
+        {
+            out.writeByte( EXIT );
+            out.writeInt( status );
+            out.flush();
+        }
+    }
+
+    /**
+     * An output stream sending each line written to it as a frame, to redirect <code>System.out</code> and
+     * <code>System.err</code> of the daemon to the client.
+     */
+    public static class LineOutputStream
+        extends OutputStream
+    {
+        private final DataOutputStream out;
+
+        private final int stream;
+
+        private final Charset charset;
+
+        private byte[] buffer = new byte[256];
+
+        private int count;
+
+        public LineOutputStream( DataOutputStream out, int stream, Charset charset )
+        {
+            this.out = out;
+            this.stream = stream;
+            this.charset = charset;
+        }
+
+        @Override
+        public synchronized void write( int b )
+            throws IOException
+        {
+            if ( b == '\n' )
+            {
+                sendLine();
+                return;
+            }
+            if ( count == buffer.length )
+            {
+                byte[] larger = new byte[buffer.length * 2];
+                System.arraycopy( buffer, 0, larger, 0, count );
+                buffer = larger;
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public synchronized void close()
+            throws IOException
+        {
+            if ( count > 0 )
+            {
+                sendLine();
+            }
+        }
+
+        private void sendLine()
+            throws IOException
+        {
+            int length = count > 0 && buffer[count - 1] == '\r' ? count - 1 : count;
+            String line = new String( buffer, 0, length, charset );
+            count = 0;
+            writeLine( out, stream, line );
+        }
+    }
+}
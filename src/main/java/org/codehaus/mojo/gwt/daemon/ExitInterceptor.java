@@ -0,0 +1,154 @@
+package org.codehaus.mojo.gwt.daemon;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.security.Permission;
+
+/**
+ * Security manager turning the <code>System.exit</code> calls of commands run in a shared JVM, by a
+ * {@link CompilerDaemon} or in the Maven JVM, into an {@link ExitException}. Only the threads running a command, and
+ * the threads they start, are intercepted.
+ * <p>
+ * The security manager is deprecated for removal, so its use is confined to this class, and it is only installed where
+ * the JVM allows it : before Java 17, or with <code>-Djava.security.manager=allow</code> up to Java 23.
+ *
+ * @since 2.12.0
+ */
+@SuppressWarnings( { "deprecation", "removal" } )
+public final class ExitInterceptor
+    extends SecurityManager
+{
+    private static final InheritableThreadLocal<Boolean> INTERCEPTED = new InheritableThreadLocal<Boolean>();
+
+    private ExitInterceptor()
+    {
+    }
+
+    /**
+     * @param javaVersion major version of the JVM, 0 if unknown
+     * @param securityManager value of the <code>java.security.manager</code> system property of the JVM, or
+     *            <code>null</code>
+     * @return true if <code>System.exit</code> can be intercepted in such a JVM
+     */
+    public static boolean isSupported( int javaVersion, String securityManager )
+    {
+        if ( javaVersion <= 0 || javaVersion >= 24 )
+        {
+            // the security manager is permanently disabled since Java 24
+            return false;
+        }
+        return javaVersion < 17 || "allow".equals( securityManager );
+    }
+
+    /**
+     * @return true if installed, false if the JVM refused it or already has a security manager
+     */
+    public static boolean install()
+    {
+        if ( System.getSecurityManager() != null )
+        {
+            return false;
+        }
+        try
+        {
+            System.setSecurityManager( new ExitInterceptor() );
+            return true;
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            return false;
+        }
+        catch ( SecurityException e )
+        {
+            return false;
+        }
+    }
+
+    public static void uninstall()
+    {
+        if ( System.getSecurityManager() instanceof ExitInterceptor )
+        {
+            System.setSecurityManager( null );
+        }
+    }
+
+    /**
+     * Intercept the <code>System.exit</code> calls of the current thread, and of the threads it starts from now on.
+     */
+    public static void intercept()
+    {
+        INTERCEPTED.set( Boolean.TRUE );
+    }
+
+    public static void release()
+    {
+        INTERCEPTED.remove();
+    }
+
+    @Override
+    public void checkExit( int status )
+    {
+        if ( INTERCEPTED.get() != null )
+        {
+            throw new ExitException( status );
+        }
+    }
+
+    @Override
+    public void checkPermission( Permission perm )
+    {
+        // allowed
+    }
+
+    @Override
+    public void checkPermission( Permission perm, Object context )
+    {
+        // allowed
+    }
+
+    /**
+     * @return the exit status if the command ended with an intercepted <code>System.exit</code>, or <code>null</code>
+     */
+    public static Integer getStatus( Throwable failure )
+    {
+        for ( Throwable cause = failure; cause != null; cause = cause.getCause() )
+        {
+            if ( cause instanceof ExitException )
+            {
+                return ( (ExitException) cause ).status;
+            }
+        }
+        return null;
+    }
+
+    private static class ExitException
+        extends SecurityException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ExitException( int status )
+        {
+            super( "System.exit(" + status + ")" );
+            this.status = status;
+        }
+    }
+}
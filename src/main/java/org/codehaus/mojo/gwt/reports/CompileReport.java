@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Locale;
 
 import org.apache.maven.doxia.siterenderer.Renderer;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -89,6 +90,12 @@ public class CompileReport
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     protected MavenProject project;
 
+    /**
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${session}", required = true, readonly = true)
+    protected MavenSession session;
+
     /**
      * @since 2.1.0-1
      */
@@ -247,7 +254,8 @@ public class CompileReport
         try
         {
 
-            GwtModuleReader gwtModuleReader = new DefaultGwtModuleReader( this.project, getLog(), classpathBuilder );
+            GwtModuleReader gwtModuleReader =
+                new DefaultGwtModuleReader( session, this.project, getLog(), classpathBuilder );
 
             List<GwtModule> gwtModules = new ArrayList<GwtModule>();
             List<String> moduleNames = gwtModuleReader.getGwtModules();
@@ -20,6 +20,7 @@ package org.codehaus.mojo.gwt.shell;
  */
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.ArtifactUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -28,10 +29,14 @@ import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * Support running GWT SDK Tools as forked JVM with classpath set according to project source/resource directories and
@@ -149,6 +154,172 @@ public abstract class AbstractGwtShellMojo
     @Parameter(property = "gwt.persistentunitcachedir")
     private File persistentunitcachedir;
 
+    /**
+     * How the classpath is passed to forked JVMs : <code>env</code> (in the CLASSPATH environment variable),
+     * <code>argfile</code> (in a java @argfile, requires the forked JVM to be Java 9 or later) or <code>jar</code>
+     * (as a pathing jar whose manifest Class-Path references the classpath entries). The last two avoid huge
+     * environment variables with large dependency trees; argument files and jars are created in
+     * <code>classpathDirectory</code> and reused while the classpath doesn't change.
+     * <p>
+     * Can be set from command line using '-Dgwt.classpathMode=...'
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "env", property = "gwt.classpathMode")
+    private String classpathMode;
+
+    /**
+     * Where argument files or pathing jars passing the classpath to forked JVMs are created.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-classpath")
+    private File classpathDirectory;
+
+    /**
+     * Run short-lived GWT tools (<code>I18NSync</code> for the i18n goal, <code>InterfaceGenerator</code> for the css
+     * goal) inside the Maven JVM, in an isolated class loader reused for the whole build, rather than forking a JVM
+     * for each generated file. A JVM is still forked when the tool needs environment variables or system properties,
+     * or when <code>System.exit</code> can't be intercepted (Java 17 to 23 without
+     * <code>-Djava.security.manager=allow</code>, or Java 24 and later). Other JVM arguments from
+     * <code>extraJvmArgs</code> are ignored.
+     * <p>
+     * Can be set from command line using '-Dgwt.inProcess=...'
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.inProcess")
+    private boolean inProcess;
+
+    /**
+     * Read the output of forked processes on dedicated threads into a buffer, instead of logging each line as it is
+     * read. The complete output is written to a compressed file in <code>outputLogDirectory</code>, named after the
+     * goal, and a filtered view is logged : errors and warnings, debug lines when Maven runs with <code>-X</code>,
+     * and other lines up to <code>consoleLinesPerSecond</code>. This prevents the Maven log from slowing down the
+     * GWT compiler with a verbose <code>logLevel</code>. Lines read while the buffer is full are only written to the
+     * file, and counted, except for errors.
+     * <p>
+     * Can be set from command line using '-Dgwt.asyncOutput=...'
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.asyncOutput")
+    private boolean asyncOutput;
+
+    /**
+     * Where the compressed output logs of forked processes (when <code>asyncOutput</code> is enabled) and their resource
+     * usage (when <code>forkTelemetry</code> is enabled) are written.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-output")
+    private File outputLogDirectory;
+
+    /**
+     * Maximum number of informational lines per second of forked processes output sent to the Maven log, when
+     * <code>asyncOutput</code> is enabled. Set to 0 for no limit.
+     * <p>
+     * Can be set from command line using '-Dgwt.consoleLinesPerSecond=...'
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "200", property = "gwt.consoleLinesPerSecond")
+    private int consoleLinesPerSecond;
+
+    /**
+     * Whether the i18n, css, compile and test goals run their commands in warm JVMs kept by the plugin, rather than
+     * forking a new JVM for each of them. This saves JVM startup and class loading of the GWT SDK for every generated
+     * bundle and test class. A pooled JVM is only reused with the same JVM, JVM arguments, system properties and
+     * classpath. Commands other than the compiler need <code>System.exit</code> to be intercepted in the pooled JVM,
+     * which Java 17 to 23 only allow with <code>-Djava.security.manager=allow</code> in <code>extraJvmArgs</code>, and
+     * Java 24 or later not at all; they are forked otherwise. Tests share the static state of the pooled JVM, including the GWT JUnit shell.
+     * <p>
+     * Can be set from command line using '-Dgwt.jvmPool=true'
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.jvmPool")
+    private boolean jvmPool;
+
+    /**
+     * Whether pooled JVMs are kept for later builds, until unused for <code>jvmPoolIdleTimeout</code> minutes. By
+     * default, they are private to the build and exit with it.
+     * <p>
+     * Can be set from command line using '-Dgwt.jvmPoolPersistent=true'
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.jvmPoolPersistent")
+    private boolean jvmPoolPersistent;
+
+    /**
+     * Where pooled JVMs register themselves and write their log. Kept apart from <code>compilerDaemonDirectory</code>, so
+     * that both kinds of JVMs can be cleaned up separately.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/gwt-jvm-pool", property = "gwt.jvmPoolDirectory")
+    private File jvmPoolDirectory;
+
+    /**
+     * Minutes after which an unused pooled JVM exits.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "30", property = "gwt.jvmPoolIdleTimeout")
+    private int jvmPoolIdleTimeout;
+
+    /**
+     * Whether forked JVMs use an application class data sharing archive of the leading jars of their classpath, so
+     * that classes of the GWT SDK are mapped from the archive rather than loaded and verified by each JVM. The archive
+     * is created after the first successful run and recreated when the JDK or the jars change. Requires a forked JVM
+     * running Java 11 or later, and a classpath starting with jars (see <code>gwtSdkFirstInClasspath</code>); ignored
+     * with the <code>jar</code> classpath mode.
+     * <p>
+     * Can be set from command line using '-Dgwt.classDataSharing=true'
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.classDataSharing")
+    private boolean classDataSharing;
+
+    /**
+     * Where class data sharing archives of forked JVMs are created.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/gwt-cds", property = "gwt.classDataSharingDirectory")
+    private File classDataSharingDirectory;
+
+    /**
+     * Whether to measure the processes forked by the goal : wall time, user and system CPU time, peak resident memory
+     * (on Linux) and GC pauses (for Java 9 or later JVMs, from a GC log enabled on them). A summary is logged at the
+     * end of the goal, and the measurements are written to <code>&lt;goal&gt;-telemetry.json</code> in
+     * <code>outputLogDirectory</code>.
+     * <p>
+     * Can be set from command line using '-Dgwt.forkTelemetry=...'
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.forkTelemetry")
+    private boolean forkTelemetry;
+
+    private ForkTelemetry telemetry;
+
+    private OutputPipeline outputPipeline;
+
+    private CompilerDaemons pool;
+
+    private ClasspathPruner classpathPruner;
+
     // methods
 
     /**
@@ -159,7 +330,38 @@ public abstract class AbstractGwtShellMojo
     public final void execute()
         throws MojoExecutionException, MojoFailureException
     {
-        doExecute();
+        if ( forkTelemetry )
+        {
+            telemetry = new ForkTelemetry( outputLogDirectory );
+        }
+        try
+        {
+            doExecute();
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                if ( outputPipeline != null )
+                {
+                    outputPipeline.close();
+                    outputPipeline = null;
+                }
+            }
+            if ( telemetry != null && !telemetry.isEmpty() )
+            {
+                telemetry.logSummary( getLog() );
+                File file = new File( outputLogDirectory, getGoalName() + "-telemetry.json" );
+                try
+                {
+                    telemetry.write( file );
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Failed to write " + file, e );
+                }
+            }
+        }
     }
 
     public abstract void doExecute()
@@ -222,12 +424,134 @@ public abstract class AbstractGwtShellMojo
         this.timeOut = timeOut;
     }
 
+    /**
+     * @return true if short-lived tools should run in the Maven JVM
+     */
+    protected boolean isInProcess()
+    {
+        return inProcess;
+    }
+
+    /**
+     * @return resource usage of the processes forked by the goal, or <code>null</code> if not measured
+     */
+    protected ForkTelemetry getTelemetry()
+    {
+        return telemetry;
+    }
+
+    /**
+     * @return the warm JVMs to run commands in, or <code>null</code> to fork a new JVM for each command
+     */
+    protected synchronized CompilerDaemons getJvmPool()
+    {
+        if ( jvmPool && pool == null )
+        {
+            pool = new CompilerDaemons( jvmPoolDirectory, jvmPoolIdleTimeout, 70, jvmPoolPersistent, getLog() );
+        }
+        return pool;
+    }
+
+    /**
+     * Remove from the command classpath the jars the compiled modules can't use, and write the kept and dropped
+     * entries to <code>&lt;goal&gt;-classpath.txt</code> in <code>outputLogDirectory</code>.
+     */
+    protected void addClasspathPruning( JavaCommand cmd )
+        throws MojoExecutionException
+    {
+        synchronized ( this )
+        {
+            if ( classpathPruner == null )
+            {
+                classpathPruner = new ClasspathPruner( Arrays.asList( getModules() ), getGwtSdkFiles(),
+                                                       new File( outputLogDirectory, getGoalName() + "-classpath.txt" ),
+                                                       getLog() );
+            }
+        }
+        final ClasspathPruner pruner = classpathPruner;
+        cmd.addClassPathProcessors( new ClassPathProcessor()
+        {
+            @Override
+            public void postProcessClassPath( List<File> files )
+            {
+                try
+                {
+                    List<File> pruned = pruner.prune( files );
+                    files.clear();
+                    files.addAll( pruned );
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Failed to analyze the GWT classpath, using the original one", e );
+                }
+            }
+        } );
+    }
+
+    /**
+     * @return the GWT artifacts of the project and the ones it gets from the plugin, with their dependencies
+     */
+    private Set<File> getGwtSdkFiles()
+        throws MojoExecutionException
+    {
+        Set<File> files = new HashSet<File>( getGwtDevJar() );
+        files.addAll( getGwtUserJar() );
+        // the project may declare dependencies of the SDK, nearer than the SDK itself
+        Set<String> keys = new HashSet<String>();
+        for ( String sdk : new String[] { GWT_DEV, GWT_USER } )
+        {
+            for ( Artifact artifact : getPluginArtifacts( sdk ) )
+            {
+                keys.add( ArtifactUtils.versionlessKey( artifact ) );
+            }
+        }
+        for ( Artifact artifact : getProjectArtifacts() )
+        {
+            if ( keys.contains( ArtifactUtils.versionlessKey( artifact ) )
+                || GWT_GROUP_ID.equals( artifact.getGroupId() ) || "com.google.gwt".equals( artifact.getGroupId() ) )
+            {
+                files.add( artifact.getFile() );
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the pipeline shared by all forked processes of this goal execution, created on first use
+     */
+    private synchronized OutputPipeline getOutputPipeline()
+    {
+        if ( outputPipeline == null )
+        {
+            outputPipeline = new OutputPipeline( getLog(), new File( outputLogDirectory, getGoalName() + ".log.gz" ),
+                                                 consoleLinesPerSecond );
+        }
+        return outputPipeline;
+    }
+
+    /**
+     * @return name of the goal, to name its output files
+     */
+    private String getGoalName()
+    {
+        return getClass().getSimpleName().replace( "Mojo", "" ).toLowerCase( Locale.ENGLISH );
+    }
+
     protected JavaCommand createJavaCommand() {
-        return new JavaCommand()
+        JavaCommand cmd = new JavaCommand();
+        if ( asyncOutput )
+        {
+            OutputPipeline pipeline = getOutputPipeline();
+            cmd.setOut( pipeline.getOut() ).setErr( pipeline.getErr() );
+        }
+        return cmd
             .setLog( getLog() )
             .setJvm( getJvm() )
             .setJvmArgs( getJvmArgs() )
             .setTimeOut( timeOut )
+            .setClasspathMode( classpathMode, classpathDirectory )
+            .setClassDataSharing( classDataSharing ? classDataSharingDirectory : null )
+            .setTelemetry( telemetry )
             .addClassPathProcessors( new ClassPathProcessor()
             {
                 @Override
@@ -285,6 +609,14 @@ public abstract class AbstractGwtShellMojo
         }
     }
 
+    /**
+     * @return the directory into which deployable but not servable output files will be written
+     */
+    protected File getDeployDirectory()
+    {
+        return deploy != null ? deploy : new File( getOutputDirectory(), "WEB-INF/deploy" );
+    }
+
     protected void addArgumentDeploy(JavaCommand cmd) {
         if ( deploy != null )
         {
@@ -109,6 +109,8 @@ public class CSSMojo
                         {
                             final StringBuilder content = new StringBuilder();
                             createJavaCommand()
+                                .setInProcess( isInProcess() )
+                                .setDaemons( getJvmPool() )
                                 .setMainClass( "com.google.gwt.resources.css.InterfaceGenerator" )
                                 .addToClasspath( getClasspath( Artifact.SCOPE_COMPILE ) )
                                 .arg( "-standalone" )
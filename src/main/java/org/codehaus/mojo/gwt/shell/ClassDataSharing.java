@@ -0,0 +1,201 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Application Class Data Sharing archives for forked JVMs, so that classes of the GWT SDK and other dependencies are
+ * mapped from an archive rather than loaded and verified again by each JVM.
+ * <p>
+ * The JVM only uses an archive when the classpath starts with the jars it was created from, and can't archive classes
+ * from directories. The archive is then created from the leading jars of the classpath (typically the GWT SDK with
+ * <code>gwtSdkFirstInClasspath</code>) : the first JVM records the classes it loads, then the archive is dumped from
+ * this list once it exited, for use by the next JVMs. Archives are keyed by the JDK and the jars, including their size
+ * and modification time, so that a new JDK or updated dependency gets a new archive.
+ *
+ * @since 2.12.0
+ */
+final class ClassDataSharing
+{
+    /** Archives not used for this many days are removed */
+    private static final long MAX_AGE = 30 * 24 * 60 * 60 * 1000L;
+
+    private final String javaCommand;
+
+    private final List<File> jars;
+
+    private final File archive;
+
+    private final File classList;
+
+    private final File recordedClassList;
+
+    private final Log log;
+
+    private ClassDataSharing( String javaCommand, List<File> jars, File directory, String key, Log log )
+    {
+        this.javaCommand = javaCommand;
+        this.jars = jars;
+        this.archive = new File( directory, key + ".jsa" );
+        this.classList = new File( directory, key + ".classlist" );
+        this.recordedClassList = new File( directory, key + ".classlist.tmp-" + Long.toHexString( System.nanoTime() ) );
+        this.log = log;
+    }
+
+    /**
+     * @param directory where archives are created
+     * @param javaCommand the java executable of the forked JVM
+     * @param classpath classpath of the forked JVM
+     * @return the archive for this JVM and classpath, or <code>null</code> if the JVM doesn't support application class
+     *         data sharing (Java 11 or later is required) or the classpath doesn't start with a jar
+     */
+    static ClassDataSharing get( File directory, String javaCommand, List<File> classpath, Log log )
+    {
+        if ( JavaCommand.getJavaVersion( javaCommand ) < 11 )
+        {
+            log.debug( "No class data sharing, " + javaCommand + " is not Java 11 or later" );
+            return null;
+        }
+
+        List<File> jars = new ArrayList<File>();
+        for ( File entry : classpath )
+        {
+            if ( !entry.isFile() )
+            {
+                break;
+            }
+            jars.add( entry );
+        }
+        if ( jars.isEmpty() )
+        {
+            log.debug( "No class data sharing, the classpath doesn't start with a jar" );
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+        key.append( new File( javaCommand ).getAbsolutePath() ).append( '\n' );
+        key.append( JavaCommand.getJavaRelease( javaCommand ) ).append( '\n' );
+        File modules = new File( JavaCommand.getJavaHome( javaCommand ), "lib/modules" );
+        key.append( modules.length() ).append( ',' ).append( modules.lastModified() ).append( '\n' );
+        for ( File jar : jars )
+        {
+            key.append( jar.getAbsolutePath() ).append( ',' ).append( jar.length() ).append( ',' )
+               .append( jar.lastModified() ).append( '\n' );
+        }
+        return new ClassDataSharing( javaCommand, jars, directory, Digests.digest( key.toString() ), log );
+    }
+
+    /**
+     * @return JVM arguments to use the archive if it exists, or to record the loaded classes to create it
+     */
+    List<String> getJvmArgs()
+    {
+        if ( archive.isFile() )
+        {
+            archive.setLastModified( System.currentTimeMillis() );
+            return Collections.singletonList( "-XX:SharedArchiveFile=" + archive.getAbsolutePath() );
+        }
+        if ( classList.isFile() )
+        {
+            // archive creation failed, don't try again
+            return Collections.emptyList();
+        }
+        archive.getParentFile().mkdirs();
+        return Collections.singletonList( "-XX:DumpLoadedClassList=" + recordedClassList.getAbsolutePath() );
+    }
+
+    /**
+     * Create the archive from the classes recorded by a successful run.
+     */
+    void completed()
+    {
+        if ( !recordedClassList.isFile() )
+        {
+            return;
+        }
+        if ( !recordedClassList.renameTo( classList ) )
+        {
+            // another JVM recorded it meanwhile
+            recordedClassList.delete();
+            return;
+        }
+        deleteUnused();
+
+        File temp = new File( archive.getPath() + ".tmp-" + Long.toHexString( System.nanoTime() ) );
+        Commandline cmd = new Commandline();
+        cmd.setExecutable( javaCommand );
+        cmd.addArguments( new String[] { "-Xshare:dump", "-XX:SharedClassListFile=" + classList.getAbsolutePath(),
+            "-XX:SharedArchiveFile=" + temp.getAbsolutePath(), "-cp", JavaCommand.toPath( jars ) } );
+        final StringBuilder output = new StringBuilder();
+        StreamConsumer consumer = new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                output.append( line ).append( '\n' );
+            }
+        };
+        log.info( "Creating class data sharing archive " + archive.getName() );
+        try
+        {
+            // classes from directories of the classpath are reported as missing, this is expected
+            int status = CommandLineUtils.executeCommandLine( cmd, consumer, consumer );
+            if ( status != 0 || !temp.renameTo( archive ) )
+            {
+                log.warn( "Failed to create class data sharing archive " + archive + ":\n" + output );
+            }
+        }
+        catch ( CommandLineException e )
+        {
+            log.warn( "Failed to create class data sharing archive " + archive, e );
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+
+    private void deleteUnused()
+    {
+        File[] files = archive.getParentFile().listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.lastModified() < System.currentTimeMillis() - MAX_AGE )
+            {
+                log.debug( "Removing unused class data sharing file " + file );
+                file.delete();
+            }
+        }
+    }
+}
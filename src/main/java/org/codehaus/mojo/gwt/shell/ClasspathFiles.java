@@ -0,0 +1,131 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Files passing a classpath to a forked JVM without a huge <code>CLASSPATH</code> environment variable : a java
+ * <code>@argfile</code> (Java 9+) or a pathing jar, whose manifest <code>Class-Path</code> lists the classpath entries.
+ * Files are named after a digest of the classpath, so they are created once and reused while it doesn't change.
+ *
+ * @since 2.12.0
+ */
+final class ClasspathFiles
+{
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private ClasspathFiles()
+    {
+    }
+
+    /**
+     * @return an argument file with the <code>-classpath</code> option
+     */
+    static File getArgFile( File directory, List<File> classpath )
+        throws IOException
+    {
+        String path = JavaCommand.toPath( classpath );
+        File argFile = new File( directory, Digests.digest( path ) + ".args" );
+        if ( !argFile.isFile() )
+        {
+            String quoted = "\"" + path.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) + "\"";
+            write( argFile, ( "-classpath\n" + quoted + "\n" ).getBytes( UTF8 ) );
+        }
+        return argFile;
+    }
+
+    /**
+     * @return a jar whose manifest references the classpath entries
+     */
+    static File getPathingJar( File directory, List<File> classpath )
+        throws IOException
+    {
+        StringBuilder classPath = new StringBuilder();
+        for ( File file : classpath )
+        {
+            String uri = file.getAbsoluteFile().toURI().toASCIIString();
+            // entries not ending with a slash are jars : mark directories, even if they don't exist yet
+            String name = file.getName().toLowerCase( Locale.ENGLISH );
+            if ( !uri.endsWith( "/" ) && !file.isFile() && !name.endsWith( ".jar" ) && !name.endsWith( ".zip" ) )
+            {
+                uri += "/";
+            }
+            if ( classPath.length() > 0 )
+            {
+                classPath.append( ' ' );
+            }
+            classPath.append( uri );
+        }
+        File jar = new File( directory, Digests.digest( classPath.toString() ) + ".jar" );
+        if ( !jar.isFile() )
+        {
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+            manifest.getMainAttributes().put( Attributes.Name.CLASS_PATH, classPath.toString() );
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new JarOutputStream( bytes, manifest ).close();
+            write( jar, bytes.toByteArray() );
+        }
+        return jar;
+    }
+
+    /**
+     * Write the file next to its final location, then rename it, as concurrent builds may create the same file.
+     */
+    private static void write( File file, byte[] content )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+        File temp = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( temp );
+            out.write( content );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        if ( !temp.renameTo( file ) )
+        {
+            FileUtils.forceDelete( temp );
+            if ( !file.isFile() )
+            {
+                throw new IOException( "Failed to create " + file );
+            }
+        }
+    }
+}
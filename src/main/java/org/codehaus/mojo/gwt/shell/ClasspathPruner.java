@@ -0,0 +1,488 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remove from a compiler classpath the jars the GWT compiler has no use for, typically server side libraries.
+ * <p>
+ * A jar is kept when it holds a module of the inheritance graph of the compiled modules, files under the source,
+ * super-source, public or resource paths of these modules, classes reachable from their generators, property
+ * providers and linkers, or classes imported by the GWT sources, like binary-only annotations. Directories, the GWT
+ * SDK and its dependencies are always kept. Classes only referenced with their fully qualified name from GWT sources,
+ * or only loaded by reflection from generators, are not detected.
+ *
+ * @since 2.12.0
+ */
+final class ClasspathPruner
+{
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final Pattern INHERITS = Pattern.compile( "<inherits\\b[^>]*?\\bname\\s*=\\s*\"([^\"]+)\"" );
+
+    private static final Pattern GENERATOR =
+        Pattern.compile( "<(?:generate-with|define-linker)\\b[^>]*?\\bclass\\s*=\\s*\"([^\"]+)\"" );
+
+    private static final Pattern PROPERTY_PROVIDER =
+        Pattern.compile( "<property-provider\\b[^>]*?\\bgenerator\\s*=\\s*\"([^\"]+)\"" );
+
+    private static final Pattern PATH_ELEMENT = Pattern.compile( "<(source|super-source|public|resource)\\b([^>]*)>" );
+
+    private static final Pattern PATH_ATTRIBUTE = Pattern.compile( "\\bpath\\s*=\\s*\"([^\"]*)\"" );
+
+    private static final Pattern IMPORT =
+        Pattern.compile( "\\bimport\\s+(?:static\\s+)?([\\w.]+?)(\\.\\*)?\\s*;" );
+
+    private final Collection<String> modules;
+
+    private final Set<File> sdk;
+
+    private final File report;
+
+    private final Log log;
+
+    private final Map<List<File>, List<File>> results = new HashMap<List<File>, List<File>>();
+
+    /**
+     * @param modules the compiled modules
+     * @param sdk jars of the GWT SDK and its dependencies, always kept
+     * @param report file to write the kept and dropped entries to
+     * @param log plugin logger
+     */
+    ClasspathPruner( Collection<String> modules, Collection<File> sdk, File report, Log log )
+    {
+        this.modules = modules;
+        this.sdk = new HashSet<File>( sdk );
+        this.report = report;
+        this.log = log;
+    }
+
+    /**
+     * @return the classpath without the jars unused by the compiled modules
+     */
+    synchronized List<File> prune( List<File> classpath )
+        throws IOException
+    {
+        List<File> result = results.get( classpath );
+        if ( result == null )
+        {
+            long start = System.currentTimeMillis();
+            result = build( classpath );
+            log.debug( "Analyzed GWT classpath in " + ( System.currentTimeMillis() - start ) + "ms" );
+            results.put( new ArrayList<File>( classpath ), result );
+        }
+        return result;
+    }
+
+    private List<File> build( List<File> classpath )
+        throws IOException
+    {
+        // resource name -> classpath entry, first one wins as for the class loader
+        Map<String, File> resources = new HashMap<String, File>();
+        // package directory -> classpath entries holding classes of this package
+        Map<String, Set<File>> packages = new HashMap<String, Set<File>>();
+        for ( File entry : classpath )
+        {
+            if ( entry.isDirectory() )
+            {
+                scanDirectory( entry, "", entry, resources, packages );
+            }
+            else if ( entry.isFile() )
+            {
+                scanJar( entry, resources, packages );
+            }
+        }
+
+        Map<File, Set<String>> reasons = new HashMap<File, Set<String>>();
+        Set<String> paths = new HashSet<String>();
+        Deque<String> classes = new ArrayDeque<String>();
+        Map<File, ZipFile> jars = new HashMap<File, ZipFile>();
+        try
+        {
+            Deque<String> queue = new ArrayDeque<String>( modules );
+            Set<String> visited = new HashSet<String>();
+            while ( !queue.isEmpty() )
+            {
+                String module = queue.pop();
+                if ( !visited.add( module ) )
+                {
+                    continue;
+                }
+                String descriptor = module.replace( '.', '/' ) + ".gwt.xml";
+                File entry = resources.get( descriptor );
+                if ( entry == null )
+                {
+                    if ( modules.contains( module ) )
+                    {
+                        log.warn( "Module " + module + " not found, the GWT classpath is left unchanged" );
+                        return classpath;
+                    }
+                    // the compiler will report it
+                    continue;
+                }
+                addReason( reasons, entry, "module " + module );
+                String content = new String( read( entry, descriptor, jars ), UTF8 );
+                Matcher inherits = INHERITS.matcher( content );
+                while ( inherits.find() )
+                {
+                    queue.push( inherits.group( 1 ).trim() );
+                }
+                addPaths( descriptor.substring( 0, descriptor.lastIndexOf( '/' ) + 1 ), content, paths );
+                for ( Pattern pattern : new Pattern[] { GENERATOR, PROPERTY_PROVIDER } )
+                {
+                    Matcher matcher = pattern.matcher( content );
+                    while ( matcher.find() )
+                    {
+                        classes.push( matcher.group( 1 ).trim().replace( '.', '/' ) );
+                    }
+                }
+            }
+
+            for ( Map.Entry<String, File> resource : resources.entrySet() )
+            {
+                String name = resource.getKey();
+                String path = getPath( name, paths );
+                if ( path == null )
+                {
+                    continue;
+                }
+                File entry = resource.getValue();
+                addReason( reasons, entry, "files under " + path );
+                if ( name.endsWith( ".java" ) && !sdk.contains( entry ) )
+                {
+                    addImports( new String( read( entry, name, jars ), UTF8 ), resources, packages, paths, classes,
+                                reasons );
+                }
+            }
+
+            // classes used by generators and linkers, and the ones they use, across the whole classpath
+            Set<String> reachable = new HashSet<String>();
+            while ( !classes.isEmpty() )
+            {
+                String name = classes.pop();
+                File entry = resources.get( name + ".class" );
+                if ( entry == null || !reachable.add( name ) )
+                {
+                    continue;
+                }
+                addReason( reasons, entry, "classes used at compile time" );
+                if ( sdk.contains( entry ) )
+                {
+                    // SDK classes don't reference dependencies
+                    continue;
+                }
+                for ( String reference : SlimClasspath.getReferences( read( entry, name + ".class", jars ) ) )
+                {
+                    if ( !reachable.contains( reference ) )
+                    {
+                        classes.push( reference );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            for ( ZipFile jar : jars.values() )
+            {
+                jar.close();
+            }
+        }
+
+        List<File> result = new ArrayList<File>( classpath.size() );
+        Map<File, String> dropped = new LinkedHashMap<File, String>();
+        StringBuilder content = new StringBuilder();
+        for ( File entry : classpath )
+        {
+            Set<String> reason = reasons.get( entry );
+            if ( entry.isFile() && !sdk.contains( entry ) && reason == null )
+            {
+                dropped.put( entry, entry.getName() );
+                content.append( "dropped " ).append( entry.getAbsolutePath() ).append( '\n' );
+                continue;
+            }
+            result.add( entry );
+            content.append( "kept    " ).append( entry.getAbsolutePath() );
+            if ( sdk.contains( entry ) )
+            {
+                content.append( " : GWT SDK" );
+            }
+            else if ( reason != null )
+            {
+                content.append( " : " ).append( reason.iterator().next() );
+                if ( reason.size() > 1 )
+                {
+                    content.append( " and " ).append( reason.size() - 1 ).append( " more" );
+                }
+            }
+            content.append( '\n' );
+        }
+        report.getParentFile().mkdirs();
+        FileUtils.fileWrite( report.getAbsolutePath(), "UTF-8", content.toString() );
+        if ( !dropped.isEmpty() )
+        {
+            log.info( "Dropped " + dropped.size() + " of " + classpath.size() + " GWT classpath entries unused by "
+                + modules + ", see " + report );
+            log.debug( "Dropped " + dropped.values() );
+        }
+        return result;
+    }
+
+    /**
+     * Register the source, super-source, public and resource paths of a module, as directory prefixes.
+     */
+    private static void addPaths( String modulePackage, String descriptor, Set<String> paths )
+    {
+        boolean source = false;
+        boolean publicPath = false;
+        Matcher element = PATH_ELEMENT.matcher( descriptor );
+        while ( element.find() )
+        {
+            String type = element.group( 1 );
+            Matcher attribute = PATH_ATTRIBUTE.matcher( element.group( 2 ) );
+            String path = attribute.find() ? attribute.group( 1 ) : "";
+            addPath( modulePackage, path, paths );
+            source |= "source".equals( type );
+            publicPath |= "public".equals( type );
+        }
+        // defaults of the GWT compiler
+        if ( !source )
+        {
+            addPath( modulePackage, "client", paths );
+        }
+        if ( !publicPath )
+        {
+            addPath( modulePackage, "public", paths );
+        }
+    }
+
+    private static void addPath( String modulePackage, String path, Set<String> paths )
+    {
+        path = path.trim().replace( '\\', '/' );
+        while ( path.startsWith( "/" ) )
+        {
+            path = path.substring( 1 );
+        }
+        paths.add( path.length() == 0 || path.endsWith( "/" ) ? modulePackage + path : modulePackage + path + "/" );
+    }
+
+    /**
+     * @return the registered path holding this resource, or <code>null</code>
+     */
+    private static String getPath( String name, Set<String> paths )
+    {
+        if ( paths.contains( "" ) )
+        {
+            return "";
+        }
+        for ( int i = name.indexOf( '/' ); i > 0; i = name.indexOf( '/', i + 1 ) )
+        {
+            String path = name.substring( 0, i + 1 );
+            if ( paths.contains( path ) )
+            {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keep the entries holding the classes imported by a GWT source file, and follow the references of the ones not
+     * compiled from sources.
+     */
+    private static void addImports( String source, Map<String, File> resources, Map<String, Set<File>> packages,
+                                    Set<String> paths, Deque<String> classes, Map<File, Set<String>> reasons )
+    {
+        Matcher matcher = IMPORT.matcher( source );
+        while ( matcher.find() )
+        {
+            String[] segments = matcher.group( 1 ).split( "\\." );
+            if ( matcher.group( 2 ) != null )
+            {
+                Set<File> entries = packages.get( join( segments, segments.length ) + "/" );
+                if ( entries != null )
+                {
+                    for ( File entry : entries )
+                    {
+                        addReason( reasons, entry, "classes imported by GWT sources" );
+                    }
+                }
+            }
+            // the longest prefix naming a class is the top level class, the rest are nested classes or members
+            for ( int i = segments.length; i > 0; i-- )
+            {
+                String name = join( segments, i );
+                File entry = resources.get( name + ".class" );
+                if ( entry != null )
+                {
+                    addReason( reasons, entry, "classes imported by GWT sources" );
+                    if ( getPath( name, paths ) == null )
+                    {
+                        classes.push( name );
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private static String join( String[] segments, int length )
+    {
+        StringBuilder name = new StringBuilder();
+        for ( int i = 0; i < length; i++ )
+        {
+            if ( i > 0 )
+            {
+                name.append( '/' );
+            }
+            name.append( segments[i] );
+        }
+        return name.toString();
+    }
+
+    private static void addReason( Map<File, Set<String>> reasons, File entry, String reason )
+    {
+        Set<String> entryReasons = reasons.get( entry );
+        if ( entryReasons == null )
+        {
+            entryReasons = new LinkedHashSet<String>();
+            reasons.put( entry, entryReasons );
+        }
+        entryReasons.add( reason );
+    }
+
+    private static void scanJar( File file, Map<String, File> resources, Map<String, Set<File>> packages )
+        throws IOException
+    {
+        ZipFile jar = new ZipFile( file );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = jar.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( !entry.isDirectory() )
+                {
+                    addResource( entry.getName(), file, resources, packages );
+                }
+            }
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+    private static void scanDirectory( File dir, String path, File root, Map<String, File> resources,
+                                       Map<String, Set<File>> packages )
+    {
+        File[] files = dir.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            String name = path + file.getName();
+            if ( file.isDirectory() )
+            {
+                scanDirectory( file, name + "/", root, resources, packages );
+            }
+            else
+            {
+                addResource( name, root, resources, packages );
+            }
+        }
+    }
+
+    private static void addResource( String name, File entry, Map<String, File> resources,
+                                     Map<String, Set<File>> packages )
+    {
+        if ( !resources.containsKey( name ) )
+        {
+            resources.put( name, entry );
+        }
+        if ( name.endsWith( ".class" ) )
+        {
+            String packageName = name.substring( 0, name.lastIndexOf( '/' ) + 1 );
+            Set<File> entries = packages.get( packageName );
+            if ( entries == null )
+            {
+                entries = new HashSet<File>();
+                packages.put( packageName, entries );
+            }
+            entries.add( entry );
+        }
+    }
+
+    private static byte[] read( File entry, String name, Map<File, ZipFile> jars )
+        throws IOException
+    {
+        InputStream in;
+        if ( entry.isDirectory() )
+        {
+            in = new FileInputStream( new File( entry, name ) );
+        }
+        else
+        {
+            ZipFile jar = jars.get( entry );
+            if ( jar == null )
+            {
+                jar = new ZipFile( entry );
+                jars.put( entry, jar );
+            }
+            in = jar.getInputStream( jar.getEntry( name ) );
+        }
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtil.copy( in, out );
+            return out.toByteArray();
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local content addressed cache of GWT compiler outputs, shared by all projects of the machine.
+ * <p>
+ * Each entry is a directory named after the digest of the compilation inputs, holding one sub-directory per output
+ * (the module directory in the webapp, extra and deploy directories). Entries are written to a temporary directory
+ * and renamed once complete, so that concurrent builds never see a partial entry. Least recently used entries are
+ * evicted when the cache grows over its maximum size.
+ *
+ * @since 2.12.0
+ */
+public class CompilationCache
+{
+    /** Marker file of a complete entry, holding its size. Its modification time is the last time the entry was used. */
+    private static final String MARKER = ".complete";
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final Log log;
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public CompilationCache( File directory, long maxSize, Log log )
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Restore the outputs of a previous compilation with the same inputs.
+     *
+     * @param key digest of the compilation inputs
+     * @param outputs output directories, by name
+     * @return true if the outputs were restored from the cache
+     */
+    public boolean restore( String key, Map<String, File> outputs )
+    {
+        File entry = new File( directory, key );
+        File marker = new File( entry, MARKER );
+        if ( !marker.isFile() )
+        {
+            misses.incrementAndGet();
+            return false;
+        }
+        try
+        {
+            for ( Map.Entry<String, File> output : outputs.entrySet() )
+            {
+                File cached = new File( entry, output.getKey() );
+                FileUtils.deleteDirectory( output.getValue() );
+                if ( cached.isDirectory() )
+                {
+                    FileUtils.copyDirectoryStructure( cached, output.getValue() );
+                }
+            }
+            marker.setLastModified( System.currentTimeMillis() );
+            hits.incrementAndGet();
+            return true;
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to restore GWT compilation output from " + entry, e );
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Store the outputs of a successful compilation.
+     *
+     * @param key digest of the compilation inputs
+     * @param outputs output directories, by name
+     */
+    public void store( String key, Map<String, File> outputs )
+    {
+        File entry = new File( directory, key );
+        if ( new File( entry, MARKER ).isFile() )
+        {
+            return;
+        }
+        File temp = new File( directory, key + ".tmp-" + Long.toHexString( System.nanoTime() ) );
+        try
+        {
+            long size = 0;
+            for ( Map.Entry<String, File> output : outputs.entrySet() )
+            {
+                if ( output.getValue().isDirectory() )
+                {
+                    File cached = new File( temp, output.getKey() );
+                    FileUtils.copyDirectoryStructure( output.getValue(), cached );
+                    size += FileUtils.sizeOfDirectory( cached );
+                }
+            }
+            temp.mkdirs();
+            FileUtils.fileWrite( new File( temp, MARKER ).getAbsolutePath(), "UTF-8", String.valueOf( size ) );
+            if ( !temp.renameTo( entry ) )
+            {
+                // another build stored the same entry meanwhile
+                FileUtils.deleteDirectory( temp );
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to store GWT compilation output in " + entry, e );
+            try
+            {
+                FileUtils.deleteDirectory( temp );
+            }
+            catch ( IOException ignored )
+            {
+                // will be removed by eviction
+            }
+        }
+    }
+
+    /**
+     * Remove least recently used entries until the cache size is under its maximum.
+     */
+    public synchronized void evict()
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        List<File> entries = new ArrayList<File>();
+        long size = 0;
+        for ( File entry : files )
+        {
+            File marker = new File( entry, MARKER );
+            if ( marker.isFile() )
+            {
+                entries.add( entry );
+                size += getSize( marker );
+            }
+            else if ( entry.getName().contains( ".tmp-" )
+                && entry.lastModified() < System.currentTimeMillis() - 24 * 60 * 60 * 1000L )
+            {
+                // leftover of an interrupted build
+                deleteEntry( entry );
+            }
+        }
+        if ( size <= maxSize )
+        {
+            return;
+        }
+        Collections.sort( entries, new Comparator<File>()
+        {
+            public int compare( File o1, File o2 )
+            {
+                long m1 = new File( o1, MARKER ).lastModified();
+                long m2 = new File( o2, MARKER ).lastModified();
+                return m1 < m2 ? -1 : ( m1 == m2 ? 0 : 1 );
+            }
+        } );
+        for ( File entry : entries )
+        {
+            if ( size <= maxSize )
+            {
+                break;
+            }
+            size -= getSize( new File( entry, MARKER ) );
+            log.debug( "Evicting GWT compilation cache entry " + entry.getName() );
+            deleteEntry( entry );
+        }
+    }
+
+    public int getHits()
+    {
+        return hits.get();
+    }
+
+    public int getMisses()
+    {
+        return misses.get();
+    }
+
+    private long getSize( File marker )
+    {
+        try
+        {
+            return Long.parseLong( FileUtils.fileRead( marker, "UTF-8" ).trim() );
+        }
+        catch ( IOException e )
+        {
+            return 0;
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    private void deleteEntry( File entry )
+    {
+        // remove the marker first, so that the entry can't be used while being deleted
+        new File( entry, MARKER ).delete();
+        try
+        {
+            FileUtils.deleteDirectory( entry );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to delete GWT compilation cache entry " + entry, e );
+        }
+    }
+}
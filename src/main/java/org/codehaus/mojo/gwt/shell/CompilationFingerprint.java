@@ -0,0 +1,277 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Content based fingerprint of the inputs of a GWT compilation, persisted as a manifest so that a later build can tell
+ * whether any of them changed.
+ * <p>
+ * Inputs are registered under a logical name (typically a path relative to the project base directory) so that the
+ * fingerprint doesn't depend on where the project is checked out. File contents are hashed, but the hash recorded in
+ * the previous manifest is reused when the size and modification time of a file didn't change, so only modified files
+ * are actually read.
+ *
+ * @since 2.12.0
+ */
+public class CompilationFingerprint
+{
+    private static final String DIGEST = "digest";
+
+    private static final String FILE_PREFIX = "file.";
+
+    private static final String VALUE_PREFIX = "value.";
+
+    private static final String MISSING = "-";
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private final File manifest;
+
+    private final Properties previous = new Properties();
+
+    /** input name -> stamp (size,lastModified) of files, or null for values */
+    private final Map<String, String> stamps = new TreeMap<String, String>();
+
+    /** input name -> content hash or value */
+    private final SortedMap<String, String> entries = new TreeMap<String, String>();
+
+    public CompilationFingerprint( File manifest )
+    {
+        this.manifest = manifest;
+        if ( manifest.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( manifest );
+                previous.load( in );
+            }
+            catch ( IOException e )
+            {
+                previous.clear();
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    public File getManifest()
+    {
+        return manifest;
+    }
+
+    /**
+     * Register the content of a file. A missing file is recorded as such, so that its later creation is detected.
+     *
+     * @param name logical name of the input
+     * @param file the file to hash
+     */
+    public void addFile( String name, File file )
+        throws IOException
+    {
+        String key = FILE_PREFIX + name;
+        if ( entries.containsKey( key ) )
+        {
+            return;
+        }
+        if ( !file.isFile() )
+        {
+            entries.put( key, MISSING );
+            return;
+        }
+        String stamp = file.length() + "," + file.lastModified();
+        String recorded = previous.getProperty( key );
+        String hash;
+        if ( recorded != null && recorded.startsWith( stamp + "," ) )
+        {
+            hash = recorded.substring( stamp.length() + 1 );
+        }
+        else
+        {
+            hash = Digests.digest( file );
+        }
+        stamps.put( key, stamp );
+        entries.put( key, hash );
+    }
+
+    /**
+     * Register the content of all files in a directory tree.
+     *
+     * @param name logical name of the directory, used as prefix for the files names
+     * @param directory the directory to walk
+     */
+    public void addDirectory( String name, File directory )
+        throws IOException
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            String fileName = name + "/" + file.getName();
+            if ( file.isDirectory() )
+            {
+                addDirectory( fileName, file );
+            }
+            else
+            {
+                addFile( fileName, file );
+            }
+        }
+    }
+
+    /**
+     * Register a non-file input, like a compiler argument.
+     */
+    public void addValue( String name, String value )
+    {
+        entries.put( VALUE_PREFIX + name, value );
+    }
+
+    /**
+     * @return true if the file registered under this name has the same content as recorded in the previous manifest
+     */
+    public boolean isUnchanged( String name )
+    {
+        String key = FILE_PREFIX + name;
+        String hash = entries.get( key );
+        String recorded = previous.getProperty( key );
+        return hash != null && recorded != null && recorded.endsWith( "," + hash );
+    }
+
+    /**
+     * @return the value registered under this name in the previous manifest, or <code>null</code>
+     */
+    public String getRecordedValue( String name )
+    {
+        return previous.getProperty( VALUE_PREFIX + name );
+    }
+
+    /**
+     * Register all inputs from another fingerprint, typically the ones shared by all modules.
+     */
+    public void addAll( CompilationFingerprint fingerprint )
+    {
+        stamps.putAll( fingerprint.stamps );
+        entries.putAll( fingerprint.entries );
+    }
+
+    /**
+     * @return the digest of all registered inputs, which only depends on input names and contents
+     */
+    public String getDigest()
+    {
+        MessageDigest digest = Digests.newDigest();
+        for ( Map.Entry<String, String> entry : entries.entrySet() )
+        {
+            digest.update( entry.getKey().getBytes( UTF8 ) );
+            digest.update( (byte) 0 );
+            digest.update( entry.getValue().getBytes( UTF8 ) );
+            digest.update( (byte) 0 );
+        }
+        return Digests.toHex( digest.digest() );
+    }
+
+    /**
+     * @return true if the previous manifest recorded exactly the same inputs
+     */
+    public boolean isUpToDate()
+    {
+        return getDigest().equals( previous.getProperty( DIGEST ) );
+    }
+
+    /**
+     * @return the names of the inputs that were added, removed or changed since the previous manifest
+     */
+    public List<String> getChangedInputs()
+    {
+        List<String> changed = new ArrayList<String>();
+        for ( Map.Entry<String, String> entry : entries.entrySet() )
+        {
+            String recorded = previous.getProperty( entry.getKey() );
+            if ( recorded != null && entry.getKey().startsWith( FILE_PREFIX ) )
+            {
+                // strip the size,lastModified stamp
+                recorded = recorded.substring( recorded.lastIndexOf( ',' ) + 1 );
+            }
+            if ( !entry.getValue().equals( recorded ) )
+            {
+                changed.add( entry.getKey() );
+            }
+        }
+        for ( String key : previous.stringPropertyNames() )
+        {
+            if ( !DIGEST.equals( key ) && !entries.containsKey( key ) )
+            {
+                changed.add( key );
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Write the manifest, to be used as reference by the next build.
+     */
+    public void store()
+        throws IOException
+    {
+        Properties properties = new Properties();
+        for ( Map.Entry<String, String> entry : entries.entrySet() )
+        {
+            String stamp = stamps.get( entry.getKey() );
+            properties.setProperty( entry.getKey(),
+                                    stamp == null ? entry.getValue() : stamp + "," + entry.getValue() );
+        }
+        properties.setProperty( DIGEST, getDigest() );
+
+        manifest.getParentFile().mkdirs();
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( manifest );
+            properties.store( out, "GWT compilation inputs" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.gwt.CompilationHistory;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Timings of the phases of GWT compilations : JVM startup, module load, precompile, compilation of each permutation
+ * and link. Phases are recognized from the compiler output, or recorded directly when stages run as separate
+ * processes. Timings are written as JSON and summarized in the build log.
+ *
+ * @since 2.12.0
+ */
+public class CompilationTimings
+{
+    static final String STARTUP = "startup";
+
+    static final String MODULE_LOAD = "moduleLoad";
+
+    static final String PRECOMPILE = "precompile";
+
+    static final String PERMUTATIONS = "compilePermutations";
+
+    static final String LINK = "link";
+
+    private static final Pattern COMPILING_MODULE = Pattern.compile( "Compiling module (\\S+)" );
+
+    private static final Pattern LOADING_MODULE = Pattern.compile( "Loading inherited module .*" );
+
+    private static final Pattern COMPILING_PERMUTATIONS = Pattern.compile( "Compiling (\\d+) permutations?" );
+
+    private static final Pattern COMPILING_PERMUTATION = Pattern.compile( "Compiling permutation (\\d+)\\.\\.\\..*" );
+
+    private static final Pattern PERMUTATIONS_SUCCEEDED =
+        Pattern.compile( "(Compile of permutations|Permutation compile) succeeded.*" );
+
+    private static final Pattern LINKING = Pattern.compile( "Linking into .*" );
+
+    private static final Pattern LINKING_SUCCEEDED = Pattern.compile( "Linking succeeded.*" );
+
+    private final Map<String, Module> modules = new LinkedHashMap<String, Module>();
+
+    /**
+     * Timings of one module compilation. Times are in milliseconds, relative to the start of the compilation.
+     */
+    static class Module
+    {
+        private final String name;
+
+        private final long start;
+
+        private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+        private final Map<Integer, long[]> permutations = new LinkedHashMap<Integer, long[]>();
+
+        private int permutationCount;
+
+        /** local workers of the compiler, or 0 if unknown */
+        private int workers;
+
+        private long duration = -1;
+
+        Module( String name, long start )
+        {
+            this.name = name;
+            this.start = start;
+        }
+
+        synchronized void phase( String phase, long duration )
+        {
+            phases.put( phase, duration );
+        }
+
+        /**
+         * @param duration time to compile the permutation, or -1 if unknown
+         */
+        synchronized void permutation( int permutation, long startTime, long duration )
+        {
+            permutations.put( permutation, new long[] { startTime - start, duration } );
+        }
+
+        synchronized void setPermutationCount( int permutationCount )
+        {
+            this.permutationCount = permutationCount;
+        }
+
+        synchronized void setWorkers( int workers )
+        {
+            this.workers = workers;
+        }
+
+        synchronized void end( long time )
+        {
+            duration = time - start;
+        }
+    }
+
+    /**
+     * Start recording the timings of a module whose compilation is driven by the plugin.
+     */
+    synchronized Module start( String module )
+    {
+        Module timings = new Module( module, System.currentTimeMillis() );
+        modules.put( module, timings );
+        return timings;
+    }
+
+    /**
+     * @param out consumer of the compiler output
+     * @param workers number of local workers of the compiler
+     * @return a consumer recording phases from the output of a <code>Compiler</code> process started now, before
+     *         passing it to <code>out</code>
+     */
+    OutputParser parse( StreamConsumer out, int workers )
+    {
+        return new OutputParser( out, System.currentTimeMillis(), workers );
+    }
+
+    /**
+     * Write all timings as JSON.
+     */
+    public synchronized void write( File file )
+        throws IOException
+    {
+        StringBuilder json = new StringBuilder( "{\n  \"modules\": [" );
+        String separator = "\n";
+        for ( Module module : modules.values() )
+        {
+            synchronized ( module )
+            {
+                json.append( separator ).append( "    {\n" );
+                json.append( "      \"module\": " ).append( quote( module.name ) ).append( ",\n" );
+                json.append( "      \"durationMillis\": " ).append( module.duration ).append( ",\n" );
+                json.append( "      \"permutationCount\": " ).append( module.permutationCount ).append( ",\n" );
+                json.append( "      \"phases\": {" );
+                String phaseSeparator = "";
+                for ( Map.Entry<String, Long> phase : module.phases.entrySet() )
+                {
+                    json.append( phaseSeparator ).append( "\n        " ).append( quote( phase.getKey() ) ).append( ": " )
+                        .append( phase.getValue() );
+                    phaseSeparator = ",";
+                }
+                json.append( module.phases.isEmpty() ? "},\n" : "\n      },\n" );
+                json.append( "      \"permutations\": [" );
+                String permutationSeparator = "";
+                for ( Map.Entry<Integer, long[]> permutation : module.permutations.entrySet() )
+                {
+                    json.append( permutationSeparator ).append( "\n        { \"id\": " ).append( permutation.getKey() )
+                        .append( ", \"startMillis\": " ).append( permutation.getValue()[0] );
+                    if ( permutation.getValue()[1] >= 0 )
+                    {
+                        json.append( ", \"durationMillis\": " ).append( permutation.getValue()[1] );
+                    }
+                    json.append( " }" );
+                    permutationSeparator = ",";
+                }
+                json.append( module.permutations.isEmpty() ? "]\n" : "\n      ]\n" ).append( "    }" );
+            }
+            separator = ",\n";
+        }
+        json.append( modules.isEmpty() ? "]\n}\n" : "\n  ]\n}\n" );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", json.toString() );
+    }
+
+    /**
+     * Record the completed compilations in the compilation history.
+     *
+     * @param estimates estimated number of permutations, by module
+     * @param telemetry resource usage of the compiler processes, or <code>null</code>
+     */
+    public synchronized void record( CompilationHistory history, Map<String, Integer> estimates,
+                                     ForkTelemetry telemetry )
+    {
+        for ( Module module : modules.values() )
+        {
+            synchronized ( module )
+            {
+                Integer estimate = estimates.get( module.name );
+                if ( module.duration < 0 || module.permutationCount == 0 || estimate == null )
+                {
+                    continue;
+                }
+                Long permutations = module.phases.get( PERMUTATIONS );
+                history.record( module.name, estimate, module.permutationCount, module.duration,
+                                permutations != null ? permutations : -1, module.workers,
+                                telemetry != null ? telemetry.getPeakMemory( module.name ) : -1 );
+            }
+        }
+    }
+
+    /**
+     * Log a table of the phases of each module.
+     */
+    public synchronized void logSummary( Log log )
+    {
+        if ( modules.isEmpty() )
+        {
+            return;
+        }
+        int width = "Module".length();
+        for ( String module : modules.keySet() )
+        {
+            width = Math.max( width, module.length() );
+        }
+        String rowFormat = "%-" + width + "s %10s %10s %10s %14s %10s %10s";
+        log.info( "GWT compilation timings:" );
+        log.info( String.format( Locale.ENGLISH, rowFormat, "Module", "Startup", "Load", "Precompile",
+                                 "Permutations", "Link", "Total" ) );
+        for ( Module module : modules.values() )
+        {
+            synchronized ( module )
+            {
+                String permutations = format( module.phases.get( PERMUTATIONS ) );
+                if ( module.permutationCount > 0 )
+                {
+                    permutations += " (" + module.permutationCount + ")";
+                }
+                log.info( String.format( Locale.ENGLISH, rowFormat, module.name, format( module.phases.get( STARTUP ) ),
+                                         format( module.phases.get( MODULE_LOAD ) ),
+                                         format( module.phases.get( PRECOMPILE ) ), permutations,
+                                         format( module.phases.get( LINK ) ),
+                                         format( module.duration >= 0 ? module.duration : null ) ) );
+            }
+        }
+    }
+
+    private static String format( Long millis )
+    {
+        return millis == null ? "-" : String.format( Locale.ENGLISH, "%.1fs", millis / 1000.0 );
+    }
+
+    private static String quote( String value )
+    {
+        return "\"" + value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) + "\"";
+    }
+
+    /**
+     * Recognize phase boundaries in the output of a <code>Compiler</code> process, which compiles its modules one
+     * after the other.
+     */
+    class OutputParser
+        implements StreamConsumer
+    {
+        private final StreamConsumer out;
+
+        private final long processStart;
+
+        private final int workers;
+
+        private int modulesStarted;
+
+        private Module module;
+
+        private long precompileStart = -1;
+
+        private long loadEnd = -1;
+
+        private long permutationsStart = -1;
+
+        private long linkStart = -1;
+
+        /** last permutation started, which ends when the next one starts if there is a single local worker */
+        private Integer runningPermutation;
+
+        private long permutationStart;
+
+        OutputParser( StreamConsumer out, long processStart, int workers )
+        {
+            this.out = out;
+            this.processStart = processStart;
+            this.workers = workers;
+        }
+
+        public void consumeLine( String line )
+        {
+            record( line.trim(), System.currentTimeMillis() );
+            out.consumeLine( line );
+        }
+
+        /**
+         * Record the end of the module being compiled, if any, when the process exits.
+         */
+        void finish()
+        {
+            if ( module != null )
+            {
+                endModule( System.currentTimeMillis() );
+            }
+        }
+
+        private void record( String line, long now )
+        {
+            Matcher matcher = COMPILING_MODULE.matcher( line );
+            if ( matcher.matches() )
+            {
+                long start = modulesStarted == 0 ? processStart : now;
+                if ( module != null )
+                {
+                    endModule( now );
+                }
+                modulesStarted++;
+                module = new Module( matcher.group( 1 ), start );
+                module.setWorkers( workers );
+                synchronized ( CompilationTimings.this )
+                {
+                    modules.put( module.name, module );
+                }
+                if ( now > start )
+                {
+                    module.phase( STARTUP, now - start );
+                }
+                precompileStart = now;
+                return;
+            }
+            if ( module == null )
+            {
+                return;
+            }
+            if ( LOADING_MODULE.matcher( line ).matches() )
+            {
+                // only logged with -logLevel DEBUG or more
+                loadEnd = now;
+            }
+            else if ( ( matcher = COMPILING_PERMUTATIONS.matcher( line ) ).matches() )
+            {
+                endPrecompile( now );
+                module.setPermutationCount( Integer.parseInt( matcher.group( 1 ) ) );
+                permutationsStart = now;
+            }
+            else if ( ( matcher = COMPILING_PERMUTATION.matcher( line ) ).matches() )
+            {
+                endPermutation( now );
+                runningPermutation = Integer.valueOf( matcher.group( 1 ) );
+                permutationStart = now;
+                module.permutation( runningPermutation, now, -1 );
+            }
+            else if ( PERMUTATIONS_SUCCEEDED.matcher( line ).matches() )
+            {
+                endPermutations( now );
+            }
+            else if ( LINKING.matcher( line ).matches() )
+            {
+                endPrecompile( now );
+                endPermutations( now );
+                linkStart = now;
+            }
+            else if ( LINKING_SUCCEEDED.matcher( line ).matches() )
+            {
+                endModule( now );
+            }
+        }
+
+        private void endPrecompile( long now )
+        {
+            if ( precompileStart < 0 )
+            {
+                return;
+            }
+            if ( loadEnd >= 0 )
+            {
+                module.phase( MODULE_LOAD, loadEnd - precompileStart );
+                module.phase( PRECOMPILE, now - loadEnd );
+            }
+            else
+            {
+                module.phase( PRECOMPILE, now - precompileStart );
+            }
+            precompileStart = -1;
+            loadEnd = -1;
+        }
+
+        private void endPermutations( long now )
+        {
+            endPermutation( now );
+            if ( permutationsStart >= 0 )
+            {
+                module.phase( PERMUTATIONS, now - permutationsStart );
+                permutationsStart = -1;
+            }
+        }
+
+        /**
+         * With several local workers, permutations run concurrently and their end is not logged, so only their start
+         * is recorded.
+         */
+        private void endPermutation( long now )
+        {
+            if ( runningPermutation != null && workers == 1 )
+            {
+                module.permutation( runningPermutation, permutationStart, now - permutationStart );
+            }
+            runningPermutation = null;
+        }
+
+        private void endModule( long now )
+        {
+            endPrecompile( now );
+            endPermutations( now );
+            if ( linkStart >= 0 )
+            {
+                module.phase( LINK, now - linkStart );
+                linkStart = -1;
+            }
+            module.end( now );
+            module = null;
+        }
+    }
+}
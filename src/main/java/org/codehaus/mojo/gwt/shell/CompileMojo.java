@@ -25,29 +25,46 @@ package org.codehaus.mojo.gwt.shell;
 
 import java.util.List;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.mojo.gwt.CompilationHistory;
+import org.codehaus.mojo.gwt.DevModuleGenerator;
 import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.PermutationEstimator;
 import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
 import org.codehaus.mojo.gwt.utils.ProjectScanner;
-import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
-import org.codehaus.plexus.compiler.util.scan.StaleSourceScanner;
-import org.codehaus.plexus.compiler.util.scan.mapping.SingleTargetSourceMapping;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.ListIterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Invokes the GWT Compiler for the project source.
@@ -71,6 +88,11 @@ public class CompileMojo
     /**
      * Don't try to detect if GWT compilation is up-to-date and can be skipped.
      * <p>
+     * A module is considered up-to-date when its inputs (descriptors and paths of the module and of the modules it
+     * inherits, resources referenced by ClientBundles and UiBinder templates, classpath including the project classes,
+     * and compiler arguments) have the same content as for the last successful compilation, as recorded in
+     * <code>fingerprintDirectory</code>.
+     * <p>
      * Can be set from command line using '-Dgwt.compiler.force=true'.
      */
     @Parameter(property = "gwt.compiler.force", defaultValue = "false")
@@ -87,6 +109,72 @@ public class CompileMojo
     @Parameter(property = "gwt.compiler.localWorkers")
     private int localWorkers;
 
+    /**
+     * Number of GWT compiler processes to run concurrently, each one compiling its own share of the modules that
+     * need to be compiled.
+     * <p>
+     * With the default value (1), all modules are compiled one after the other by a single compiler process. With a
+     * greater value, the <code>localWorkers</code> budget, and the <code>compilerHeapBudget</code> if set, are split
+     * between the compiler processes.
+     * </p>
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.parallelModules=n'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "1", property = "gwt.compiler.parallelModules")
+    private int parallelModules;
+
+    /**
+     * Total maximum heap size (e.g. 4g or 4096m) to share between the compiler processes forked when
+     * <code>parallelModules</code> is greater than 1. Each compiler process gets an equal part of it, overriding any
+     * -Xmx option in <code>extraJvmArgs</code>. When not set, each compiler process uses <code>extraJvmArgs</code>
+     * unchanged.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.heapBudget=...'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(property = "gwt.compiler.heapBudget")
+    private String compilerHeapBudget;
+
+    /**
+     * Whether to choose <code>localWorkers</code> and the compiler heap size together, from the processors and memory
+     * available to the build (taking container limits into account) and the estimated number of permutations of the
+     * modules to compile. Explicitly configured <code>localWorkers</code> and <code>compilerHeapBudget</code> are kept.
+     * The chosen values are logged.
+     * <p>
+     * The compiler heap is sized as <code>autoTuneBaseHeap</code> plus <code>autoTunePermutationHeap</code> for each
+     * local worker, and all compiler processes together may use up to three quarters of the available memory, minus
+     * the Maven heap.
+     * </p>
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.autoTune=true'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.compiler.autoTune")
+    private boolean autoTune;
+
+    /**
+     * Heap needed by a compiler process besides the permutations it compiles, when <code>autoTune</code> is enabled.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "512m", property = "gwt.compiler.autoTuneBaseHeap")
+    private String autoTuneBaseHeap;
+
+    /**
+     * Heap needed to compile one permutation, when <code>autoTune</code> is enabled.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "256m", property = "gwt.compiler.autoTunePermutationHeap")
+    private String autoTunePermutationHeap;
+
     /**
      * Whether or not to enable assertions in generated scripts (-checkAssertions).
      */
@@ -145,7 +233,281 @@ public class CompileMojo
     private File extra;
 
     /**
-     * The compiler's working directory for internal use (must be writeable; defaults to a system temp dir)
+     * The directory where the fingerprints of the inputs of the last successful compilation of each module are
+     * recorded, to detect if GWT compilation is up-to-date.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-fingerprints")
+    private File fingerprintDirectory;
+
+    /**
+     * Whether to store the compiler output of each module in a local cache shared by all projects, and restore it
+     * instead of compiling when a later build has the same inputs (module sources, classpath, GWT version and compiler
+     * arguments), for example on another branch.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.buildCache=true'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.compiler.buildCache")
+    private boolean buildCache;
+
+    /**
+     * Location of the local GWT compilation cache.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/gwt-build-cache", property = "gwt.compiler.buildCacheDirectory")
+    private File buildCacheDirectory;
+
+    /**
+     * Maximum size of the local GWT compilation cache (e.g. 500m or 2g). Least recently used entries are removed when
+     * the cache grows over it.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "2g", property = "gwt.compiler.buildCacheMaxSize")
+    private String buildCacheMaxSize;
+
+    /**
+     * Whether to run the GWT compiler in a long-lived JVM, reused by later builds, instead of forking a new JVM each
+     * time. This saves JVM startup, class loading and JIT warm-up of the compiler, which is significant when building
+     * repeatedly. A daemon is only reused with the same JVM, JVM arguments and classpath.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.daemon=true'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.compiler.daemon")
+    private boolean compilerDaemon;
+
+    /**
+     * Where GWT compiler daemons register themselves and write their log.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/gwt-daemons", property = "gwt.compiler.daemonDirectory")
+    private File compilerDaemonDirectory;
+
+    /**
+     * Minutes after which an unused GWT compiler daemon exits.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "30", property = "gwt.compiler.daemonIdleTimeout")
+    private int compilerDaemonIdleTimeout;
+
+    /**
+     * Percentage of the maximum heap that may remain in use after a compilation. Over it, the GWT compiler daemon exits
+     * to release its memory, and a fresh one is started by the next build.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "70", property = "gwt.compiler.daemonMaxHeapUsage")
+    private int compilerDaemonMaxHeapUsage;
+
+    /**
+     * Whether to run the Precompile, CompilePerms and Link stages of the GWT compiler as separate processes, with
+     * permutations compiled by several independent JVMs instead of the <code>localWorkers</code> of a single one. Each
+     * permutation JVM only needs the heap for its own permutations, and a failing one only requires compiling its
+     * permutations again.
+     * <p>
+     * Not used with <code>incremental</code> or <code>validateOnly</code>.
+     * </p>
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.shardPermutations=true'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.compiler.shardPermutations")
+    private boolean shardPermutations;
+
+    /**
+     * Maximum number of permutation JVMs running at the same time when <code>shardPermutations</code> is enabled,
+     * shared by the compiler processes of <code>parallelModules</code>. Defaults to <code>localWorkers</code>.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(property = "gwt.compiler.permutationWorkers")
+    private int permutationWorkers;
+
+    /**
+     * Number of permutations compiled by each permutation JVM when <code>shardPermutations</code> is enabled.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "1", property = "gwt.compiler.permutationsPerShard")
+    private int permutationsPerShard;
+
+    /**
+     * Maximum heap size of each permutation JVM (e.g. 1g) when <code>shardPermutations</code> is enabled. Defaults to
+     * the -Xmx of <code>extraJvmArgs</code>.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(property = "gwt.compiler.permutationWorkerHeap")
+    private String permutationWorkerHeap;
+
+    /**
+     * Number of times a failed shard of permutations is compiled again before failing the build.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "1", property = "gwt.compiler.shardRetries")
+    private int shardRetries;
+
+    /**
+     * Work directory where the stages of a sharded compilation exchange their results, when <code>workDir</code> is
+     * not set.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-work")
+    private File shardWorkDir;
+
+    /**
+     * Whether to record the duration of the phases of the compilation (JVM startup, module load, precompile,
+     * compilation of each permutation and link) in <code>compileTimingsFile</code>, and print a summary at the end of
+     * the build.
+     * <p>
+     * Phases are recognized from the compiler output. The module load is only distinguished from the precompile with
+     * a <code>logLevel</code> of DEBUG or more, and the duration of each permutation is only known with a single local
+     * worker or with <code>shardPermutations</code>.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.compiler.timings")
+    private boolean compileTimings;
+
+    /**
+     * JSON file where compilation timings are written.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-compile-timings.json")
+    private File compileTimingsFile;
+
+    /**
+     * File where the last compilations of each module are recorded (estimated and actual permutations, duration, local
+     * workers and, when <code>forkTelemetry</code> is enabled, peak memory), when <code>compileTimings</code> is
+     * enabled. The history replaces the permutation estimate of <code>autoTune</code> with the number of permutations
+     * actually compiled, balances the modules compiled by <code>parallelModules</code> processes by their duration,
+     * and is reported by the <code>permutations</code> goal. With <code>devModule</code>, compilations are recorded
+     * under the name of the development module, apart from the complete compilations of the module.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-compile-history.properties",
+               property = "gwt.compiler.historyFile")
+    private File compileHistoryFile;
+
+    /**
+     * Compile for each module its development module instead, generated in <code>devModuleDirectory</code> as the
+     * <code>dev-module</code> goal does : a single permutation for <code>devUserAgent</code> and <code>devLocale</code>,
+     * written to the same output directory. Typically enabled by a profile for local builds.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.devModule=true'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.compiler.devModule")
+    private boolean devModule;
+
+    /**
+     * Whether the compiler writes to <code>stagingDirectory</code>, the output of each module being then published to
+     * the webapp directory by only copying new or changed files and removing files no longer produced. Unchanged files
+     * keep their timestamp, so that tools watching or copying the webapp only see actual changes.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.compiler.stagedOutput")
+    private boolean stagedOutput;
+
+    /**
+     * Directory the compiler writes to when <code>stagedOutput</code> is enabled.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-staging")
+    private File stagingDirectory;
+
+    /**
+     * Directory holding the persistent work directory of each module for <code>incremental</code> compilation, when
+     * <code>workDir</code> is not set. The work directory of a module is emptied when the GWT version or compiler
+     * arguments change.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gwt-incremental")
+    private File incrementalWorkDir;
+
+    /**
+     * Maximum size of the incremental compilation work directory of a module (e.g. 500m or 1g). Over it, the directory
+     * is emptied and the next compilation is a full one.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "1g", property = "gwt.compiler.incrementalWorkDirMaxSize")
+    private String incrementalWorkDirMaxSize;
+
+    /**
+     * Files of the incremental compilation work directory of a module that were not written by any of the last
+     * <code>incrementalWorkDirGenerations</code> compilations are removed as stale.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "10", property = "gwt.compiler.incrementalWorkDirGenerations")
+    private int incrementalWorkDirGenerations;
+
+    /**
+     * Whether to give the compiler slimmed, uncompressed copies of the GWT libraries of the classpath, without the
+     * classes it builds from their sources, so that loading modules has fewer jar entries to walk. Classes used by
+     * generators, property providers and linkers declared in modules are kept, as found by following class
+     * references from them; classes only loaded by reflection from generators are not detected, so check the
+     * compilation still succeeds when enabling it. The GWT SDK jars are not slimmed.
+     * <p>
+     * Can be set from command line using '-Dgwt.compiler.slimClasspath=true'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.compiler.slimClasspath")
+    private boolean slimClasspath;
+
+    /**
+     * Where slimmed copies of the GWT libraries are written. They are named after the content of the original jar,
+     * so they can be shared by all projects.
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "${user.home}/.m2/gwt-slim-classpath", property = "gwt.compiler.slimClasspathDirectory")
+    private File slimClasspathDirectory;
+
+    /**
+     * Whether to drop from the compiler classpath the jars the compiled modules can't use, typically server side
+     * libraries. Jars are kept when they hold a module of the inheritance graph of the compiled modules, files under
+     * the source, super-source, public or resource paths of these modules, classes reachable from their generators,
+     * property providers and linkers, or classes imported by their sources. The GWT SDK and its dependencies are
+     * always kept. Kept and dropped jars are listed in <code>compile-classpath.txt</code> in
+     * <code>outputLogDirectory</code>.
+     * <p>
+     * Can be set from command line using '-Dgwt.pruneClasspath=true'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.pruneClasspath")
+    private boolean pruneClasspath;
+
+    /**
+     * The compiler's working directory for internal use (must be writeable; defaults to a system temp dir, or to a
+     * persistent directory per module in <code>incrementalWorkDir</code> for <code>incremental</code> compilation)
      */
     @Parameter
     private File workDir;
@@ -392,6 +754,33 @@ public class CompileMojo
     @Parameter
     private List<String> compilerArgs;
 
+    private CompilationCache cache;
+
+    private CompilerDaemons daemons;
+
+    private CompilationTimings timings;
+
+    /** persistent work directories of modules, for incremental compilation without an explicit workDir */
+    private IncrementalWorkDir incrementalWorkDirs;
+
+    /** compilation history, or null if not recorded */
+    private CompilationHistory history;
+
+    /** generated development modules descriptors, by module */
+    private final Map<String, File> devModules = new HashMap<String, File>();
+
+    /** estimated permutations of the stale modules, by compiled module */
+    private final Map<String, Integer> estimates = new HashMap<String, Integer>();
+
+    /** localWorkers chosen by autoTune */
+    private int tunedWorkers;
+
+    /** heap budget chosen by autoTune */
+    private String tunedHeapBudget;
+
+    /** slimmed classpaths, shared by the compilations of all modules */
+    private SlimClasspath classpathSlimmer;
+
     public void doExecute( )
         throws MojoExecutionException, MojoFailureException
     {
@@ -425,131 +814,844 @@ public class CompileMojo
     private void compile( String[] modules )
         throws MojoExecutionException
     {
-        boolean upToDate = true;
-
-        JavaCommand cmd = createJavaCommand()
-            .setMainClass( "com.google.gwt.dev.Compiler" );
-        if ( gwtSdkFirstInClasspath )
+        if ( devModule )
         {
-            cmd.addToClasspath( getGwtUserJar() )
-               .addToClasspath( getGwtDevJar() );
+            generateDevModules( modules );
         }
-        cmd.addToClasspath( getClasspath( Artifact.SCOPE_COMPILE ) );
-        if ( !gwtSdkFirstInClasspath )
+        if ( buildCache )
         {
-            cmd.addToClasspath( getGwtUserJar() )
-               .addToClasspath( getGwtDevJar() );
+            cache = new CompilationCache( buildCacheDirectory, parseMemorySize( buildCacheMaxSize ), getLog() );
         }
-
-        cmd.arg( "-logLevel", getLogLevel() )
-            .arg( "-war", getOutputDirectory().getAbsolutePath() )
-            .arg( "-localWorkers", String.valueOf( getLocalWorkers() ) )
-            // optional advanced arguments
-            .arg( checkAssertions, "-checkAssertions" )
-            .arg( draftCompile, "-draftCompile" )
-            .arg( validateOnly, "-validateOnly" )
-            .arg( disableClassMetadata, "-XnoclassMetadata" )
-            .arg( disableCastChecking, "-XnocheckCasts" )
-            .arg( disableRunAsync, "-XnocodeSplitting" )
-            .arg( failOnError, "-failOnError" )
-            .arg( detailedSoyc, "-XdetailedSoyc" )
-            .arg( closureCompiler, "-XclosureCompiler" )
-            .arg( closureFormattedOutput, "-XclosureFormattedOutput" )
-            .arg( compileReport, "-compileReport" )
-            .arg( compilerMetrics, "-XcompilerMetrics" )
-            .arg( "-XfragmentCount", String.valueOf( fragmentCount ) )
-            .arg( !clusterFunctions, "-XnoclusterFunctions" )
-            .arg( !inlineLiteralParameters, "-XnoinlineLiteralParameters" )
-            .arg( !optimizeDataflow, "-XnooptimizeDataflow" )
-            .arg( !ordinalizeEnums, "-XnoordinalizeEnums" )
-            .arg( !removeDuplicateFunctions, "-XnoremoveDuplicateFunctions" )
-            .arg( saveSource, "-saveSource" )
-            .arg( "-sourceLevel", sourceLevel )
-            .arg( enableJsonSoyc, "-XenableJsonSoyc" )
-            .arg( incremental, "-incremental" )
-            .arg( generateJsInteropExports, "-generateJsInteropExports" )
-        ;
-
-        if ( style != null && style.length() > 0 )
+        if ( compileTimings )
         {
-            cmd.arg( "-style", style );
+            timings = new CompilationTimings();
+            if ( compileHistoryFile != null )
+            {
+                history = new CompilationHistory( compileHistoryFile );
+            }
         }
-
-        if ( methodNameDisplayMode != null && methodNameDisplayMode.length() > 0 && !methodNameDisplayMode.equals( "NONE" ))
+        if ( compilerDaemon )
         {
-            cmd.arg( "-XmethodNameDisplayMode", methodNameDisplayMode );
+            daemons = new CompilerDaemons( compilerDaemonDirectory, compilerDaemonIdleTimeout,
+                                           compilerDaemonMaxHeapUsage, getLog() );
         }
-
-        if ( namespace != null && namespace.length() > 0 )
+        else
         {
-            cmd.arg( "-Xnamespace", namespace );
+            daemons = getJvmPool();
         }
-
-        if ( saveSourceOutput != null )
+        try
         {
-            cmd.arg( "-saveSourceOutput", saveSourceOutput.getAbsolutePath() );
+            compileStaleModules( modules );
+            if ( history != null )
+            {
+                recordHistory();
+            }
         }
-
-        if ( optimizationLevel >= 0 )
+        finally
         {
-            cmd.arg( "-optimize" ).arg( Integer.toString( optimizationLevel ) );
+            if ( cache != null )
+            {
+                getLog().info( "GWT compilation cache: " + cache.getHits() + " hit(s), " + cache.getMisses()
+                    + " miss(es)" );
+                cache.evict();
+            }
+            if ( timings != null )
+            {
+                try
+                {
+                    timings.write( compileTimingsFile );
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Failed to write " + compileTimingsFile, e );
+                }
+                timings.logSummary( getLog() );
+            }
         }
+    }
+
+    private void compileStaleModules( String[] modules )
+        throws MojoExecutionException
+    {
+        JavaCommand cmd = createCompilerCommand( getLocalWorkers(), null );
+        CompilationFingerprint compilerInputs = getCompilerInputs( cmd );
 
-        if ( extraParam || compileReport || ( saveSource && saveSourceOutput == null ) )
+        List<String> staleModules = new ArrayList<String>();
+        Map<String, CompilationFingerprint> fingerprints = new HashMap<String, CompilationFingerprint>();
+        for ( String target : modules )
         {
-            getLog().debug( "create extra directory " );
-            if ( !extra.exists() )
+            if ( compilationRequired( target, getOutputDirectory(), compilerInputs, fingerprints ) )
             {
-                extra.mkdirs();
+                staleModules.add( target );
             }
-            cmd.arg( "-extra" ).arg( extra.getAbsolutePath() );
         }
-        else
+
+        if ( staleModules.isEmpty() )
         {
-            getLog().debug( "NOT create extra directory " );
+            return;
         }
 
-        addCoverageArgument( cmd );
-        addCompileSourceArtifacts( cmd );
-        addArgumentDeploy(cmd);
-        addArgumentGen( cmd );
-        addPersistentUnitCache(cmd);
+        if ( autoTune || history != null )
+        {
+            estimatePermutations( staleModules );
+        }
+        if ( autoTune )
+        {
+            autoTune( staleModules );
+            cmd = createCompilerCommand( getLocalWorkers(), null );
+        }
 
-        if ( workDir != null )
+        if ( incremental && workDir == null )
         {
-            cmd.arg( "-workDir" ).arg( String.valueOf( workDir ) );
+            incrementalWorkDirs = new IncrementalWorkDir( incrementalWorkDir, getIncrementalStamp( cmd ),
+                                                          parseMemorySize( incrementalWorkDirMaxSize ),
+                                                          incrementalWorkDirGenerations, getLog() );
         }
 
-        if (compilerArgs != null) {
-            for (String compilerArg : compilerArgs)
+        int forks = Math.min( Math.max( parallelModules, 1 ), staleModules.size() );
+        if ( forks == 1 )
+        {
+            String heap = getForkHeap( 1 );
+            if ( heap != null )
             {
-                cmd.arg(compilerArg);
+                setMaxHeap( cmd, heap );
             }
+            compile( cmd, staleModules, 1, fingerprints );
+            return;
+        }
+
+        compileInParallel( staleModules, forks, fingerprints );
+    }
+
+    /**
+     * Generate the development modules compiled instead of the modules.
+     */
+    private void generateDevModules( String[] modules )
+        throws MojoExecutionException
+    {
+        DevModuleGenerator generator = createDevModuleGenerator();
+        File devModuleDirectory = getDevModuleDirectory();
+        for ( String target : modules )
+        {
+            try
+            {
+                devModules.put( target, generator.generate( readModule( target ), devModuleDirectory ) );
+            }
+            catch ( GwtModuleReaderException e )
+            {
+                throw new MojoExecutionException( e.getMessage(), e );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Failed to generate the development module of " + target, e );
+            }
+        }
+        getLog().info( "Compiling GWT development modules from " + devModuleDirectory );
+    }
+
+    /**
+     * @return the module the compiler is given for a module of the project : its development module with
+     *         <code>devModule</code>, else the module itself
+     */
+    private String getCompiledModule( String target )
+    {
+        return devModule ? DevModuleGenerator.getName( target ) : target;
+    }
+
+    /**
+     * Record the compiled modules in the compilation history.
+     */
+    private void recordHistory()
+    {
+        timings.record( history, estimates, getTelemetry() );
+        try
+        {
+            history.store();
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to write " + compileHistoryFile, e );
+        }
+    }
+
+    /**
+     * Estimate the permutations of the modules from the module graph.
+     */
+    private void estimatePermutations( List<String> staleModules )
+        throws MojoExecutionException
+    {
+        for ( String target : staleModules )
+        {
+            try
+            {
+                String name = getCompiledModule( target );
+                GwtModule gwtModule = devModule ? readModule( name, devModules.get( target ) ) : readModule( target );
+                estimates.put( name, PermutationEstimator.estimate( gwtModule ) );
+            }
+            catch ( GwtModuleReaderException e )
+            {
+                throw new MojoExecutionException( e.getMessage(), e );
+            }
+        }
+    }
+
+    /**
+     * @return the expected number of permutations of the module : the ones compiled last time the module graph gave
+     *         the same estimate, else the estimate, or 1 if the module was not estimated
+     */
+    private int getPermutations( String target )
+    {
+        String name = getCompiledModule( target );
+        Integer estimate = estimates.get( name );
+        if ( estimate == null )
+        {
+            return 1;
+        }
+        return history != null ? history.getPermutations( name, estimate ) : estimate;
+    }
+
+    /**
+     * @return what incremental compilation data depends on : GWT version and compiler arguments
+     */
+    private String getIncrementalStamp( JavaCommand cmd )
+        throws MojoExecutionException
+    {
+        List<String> stamp = new ArrayList<String>();
+        for ( File jar : getGwtDevJar() )
+        {
+            stamp.add( jar.getName() );
+        }
+        for ( ListIterator<String> it = cmd.getArgs().listIterator(); it.hasNext(); )
+        {
+            String arg = it.next();
+            if ( "-localWorkers".equals( arg ) && it.hasNext() )
+            {
+                it.next();
+            }
+            else
+            {
+                stamp.add( arg );
+            }
+        }
+        return StringUtils.join( stamp.iterator(), " " );
+    }
+
+    /**
+     * Choose the number of local workers and the heap budget from the resources available to the build and the
+     * expected number of permutations.
+     */
+    private void autoTune( List<String> staleModules )
+        throws MojoExecutionException
+    {
+        ResourceLimits limits = ResourceLimits.detect();
+        int permutations = 1;
+        for ( String target : staleModules )
+        {
+            permutations = Math.max( permutations, getPermutations( target ) );
+        }
+        int forks = Math.min( Math.max( parallelModules, 1 ), staleModules.size() );
+        long baseHeap = parseMemorySize( autoTuneBaseHeap );
+        long permutationHeap = parseMemorySize( autoTunePermutationHeap );
+
+        // workers of all compiler processes together
+        int workers = localWorkers > 0 ? localWorkers
+                        : Math.max( 1, Math.min( limits.getProcessors(), permutations * forks ) );
+        if ( localWorkers <= 0 && limits.getMemory() > 0 && permutationHeap > 0 )
+        {
+            long budget = Math.max( limits.getMemory() / 4,
+                                    limits.getMemory() * 3 / 4 - Runtime.getRuntime().maxMemory() );
+            long affordable = ( budget - forks * baseHeap ) / permutationHeap;
+            workers = (int) Math.max( forks, Math.min( workers, affordable ) );
+        }
+        tunedWorkers = workers;
+        if ( StringUtils.isEmpty( compilerHeapBudget ) )
+        {
+            tunedHeapBudget = ( forks * baseHeap + workers * permutationHeap ) / ( 1024 * 1024 ) + "m";
+        }
+
+        getLog().info( "GWT compiler auto-tuning: " + limits.getProcessors() + " processors, "
+            + ( limits.getMemory() > 0 ? limits.getMemory() / ( 1024 * 1024 ) + "m" : "unknown" ) + " memory, "
+            + permutations + " expected permutations => " + workers + " local workers, heap budget "
+            + ( tunedHeapBudget != null ? tunedHeapBudget : compilerHeapBudget ) );
+    }
+
+    /**
+     * Fork one GWT compiler per group of modules, running at most <code>forks</code> compilers concurrently. Modules are
+     * distributed round-robin so that groups have the same size (give or take one module), or by duration when the
+     * compilation history knows all of them.
+     */
+    private void compileInParallel( List<String> staleModules, final int forks,
+                                    final Map<String, CompilationFingerprint> fingerprints )
+        throws MojoExecutionException
+    {
+        int workers = Math.max( 1, getLocalWorkers() / forks );
+        String heap = getForkHeap( forks );
+        getLog().info( "Compiling " + staleModules.size() + " GWT modules in " + forks + " parallel compiler processes ("
+            + workers + " local workers" + ( heap != null ? ", -Xmx" + heap : "" ) + " each)" );
+
+        List<List<String>> groups = groupModules( staleModules, forks, workers );
+
+        Map<List<String>, Future<?>> results = new LinkedHashMap<List<String>, Future<?>>();
+        ExecutorService executor = Executors.newFixedThreadPool( forks );
+        try
+        {
+            for ( final List<String> group : groups )
+            {
+                final JavaCommand cmd = createCompilerCommand( workers, heap );
+                prefixOutput( cmd, "[" + StringUtils.join( group.iterator(), "," ) + "] " );
+                results.put( group, executor.submit( new Callable<Void>()
+                {
+                    public Void call()
+                        throws MojoExecutionException
+                    {
+                        compile( cmd, group, forks, fingerprints );
+                        return null;
+                    }
+                } ) );
+            }
+
+            MojoExecutionException failure = null;
+            for ( Map.Entry<List<String>, Future<?>> result : results.entrySet() )
+            {
+                try
+                {
+                    result.getValue().get();
+                }
+                catch ( ExecutionException e )
+                {
+                    getLog().error( "GWT compilation failed for " + result.getKey() + ": " + e.getCause().getMessage() );
+                    if ( failure == null )
+                    {
+                        failure = new MojoExecutionException( "GWT compilation failed for " + result.getKey(),
+                                                              e.getCause() );
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException( "Interrupted while waiting for GWT compilation", e );
+                }
+            }
+            if ( failure != null )
+            {
+                throw failure;
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Split the modules in <code>forks</code> groups. With a known duration for each module, the longest modules are
+     * assigned first, each to the group with the least work, so that all compilers end at about the same time.
+     */
+    private List<List<String>> groupModules( List<String> staleModules, int forks, int workers )
+    {
+        List<List<String>> groups = new ArrayList<List<String>>( forks );
+        for ( int i = 0; i < forks; i++ )
+        {
+            groups.add( new ArrayList<String>() );
+        }
+        final Map<String, Long> durations = new HashMap<String, Long>();
+        for ( String target : staleModules )
+        {
+            long duration = history != null
+                ? history.estimateDuration( getCompiledModule( target ), getPermutations( target ), workers ) : -1;
+            if ( duration < 0 )
+            {
+                for ( int i = 0; i < staleModules.size(); i++ )
+                {
+                    groups.get( i % forks ).add( staleModules.get( i ) );
+                }
+                return groups;
+            }
+            durations.put( target, duration );
+        }
+
+        List<String> sorted = new ArrayList<String>( staleModules );
+        Collections.sort( sorted, new Comparator<String>()
+        {
+            public int compare( String o1, String o2 )
+            {
+                return durations.get( o2 ).compareTo( durations.get( o1 ) );
+            }
+        } );
+        long[] loads = new long[forks];
+        for ( String target : sorted )
+        {
+            int lightest = 0;
+            for ( int i = 1; i < forks; i++ )
+            {
+                if ( loads[i] < loads[lightest] )
+                {
+                    lightest = i;
+                }
+            }
+            groups.get( lightest ).add( target );
+            loads[lightest] += durations.get( target );
+        }
+        getLog().debug( "GWT modules grouped by estimated duration: " + groups );
+        return groups;
+    }
+
+    /**
+     * @param forks number of compiler processes running concurrently, sharing the permutation workers
+     */
+    private void compile( JavaCommand cmd, List<String> targets, int forks,
+                          Map<String, CompilationFingerprint> fingerprints )
+        throws MojoExecutionException
+    {
+        if ( isStagedOutput() )
+        {
+            // the compiler doesn't remove files it no longer produces
+            for ( String target : targets )
+            {
+                for ( File staged : getStagedOutputs( target ).keySet() )
+                {
+                    try
+                    {
+                        FileUtils.deleteDirectory( staged );
+                    }
+                    catch ( IOException e )
+                    {
+                        throw new MojoExecutionException( "Failed to clean " + staged, e );
+                    }
+                }
+            }
+        }
+        try
+        {
+            if ( shardPermutations && !incremental && !validateOnly )
+            {
+                int workers = permutationWorkers > 0 ? permutationWorkers : getLocalWorkers();
+                ShardedCompilation sharded =
+                    new ShardedCompilation( getLog(), workDir != null ? workDir : shardWorkDir,
+                                            Math.max( 1, workers / forks ), permutationsPerShard,
+                                            permutationWorkerHeap, shardRetries, timings );
+                for ( String target : targets )
+                {
+                    sharded.compile( cmd, getCompiledModule( target ) );
+                }
+            }
+            else if ( incrementalWorkDirs != null )
+            {
+                // each module gets its own persistent work directory
+                for ( String target : targets )
+                {
+                    File moduleWorkDir = incrementalWorkDirs.prepare( target );
+                    long start = System.currentTimeMillis();
+                    JavaCommand moduleCmd = cmd.copy()
+                        .arg( "-workDir", moduleWorkDir.getAbsolutePath() )
+                        .arg( getCompiledModule( target ) );
+                    if ( !moduleCmd.getSystemProperties().containsKey( "gwt.persistentunitcachedir" ) )
+                    {
+                        moduleCmd.systemProperty( "gwt.persistentunitcachedir",
+                                                  new File( moduleWorkDir, "gwt-unitCache" ).getAbsolutePath() );
+                    }
+                    execute( moduleCmd );
+                    incrementalWorkDirs.compiled( target, start );
+                }
+            }
+            else
+            {
+                for ( String target : targets )
+                {
+                    cmd.arg( getCompiledModule( target ) );
+                }
+                execute( cmd );
+            }
+        }
+        catch ( JavaCommandException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to manage incremental compilation work directory", e );
+        }
+
+        if ( isStagedOutput() )
+        {
+            for ( String target : targets )
+            {
+                publish( target );
+            }
+        }
+
+        for ( String target : targets )
+        {
+            CompilationFingerprint fingerprint = fingerprints.get( target );
+            try
+            {
+                fingerprint.store();
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Failed to write " + fingerprint.getManifest() + ", " + target
+                    + " will be compiled again on next build", e );
+            }
+            if ( cache != null )
+            {
+                try
+                {
+                    cache.store( fingerprint.getDigest(), getCompilerOutputs( readModule( target ) ) );
+                }
+                catch ( GwtModuleReaderException e )
+                {
+                    throw new MojoExecutionException( e.getMessage(), e );
+                }
+            }
+        }
+    }
+
+    private boolean isStagedOutput()
+    {
+        return stagedOutput && !validateOnly;
+    }
+
+    /**
+     * @return the directories the compiler writes the module output to in the staging directory, with their final
+     *         location
+     */
+    private Map<File, File> getStagedOutputs( String target )
+        throws MojoExecutionException
+    {
+        String modulePath;
+        try
+        {
+            modulePath = readModule( target ).getPath();
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        Map<File, File> outputs = new LinkedHashMap<File, File>();
+        outputs.put( new File( stagingDirectory, modulePath ), new File( getOutputDirectory(), modulePath ) );
+        File defaultDeploy = new File( getOutputDirectory(), "WEB-INF/deploy" );
+        if ( defaultDeploy.equals( getDeployDirectory() ) )
+        {
+            outputs.put( new File( stagingDirectory, "WEB-INF/deploy/" + modulePath ),
+                         new File( defaultDeploy, modulePath ) );
+        }
+        return outputs;
+    }
+
+    /**
+     * Publish the output of a module from the staging directory to the webapp directory, only touching changed files.
+     */
+    private void publish( String target )
+        throws MojoExecutionException
+    {
+        OutputPublisher publisher = new OutputPublisher();
+        for ( Map.Entry<File, File> output : getStagedOutputs( target ).entrySet() )
+        {
+            try
+            {
+                publisher.publish( output.getKey(), output.getValue() );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Failed to publish " + output.getKey() + " to " + output.getValue(),
+                                                  e );
+            }
+        }
+        getLog().info( "Published " + target + ": " + publisher.getCopied() + " file(s) changed, "
+            + publisher.getDeleted() + " removed, " + publisher.getUnchanged() + " unchanged" );
+    }
+
+    /**
+     * Run the compiler, recording the timings of its phases.
+     */
+    private void execute( JavaCommand cmd )
+        throws JavaCommandException
+    {
+        CompilationTimings.OutputParser parser = null;
+        if ( timings != null )
+        {
+            int workers = Integer.parseInt( cmd.getArgs().get( cmd.getArgs().indexOf( "-localWorkers" ) + 1 ) );
+            parser = timings.parse( cmd.getOut(), workers );
+            cmd.setOut( parser );
+        }
+        try
+        {
+            cmd.execute();
+        }
+        finally
+        {
+            if ( parser != null )
+            {
+                parser.finish();
+            }
+        }
+    }
+
+    /**
+     * @return the directories the compiler writes the module output to, by name
+     */
+    private Map<String, File> getCompilerOutputs( GwtModule gwtModule )
+    {
+        String modulePath = gwtModule.getPath();
+        Map<String, File> outputs = new LinkedHashMap<String, File>();
+        outputs.put( "war", new File( getOutputDirectory(), modulePath ) );
+        if ( isExtraEnabled() )
+        {
+            outputs.put( "extra", new File( extra, modulePath ) );
+        }
+        outputs.put( "deploy", new File( getDeployDirectory(), modulePath ) );
+        return outputs;
+    }
+
+    private boolean isExtraEnabled()
+    {
+        return extraParam || compileReport || ( saveSource && saveSourceOutput == null );
+    }
+
+    /**
+     * Replace the GWT libraries of the compiler classpath with their slimmed copies, see {@link SlimClasspath}.
+     */
+    private void addSlimClasspath( JavaCommand cmd )
+        throws MojoExecutionException
+    {
+        synchronized ( this )
+        {
+            if ( classpathSlimmer == null )
+            {
+                List<File> sdk = new ArrayList<File>( getGwtDevJar() );
+                sdk.addAll( getGwtUserJar() );
+                classpathSlimmer = new SlimClasspath( slimClasspathDirectory, sdk, getLog() );
+            }
+        }
+        final SlimClasspath slimmer = classpathSlimmer;
+        cmd.addClassPathProcessors( new ClassPathProcessor()
+        {
+            @Override
+            public void postProcessClassPath( List<File> files )
+            {
+                try
+                {
+                    List<File> slimmed = slimmer.slim( files );
+                    files.clear();
+                    files.addAll( slimmed );
+                }
+                catch ( IOException e )
+                {
+                    getLog().warn( "Failed to slim the GWT compiler classpath, using the original one", e );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Build the GWT compiler command line, without the modules to compile.
+     *
+     * @param workers value for the <code>-localWorkers</code> argument
+     * @param heap maximum heap size of the forked JVM, or <code>null</code> to keep the one from extraJvmArgs
+     */
+    private JavaCommand createCompilerCommand( int workers, String heap )
+        throws MojoExecutionException
+    {
+        JavaCommand cmd = createJavaCommand()
+            .setMainClass( "com.google.gwt.dev.Compiler" )
+            .setDaemons( daemons );
+        if ( heap != null )
+        {
+            setMaxHeap( cmd, heap );
+        }
+        if ( devModule )
+        {
+            cmd.addToClasspath( getDevModuleDirectory() );
+        }
+        if ( gwtSdkFirstInClasspath )
+        {
+            cmd.addToClasspath( getGwtUserJar() )
+               .addToClasspath( getGwtDevJar() );
+        }
+        cmd.addToClasspath( getClasspath( Artifact.SCOPE_COMPILE ) );
+        if ( !gwtSdkFirstInClasspath )
+        {
+            cmd.addToClasspath( getGwtUserJar() )
+               .addToClasspath( getGwtDevJar() );
         }
 
-        for ( String target : modules )
+        cmd.arg( "-logLevel", getLogLevel() )
+            .arg( "-war", ( isStagedOutput() ? stagingDirectory : getOutputDirectory() ).getAbsolutePath() )
+            .arg( "-localWorkers", String.valueOf( workers ) )
+            // optional advanced arguments
+            .arg( checkAssertions, "-checkAssertions" )
+            .arg( draftCompile, "-draftCompile" )
+            .arg( validateOnly, "-validateOnly" )
+            .arg( disableClassMetadata, "-XnoclassMetadata" )
+            .arg( disableCastChecking, "-XnocheckCasts" )
+            .arg( disableRunAsync, "-XnocodeSplitting" )
+            .arg( failOnError, "-failOnError" )
+            .arg( detailedSoyc, "-XdetailedSoyc" )
+            .arg( closureCompiler, "-XclosureCompiler" )
+            .arg( closureFormattedOutput, "-XclosureFormattedOutput" )
+            .arg( compileReport, "-compileReport" )
+            .arg( compilerMetrics, "-XcompilerMetrics" )
+            .arg( "-XfragmentCount", String.valueOf( fragmentCount ) )
+            .arg( !clusterFunctions, "-XnoclusterFunctions" )
+            .arg( !inlineLiteralParameters, "-XnoinlineLiteralParameters" )
+            .arg( !optimizeDataflow, "-XnooptimizeDataflow" )
+            .arg( !ordinalizeEnums, "-XnoordinalizeEnums" )
+            .arg( !removeDuplicateFunctions, "-XnoremoveDuplicateFunctions" )
+            .arg( saveSource, "-saveSource" )
+            .arg( "-sourceLevel", sourceLevel )
+            .arg( enableJsonSoyc, "-XenableJsonSoyc" )
+            .arg( incremental, "-incremental" )
+            .arg( generateJsInteropExports, "-generateJsInteropExports" )
+        ;
+
+        if ( style != null && style.length() > 0 )
+        {
+            cmd.arg( "-style", style );
+        }
+
+        if ( methodNameDisplayMode != null && methodNameDisplayMode.length() > 0 && !methodNameDisplayMode.equals( "NONE" ))
+        {
+            cmd.arg( "-XmethodNameDisplayMode", methodNameDisplayMode );
+        }
+
+        if ( namespace != null && namespace.length() > 0 )
+        {
+            cmd.arg( "-Xnamespace", namespace );
+        }
+
+        if ( saveSourceOutput != null )
+        {
+            cmd.arg( "-saveSourceOutput", saveSourceOutput.getAbsolutePath() );
+        }
+
+        if ( optimizationLevel >= 0 )
         {
-            if ( !compilationRequired( target, getOutputDirectory() ) )
+            cmd.arg( "-optimize" ).arg( Integer.toString( optimizationLevel ) );
+        }
+
+        if ( isExtraEnabled() )
+        {
+            getLog().debug( "create extra directory " );
+            if ( !extra.exists() )
             {
-                continue;
+                extra.mkdirs();
             }
-            cmd.arg( target );
-            upToDate = false;
+            cmd.arg( "-extra" ).arg( extra.getAbsolutePath() );
+        }
+        else
+        {
+            getLog().debug( "NOT create extra directory " );
         }
 
-        cmd.setPrintCommandOnError(printJavaCommandOnError);
+        addCoverageArgument( cmd );
+        addCompileSourceArtifacts( cmd );
+        addArgumentDeploy(cmd);
+        addArgumentGen( cmd );
+        addPersistentUnitCache(cmd);
+        if ( pruneClasspath )
+        {
+            addClasspathPruning( cmd );
+        }
+        if ( slimClasspath )
+        {
+            addSlimClasspath( cmd );
+        }
 
-        if ( !upToDate )
+        if ( workDir != null )
         {
-            try
+            cmd.arg( "-workDir" ).arg( String.valueOf( workDir ) );
+        }
+
+        if (compilerArgs != null) {
+            for (String compilerArg : compilerArgs)
             {
-                cmd.execute();
+                cmd.arg(compilerArg);
             }
-            catch ( JavaCommandException e )
+        }
+
+        cmd.setPrintCommandOnError(printJavaCommandOnError);
+        return cmd;
+    }
+
+    /**
+     * Replace any -Xmx option coming from extraJvmArgs with the given maximum heap size.
+     */
+    static void setMaxHeap( JavaCommand cmd, String heap )
+    {
+        for ( Iterator<String> it = cmd.getJvmArgs().iterator(); it.hasNext(); )
+        {
+            if ( it.next().startsWith( "-Xmx" ) )
             {
-                throw new MojoExecutionException( e.getMessage(), e );
+                it.remove();
             }
         }
+        cmd.getJvmArgs().add( "-Xmx" + heap );
+    }
+
+    /**
+     * @param forks number of compiler processes sharing the heap budget
+     * @return the maximum heap size of each forked compiler, or <code>null</code> if no heap budget is configured
+     */
+    String getForkHeap( int forks )
+        throws MojoExecutionException
+    {
+        String budget = StringUtils.isEmpty( compilerHeapBudget ) ? tunedHeapBudget : compilerHeapBudget;
+        if ( StringUtils.isEmpty( budget ) )
+        {
+            return null;
+        }
+        long megabytes = parseMemorySize( budget ) / ( 1024 * 1024 ) / forks;
+        if ( megabytes < 1 )
+        {
+            throw new MojoExecutionException( "compilerHeapBudget " + budget + " is too small for " + forks
+                + " compiler processes" );
+        }
+        return megabytes + "m";
+    }
+
+    /**
+     * Parse a memory size using the same syntax as the -Xmx JVM option (e.g. 4096m, 4g).
+     */
+    static long parseMemorySize( String size )
+        throws MojoExecutionException
+    {
+        String value = size.trim().toLowerCase( Locale.ENGLISH );
+        long unit = 1;
+        switch ( value.isEmpty() ? ' ' : value.charAt( value.length() - 1 ) )
+        {
+            case 'k':
+                unit = 1024L;
+                break;
+            case 'm':
+                unit = 1024L * 1024;
+                break;
+            case 'g':
+                unit = 1024L * 1024 * 1024;
+                break;
+            case 't':
+                unit = 1024L * 1024 * 1024 * 1024;
+                break;
+            default:
+                break;
+        }
+        if ( unit > 1 )
+        {
+            value = value.substring( 0, value.length() - 1 );
+        }
+        try
+        {
+            return Long.parseLong( value ) * unit;
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new MojoExecutionException( "Invalid memory size " + size, e );
+        }
+    }
+
+    private static void prefixOutput( JavaCommand cmd, String prefix )
+    {
+        cmd.setOut( OutputPipeline.prefix( cmd.getOut(), prefix ) );
+        cmd.setErr( OutputPipeline.prefix( cmd.getErr(), prefix ) );
     }
 
     private int getLocalWorkers()
@@ -558,28 +1660,33 @@ public class CompileMojo
         {
             return localWorkers;
         }
+        if ( tunedWorkers > 0 )
+        {
+            return tunedWorkers;
+        }
         return Runtime.getRuntime().availableProcessors();
     }
 
     /**
-     * Try to find out, if there are stale sources. If aren't some, we don't have to compile... ...this heuristic
-     * doesn't take into account, that there could be updated dependencies. But for this case, as 'clean compile' could
-     * be executed which would force a compilation.
+     * Compare the inputs of the module compilation with the ones recorded by the last successful compilation. Inputs
+     * are compared by content, so that touched files or a fresh checkout don't trigger a compilation, while changes to
+     * dependencies or compiler arguments do.
      *
      * @param module Name of the GWT module to compile
      * @param output Output path
-     * @return true if compilation is required (i.e. stale sources are found)
+     * @param compilerInputs inputs shared by all modules (classpath and compiler arguments)
+     * @param fingerprints where to register the module fingerprint, to be stored once the compilation succeeded
+     * @return true if compilation is required (i.e. some inputs changed)
      * @throws MojoExecutionException When sources scanning fails
-     * @author Alexander Gordt
      */
-    private boolean compilationRequired( String module, File output )
+    private boolean compilationRequired( String module, File output, CompilationFingerprint compilerInputs,
+                                         Map<String, CompilationFingerprint> fingerprints )
         throws MojoExecutionException
     {
         getLog().debug( "**Checking if compilation is required for " + module );
         try
         {
-
-        	GwtModule gwtModule = readModule( module );
+            GwtModule gwtModule = readModule( module );
             if ( gwtModule.getEntryPoints().size() == 0 )
             {
                 getLog().info( gwtModule.getName() + " has no EntryPoint - compilation skipped" );
@@ -589,84 +1696,289 @@ public class CompileMojo
             }
             getLog().debug( "Module has an entrypoint" );
 
+            CompilationFingerprint fingerprint =
+                new CompilationFingerprint( new File( fingerprintDirectory, module + ".properties" ) );
+            fingerprint.addAll( compilerInputs );
+            addModuleInputs( fingerprint, gwtModule );
+            fingerprints.put( module, fingerprint );
+
             if ( force )
             {
                 return true;
             }
             getLog().debug( "Compilation not forced");
-            
-            String modulePath = gwtModule.getPath();
 
-            String outputTarget = modulePath + "/" + modulePath + ".nocache.js";
-            File outputTargetFile = new File( output, outputTarget );
+            String modulePath = gwtModule.getPath();
+            File outputTargetFile = new File( output, modulePath + "/" + modulePath + ".nocache.js" );
             // Require compilation if no js file present in target.
             if ( !outputTargetFile.exists() )
             {
-                return true;
+                return !restoreFromCache( gwtModule, fingerprint );
             }
             getLog().debug( "Output file exists");
-            
-            File moduleFile = gwtModule.getSourceFile();
-            if(moduleFile == null) {
-            	return true; //the module was read from something like an InputStream; always recompile this because we can't make any other choice
-            }
-            getLog().debug( "There is a module source file (not an input stream");
-            
-            //If input is newer than target, recompile
-            if(moduleFile.lastModified() > outputTargetFile.lastModified()) 
-            {
-                getLog().debug( "Module file has been modified since the output file was created; recompiling" );
-            	return true;
-            }
-            getLog().debug( "The module XML hasn't been updated");
-
-            // js file already exists, but may not be up-to-date with project source files
-            SingleTargetSourceMapping singleTargetMapping = new SingleTargetSourceMapping( ".java", outputTarget );
-            StaleSourceScanner scanner = new StaleSourceScanner();
-            scanner.addSourceMapping( singleTargetMapping );
-
-            SingleTargetSourceMapping uiBinderMapping = new SingleTargetSourceMapping( ".ui.xml", outputTarget );
-            scanner.addSourceMapping( uiBinderMapping );
-
-            Collection<File> compileSourceRoots = new HashSet<File>();
-            for (String sourceRoot : getProject().getCompileSourceRoots()) {
-                for (String sourcePackage : gwtModule.getSources()) {
-                    String packagePath = gwtModule.getPackage().replace( '.', File.separatorChar );
-                    File sourceDirectory = new File (sourceRoot + File.separatorChar + packagePath + File.separator + sourcePackage);
-                    if(sourceDirectory.exists()) {
-                        getLog().debug(" Looking in a source directory "+sourceDirectory.getAbsolutePath() + " for possible changes");
-                        compileSourceRoots.add(sourceDirectory);					
-                    }
-                }
+
+            if ( fingerprint.isUpToDate() )
+            {
+                getLog().info( module + " is up to date. GWT compilation skipped" );
+                return false;
+            }
+            if ( getLog().isDebugEnabled() )
+            {
+                getLog().debug( "Inputs changed since last compilation: " + fingerprint.getChangedInputs() );
+            }
+            return !restoreFromCache( gwtModule, fingerprint );
+        }
+        catch ( GwtModuleReaderException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to compute the inputs of module " + module, e );
+        }
+    }
+
+    /**
+     * @return true if the module output has been restored from the compilation cache
+     */
+    private boolean restoreFromCache( GwtModule gwtModule, CompilationFingerprint fingerprint )
+        throws IOException
+    {
+        if ( cache == null || !cache.restore( fingerprint.getDigest(), getCompilerOutputs( gwtModule ) ) )
+        {
+            return false;
+        }
+        fingerprint.store();
+        getLog().info( gwtModule.getName() + " restored from the GWT compilation cache. GWT compilation skipped" );
+        return true;
+    }
+
+    /**
+     * Register the inputs shared by all modules : the compiler arguments and the classpath, including the project
+     * output directory where the generators, linkers and property providers declared by the modules are compiled. The
+     * project's own source and resource directories are left to
+     * {@link #addModuleInputs(CompilationFingerprint, GwtModule)}.
+     */
+    CompilationFingerprint getCompilerInputs( JavaCommand cmd )
+        throws MojoExecutionException
+    {
+        CompilationFingerprint fingerprint =
+            new CompilationFingerprint( new File( fingerprintDirectory, "compiler.properties" ) );
+
+        List<String> args = new ArrayList<String>( cmd.getArgs() );
+        int localWorkersIndex = args.indexOf( "-localWorkers" );
+        if ( localWorkersIndex >= 0 )
+        {
+            // doesn't change the compiler output
+            args.subList( localWorkersIndex, localWorkersIndex + 2 ).clear();
+        }
+        for ( ListIterator<String> it = args.listIterator(); it.hasNext(); )
+        {
+            // so that the fingerprint doesn't depend on the project location
+            File file = new File( it.next() );
+            if ( file.isAbsolute() )
+            {
+                it.set( getInputName( file ) );
+            }
+        }
+        fingerprint.addValue( "mainClass", cmd.getMainClass() );
+        fingerprint.addValue( "args", StringUtils.join( args.iterator(), " " ) );
+        fingerprint.addValue( "systemProperties", new TreeMap<Object, Object>( cmd.getSystemProperties() ).toString() );
+        List<String> systemProperties = new ArrayList<String>();
+        for ( String jvmArg : cmd.getJvmArgs() )
+        {
+            if ( jvmArg.startsWith( "-D" ) )
+            {
+                systemProperties.add( jvmArg );
             }
+        }
+        fingerprint.addValue( "jvmArgs", StringUtils.join( systemProperties.iterator(), " " ) );
 
-            for ( File sourceRoot : compileSourceRoots )
+        Set<File> projectDirectories = new HashSet<File>( getSourceDirectories() );
+        List<String> classpath = new ArrayList<String>();
+        try
+        {
+            for ( File entry : cmd.getClasspath() )
             {
-                if ( !sourceRoot.isDirectory() )
+                String name = getInputName( entry );
+                classpath.add( name );
+                if ( projectDirectories.contains( entry.getAbsoluteFile() ) )
                 {
                     continue;
                 }
-                try
+                if ( entry.isDirectory() )
+                {
+                    // the project or a reactor project output directory, with classes and filtered resources
+                    fingerprint.addDirectory( name, entry );
+                }
+                else
+                {
+                    fingerprint.addFile( name, entry );
+                }
+            }
+            fingerprint.addValue( "classpath", StringUtils.join( classpath.iterator(), File.pathSeparator ) );
+
+            // only used as a hash cache for the next build
+            fingerprint.store();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to compute the GWT compiler classpath fingerprint", e );
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Register the module specific inputs, walking the whole inherited modules graph : module descriptors, source,
+     * super-source, public and resource paths, and the resources referenced by ClientBundles and UiBinder templates.
+     * Modules read from a dependency are covered by the classpath fingerprint.
+     */
+    private void addModuleInputs( CompilationFingerprint fingerprint, GwtModule gwtModule )
+        throws GwtModuleReaderException, IOException
+    {
+        Set<GwtModule> graph = new LinkedHashSet<GwtModule>();
+        graph.add( gwtModule );
+        graph.addAll( gwtModule.getInherits() );
+        for ( GwtModule module : graph )
+        {
+            addModuleFile( fingerprint, module );
+
+            List<String> paths = new ArrayList<String>();
+            paths.addAll( Arrays.asList( module.getSources() ) );
+            paths.addAll( Arrays.asList( module.getSuperSources() ) );
+            paths.addAll( Arrays.asList( module.getPublicPaths() ) );
+            paths.addAll( Arrays.asList( module.getResourcePaths() ) );
+
+            String packagePath = module.getPackage().replace( '.', '/' );
+            for ( File root : getSourceDirectories() )
+            {
+                for ( String path : paths )
                 {
-                    if ( !scanner.getIncludedSources( sourceRoot, output ).isEmpty() )
+                    File directory = new File( root, packagePath + "/" + StringUtils.defaultString( path ) );
+                    if ( directory.isDirectory() )
                     {
-                        getLog().debug( "found stale source in " + sourceRoot + " compared with " + output );
-                        return true;
+                        getLog().debug( " Looking in a source directory " + directory.getAbsolutePath()
+                            + " for possible changes" );
+                        addSourceDirectory( fingerprint, directory );
                     }
                 }
-                catch ( InclusionScanException e )
+            }
+        }
+    }
+
+    private void addSourceDirectory( CompilationFingerprint fingerprint, File directory )
+        throws IOException
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                addSourceDirectory( fingerprint, file );
+                continue;
+            }
+            String name = getInputName( file );
+            fingerprint.addFile( name, file );
+            if ( ResourceReferences.accept( file ) )
+            {
+                addReferencedResources( fingerprint, name, file );
+            }
+        }
+    }
+
+    /**
+     * Register the resources referenced by a ClientBundle or UiBinder template, that may live outside of the module
+     * paths. References only depend on the file content, so they are only searched again in modified files.
+     */
+    private void addReferencedResources( CompilationFingerprint fingerprint, String name, File file )
+        throws IOException
+    {
+        String references = fingerprint.getRecordedValue( "references." + name );
+        if ( !fingerprint.isUnchanged( name ) )
+        {
+            List<String> found = ResourceReferences.find( file );
+            references = found.isEmpty() ? null : StringUtils.join( found.iterator(), "," );
+        }
+        if ( references == null )
+        {
+            return;
+        }
+        fingerprint.addValue( "references." + name, references );
+
+        for ( String reference : StringUtils.split( references, "," ) )
+        {
+            File resource = new File( file.getParentFile(), reference );
+            if ( !resource.isFile() )
+            {
+                // not relative to the package, look for it as an absolute path in the project
+                for ( File root : getSourceDirectories() )
                 {
-                    throw new MojoExecutionException( "Error scanning source root: \'" + sourceRoot + "\' "
-                        + "for stale files to recompile.", e );
+                    File candidate = new File( root, StringUtils.stripStart( reference, "/" ) );
+                    if ( candidate.isFile() )
+                    {
+                        resource = candidate;
+                        break;
+                    }
                 }
             }
-            getLog().info( module + " is up to date. GWT compilation skipped" );
-            return false;
+            if ( resource.isFile() )
+            {
+                resource = resource.getCanonicalFile();
+                fingerprint.addFile( getInputName( resource ), resource );
+            }
+            // else the resource comes from a dependency, covered by the classpath fingerprint
         }
-        catch ( GwtModuleReaderException e )
+    }
+
+    private void addModuleFile( CompilationFingerprint fingerprint, GwtModule gwtModule )
+        throws IOException
+    {
+        File moduleFile = gwtModule.getSourceFile();
+        // a module read from the classpath is covered by the classpath fingerprint
+        if ( moduleFile != null )
         {
-            throw new MojoExecutionException( e.getMessage(), e );
+            fingerprint.addFile( getInputName( moduleFile ), moduleFile );
+        }
+    }
+
+    /**
+     * @return the project compile source roots and resource directories
+     */
+    private List<File> getSourceDirectories()
+    {
+        List<File> directories = new ArrayList<File>();
+        for ( String sourceRoot : getProject().getCompileSourceRoots() )
+        {
+            directories.add( new File( sourceRoot ).getAbsoluteFile() );
+        }
+        for ( Resource resource : getProject().getResources() )
+        {
+            directories.add( new File( resource.getDirectory() ).getAbsoluteFile() );
+        }
+        return directories;
+    }
+
+    /**
+     * @return a name for the file that doesn't depend on the project or local repository location
+     */
+    private String getInputName( File file )
+    {
+        String path = file.getAbsolutePath();
+        String basedir = getProject().getBasedir().getAbsolutePath() + File.separator;
+        String repository = new File( getLocalRepository().getBasedir() ).getAbsolutePath() + File.separator;
+        if ( path.startsWith( basedir ) )
+        {
+            path = path.substring( basedir.length() );
+        }
+        else if ( path.startsWith( repository ) )
+        {
+            path = "${localRepository}/" + path.substring( repository.length() );
         }
+        return path.replace( File.separatorChar, '/' );
     }
 
     private void addCoverageArgument( JavaCommand cmd )
@@ -0,0 +1,637 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.mojo.gwt.daemon.CompilerDaemon;
+import org.codehaus.mojo.gwt.daemon.DaemonProtocol;
+import org.codehaus.mojo.gwt.daemon.ExitInterceptor;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Runs {@link JavaCommand}s in warm {@link CompilerDaemon}s rather than in a new JVM.
+ * <p>
+ * Daemons are either persistent, reused by later builds until idle for too long, or bound to the build session :
+ * they are not shared with other builds and exit with the Maven JVM.
+ * <p>
+ * Daemons are keyed by everything that is fixed when a JVM starts : java executable, JVM arguments, system properties,
+ * environment, working directory and classpath, then by the state of the classpath entries so that a rebuilt jar or
+ * recompiled generator starts a new daemon. The daemons of the previous state are then shut down, rather than left
+ * idle until they time out. Each key has numbered slots, each one holding at most one daemon used by one build at a
+ * time (slots are locked), so that concurrent compilations use as many daemons.
+ *
+ * @since 2.12.0
+ */
+public class CompilerDaemons
+{
+    private static final String COMPILER = "com.google.gwt.dev.Compiler";
+
+    /** Maximum time to wait for a new daemon to be listening */
+    private static final long STARTUP_TIMEOUT = 60 * 1000L;
+
+    private final File directory;
+
+    private final int idleTimeout;
+
+    private final int maxHeapUsage;
+
+    /** Identifies this Maven JVM, to keep session daemons private to it */
+    private static final String SESSION = Long.toHexString( new SecureRandom().nextLong() );
+
+    /** Session daemons, whose standard input must stay open as long as the Maven JVM runs */
+    private static final List<Process> SESSION_DAEMONS = new ArrayList<Process>();
+
+    private final boolean persistent;
+
+    private final Log log;
+
+    /**
+     * @param directory where daemons register themselves
+     * @param idleTimeout minutes after which an unused daemon exits
+     * @param maxHeapUsage percentage of the heap that may remain in use after a compilation before the daemon exits
+     * @param log plugin logger
+     */
+    public CompilerDaemons( File directory, int idleTimeout, int maxHeapUsage, Log log )
+    {
+        this( directory, idleTimeout, maxHeapUsage, true, log );
+    }
+
+    /**
+     * @param directory where daemons register themselves
+     * @param idleTimeout minutes after which an unused daemon exits
+     * @param maxHeapUsage percentage of the heap that may remain in use after a command before the daemon exits
+     * @param persistent true to keep daemons for later builds, false to have them exit with the Maven JVM
+     * @param log plugin logger
+     */
+    public CompilerDaemons( File directory, int idleTimeout, int maxHeapUsage, boolean persistent, Log log )
+    {
+        this.directory = directory;
+        this.idleTimeout = idleTimeout;
+        this.maxHeapUsage = maxHeapUsage;
+        this.persistent = persistent;
+        this.log = log;
+    }
+
+    /**
+     * Run the command in a daemon, starting one if none is available.
+     *
+     * @param cmd the command, with its classpath already processed
+     * @param javaCommand the java executable
+     * @return false if the daemon can't run this command, which then has to be forked
+     */
+    boolean execute( JavaCommand cmd, String javaCommand )
+        throws JavaCommandException
+    {
+        List<String> jvm = new ArrayList<String>();
+        jvm.add( javaCommand );
+        jvm.addAll( cmd.getJvmArgs() );
+        for ( Map.Entry<?, ?> entry : new TreeMap<Object, Object>( cmd.getSystemProperties() ).entrySet() )
+        {
+            jvm.add( "-D" + entry.getKey() + "=" + entry.getValue() );
+        }
+        if ( !COMPILER.equals( cmd.getMainClass() ) && !isExitInterceptionSupported( jvm ) )
+        {
+            log.debug( "A GWT compiler daemon can't intercept System.exit with " + jvm + ", forking "
+                + cmd.getMainClass() );
+            return false;
+        }
+        List<File> classpath = new ArrayList<File>( cmd.getClasspath() );
+        classpath.add( getDaemonClassPathElement() );
+
+        String key = getKey( jvm, cmd.getEnv(), classpath );
+        String name = key + "-" + getState( classpath );
+        File home = new File( directory, persistent ? name : name + "-" + SESSION );
+        boolean created = home.mkdirs();
+        try
+        {
+            // handshake files hold the secrets of the daemons
+            CompilerDaemon.restrictToOwner( directory );
+            CompilerDaemon.restrictToOwner( home );
+        }
+        catch ( IOException e )
+        {
+            throw new JavaCommandException( "Failed to restrict access to " + home, e );
+        }
+        if ( created )
+        {
+            retireSuperseded( key, home );
+        }
+        for ( int slot = 0;; slot++ )
+        {
+            File handshake = new File( home, "slot-" + slot + ".properties" );
+            RandomAccessFile lockFile = null;
+            FileLock lock = null;
+            try
+            {
+                lockFile = new RandomAccessFile( new File( home, "slot-" + slot + ".lock" ), "rw" );
+                lock = tryLock( lockFile.getChannel() );
+                if ( lock != null )
+                {
+                    return execute( cmd, jvm, classpath, handshake );
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new JavaCommandException( "Failed to use GWT compiler daemon in " + home, e );
+            }
+            finally
+            {
+                release( lock, lockFile );
+            }
+        }
+    }
+
+    private boolean execute( JavaCommand cmd, List<String> jvm, List<File> classpath, File handshake )
+        throws IOException, JavaCommandException
+    {
+        Socket socket = connect( handshake );
+        if ( socket == null )
+        {
+            start( cmd, jvm, classpath, handshake );
+            socket = connect( handshake );
+            if ( socket == null )
+            {
+                throw new JavaCommandException( "Failed to connect to GWT compiler daemon, see "
+                    + getDaemonLog( handshake ) );
+            }
+        }
+        else
+        {
+            log.debug( "Reusing GWT compiler daemon " + handshake );
+        }
+        if ( !COMPILER.equals( cmd.getMainClass() )
+            && !Boolean.parseBoolean( getHandshake( handshake ).getProperty( "exitInterception" ) ) )
+        {
+            log.debug( "GWT compiler daemon " + handshake + " can't intercept System.exit, forking "
+                + cmd.getMainClass() );
+            socket.close();
+            return false;
+        }
+
+        try
+        {
+            if ( cmd.getTimeOut() > 0 )
+            {
+                socket.setSoTimeout( cmd.getTimeOut() * 1000 );
+            }
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+            DaemonProtocol.writeString( out, getHandshake( handshake ).getProperty( "secret" ) );
+            DaemonProtocol.writeString( out, cmd.getMainClass() );
+            out.writeInt( cmd.getArgs().size() );
+            for ( String arg : cmd.getArgs() )
+            {
+                DaemonProtocol.writeString( out, arg );
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+            while ( true )
+            {
+                int type = in.readByte();
+                if ( type == DaemonProtocol.EXIT )
+                {
+                    int status = in.readInt();
+                    if ( status != 0 )
+                    {
+                        throw new JavaCommandException( "Command failed with status " + status );
+                    }
+                    return true;
+                }
+                String line = DaemonProtocol.readString( in );
+                ( type == DaemonProtocol.STDERR ? cmd.getErr() : cmd.getOut() ).consumeLine( line );
+            }
+        }
+        catch ( SocketTimeoutException e )
+        {
+            throw new JavaCommandException( "Time-out on GWT compiler daemon execution", e );
+        }
+        catch ( EOFException e )
+        {
+            // most probably out of memory
+            handshake.delete();
+            throw new JavaCommandException( "GWT compiler daemon exited unexpectedly, see " + getDaemonLog( handshake ),
+                                            e );
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /**
+     * Shut down the daemons started with the same key for a previous state of the classpath, by this build or by a
+     * previous one when they are persistent. Daemons in use by another build are left alone, to be shut down by a
+     * later build or when idle.
+     *
+     * @param key key of the daemons to retire
+     * @param home directory of the daemons to keep
+     */
+    void retireSuperseded( String key, File home )
+    {
+        File[] homes = directory.listFiles();
+        if ( homes == null )
+        {
+            return;
+        }
+        for ( File superseded : homes )
+        {
+            String name = superseded.getName();
+            if ( superseded.equals( home ) || !name.startsWith( key + "-" ) )
+            {
+                continue;
+            }
+            // name is key-state for persistent daemons, key-state-session for session ones
+            String[] parts = name.substring( key.length() + 1 ).split( "-" );
+            if ( parts.length == 1 || ( parts.length == 2 && parts[1].equals( SESSION ) ) )
+            {
+                retire( superseded );
+            }
+        }
+    }
+
+    private void retire( File home )
+    {
+        File[] slots = home.listFiles( new FilenameFilter()
+        {
+            public boolean accept( File dir, String name )
+            {
+                return name.matches( "slot-\\d+\\.lock" );
+            }
+        } );
+        if ( slots == null )
+        {
+            return;
+        }
+        boolean inUse = false;
+        for ( File slot : slots )
+        {
+            File handshake = new File( slot.getPath().replaceFirst( "\\.lock$", ".properties" ) );
+            RandomAccessFile lockFile = null;
+            FileLock lock = null;
+            try
+            {
+                lockFile = new RandomAccessFile( slot, "rw" );
+                lock = tryLock( lockFile.getChannel() );
+                if ( lock == null )
+                {
+                    inUse = true;
+                    continue;
+                }
+                shutdown( handshake );
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Failed to shut down GWT compiler daemon " + handshake + ": " + e.getMessage() );
+            }
+            finally
+            {
+                release( lock, lockFile );
+            }
+        }
+        if ( !inUse )
+        {
+            try
+            {
+                FileUtils.deleteDirectory( home );
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Failed to delete " + home + ": " + e.getMessage() );
+            }
+        }
+    }
+
+    private void shutdown( File handshake )
+        throws IOException
+    {
+        Socket socket = connect( handshake );
+        if ( socket == null )
+        {
+            return;
+        }
+        log.debug( "Shutting down superseded GWT compiler daemon " + handshake );
+        try
+        {
+            socket.setSoTimeout( (int) STARTUP_TIMEOUT );
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+            DaemonProtocol.writeString( out, getHandshake( handshake ).getProperty( "secret" ) );
+            DaemonProtocol.writeString( out, DaemonProtocol.SHUTDOWN );
+            out.writeInt( 0 );
+            out.flush();
+            // wait for the daemon to acknowledge
+            new DataInputStream( socket.getInputStream() ).readByte();
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return a socket connected to the daemon registered in the handshake file, or <code>null</code> if there is no
+     *         such daemon
+     */
+    private Socket connect( File handshake )
+    {
+        Properties properties = getHandshake( handshake );
+        if ( properties == null )
+        {
+            return null;
+        }
+        try
+        {
+            return new Socket( InetAddress.getByName( null ), Integer.parseInt( properties.getProperty( "port" ) ) );
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Stale GWT compiler daemon " + handshake + ": " + e.getMessage() );
+            handshake.delete();
+            return null;
+        }
+        catch ( NumberFormatException e )
+        {
+            handshake.delete();
+            return null;
+        }
+    }
+
+    /**
+     * @param jvm java executable and JVM arguments of the daemon
+     * @return true if the daemon JVM will let it intercept <code>System.exit</code>
+     */
+    static boolean isExitInterceptionSupported( List<String> jvm )
+    {
+        String securityManager = null;
+        for ( String arg : jvm )
+        {
+            if ( arg.startsWith( "-Djava.security.manager=" ) )
+            {
+                // the last one wins
+                securityManager = arg.substring( "-Djava.security.manager=".length() );
+            }
+        }
+        return ExitInterceptor.isSupported( JavaCommand.getJavaVersion( jvm.get( 0 ) ), securityManager );
+    }
+
+    private void start( JavaCommand cmd, List<String> jvm, List<File> classpath, File handshake )
+        throws IOException, JavaCommandException
+    {
+        List<String> command = new ArrayList<String>( jvm );
+        command.add( CompilerDaemon.class.getName() );
+        command.add( handshake.getAbsolutePath() );
+        command.add( String.valueOf( idleTimeout ) );
+        command.add( String.valueOf( maxHeapUsage ) );
+        command.add( String.valueOf( isExitInterceptionSupported( jvm ) ) );
+        if ( !persistent )
+        {
+            command.add( "session" );
+        }
+
+        ProcessBuilder builder = new ProcessBuilder( command );
+        builder.environment().put( "CLASSPATH", JavaCommand.toPath( classpath ) );
+        for ( Map.Entry<?, ?> entry : cmd.getEnv().entrySet() )
+        {
+            builder.environment().put( (String) entry.getKey(), (String) entry.getValue() );
+        }
+        builder.redirectErrorStream( true );
+        builder.redirectOutput( ProcessBuilder.Redirect.appendTo( getDaemonLog( handshake ) ) );
+        log.info( "Starting GWT compiler daemon " + handshake.getParentFile().getName() );
+        log.debug( "Execute command :\n" + command );
+        Process process = builder.start();
+        if ( !persistent )
+        {
+            synchronized ( SESSION_DAEMONS )
+            {
+                SESSION_DAEMONS.add( process );
+            }
+        }
+        else
+        {
+            process.getOutputStream().close();
+        }
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while ( !handshake.isFile() )
+        {
+            if ( !isAlive( process ) )
+            {
+                throw new JavaCommandException( "GWT compiler daemon failed to start, see " + getDaemonLog( handshake ) );
+            }
+            if ( System.currentTimeMillis() > deadline )
+            {
+                process.destroy();
+                throw new JavaCommandException( "Time-out waiting for GWT compiler daemon to start, see "
+                    + getDaemonLog( handshake ) );
+            }
+            try
+            {
+                Thread.sleep( 100 );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new JavaCommandException( "Interrupted while starting GWT compiler daemon", e );
+            }
+        }
+    }
+
+    private static boolean isAlive( Process process )
+    {
+        try
+        {
+            process.exitValue();
+            return false;
+        }
+        catch ( IllegalThreadStateException e )
+        {
+            return true;
+        }
+    }
+
+    private static File getDaemonLog( File handshake )
+    {
+        return new File( handshake.getPath().replaceFirst( "\\.properties$", ".log" ) );
+    }
+
+    private static Properties getHandshake( File handshake )
+    {
+        if ( !handshake.isFile() )
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( handshake );
+            properties.load( in );
+            return properties;
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    private static FileLock tryLock( FileChannel channel )
+        throws IOException
+    {
+        try
+        {
+            return channel.tryLock();
+        }
+        catch ( OverlappingFileLockException e )
+        {
+            // held by another thread of this build
+            return null;
+        }
+    }
+
+    private static void release( FileLock lock, RandomAccessFile lockFile )
+    {
+        try
+        {
+            if ( lock != null )
+            {
+                lock.release();
+            }
+            if ( lockFile != null )
+            {
+                lockFile.close();
+            }
+        }
+        catch ( IOException e )
+        {
+            // released anyway when the build exits
+        }
+    }
+
+    /**
+     * @return the jar (or directory) of the plugin, holding the daemon main class
+     */
+    private static File getDaemonClassPathElement()
+        throws JavaCommandException
+    {
+        try
+        {
+            return new File( CompilerDaemon.class.getProtectionDomain().getCodeSource().getLocation().toURI() );
+        }
+        catch ( URISyntaxException e )
+        {
+            throw new JavaCommandException( "Failed to locate GWT compiler daemon classes", e );
+        }
+    }
+
+    /**
+     * @return digest of everything fixed when a daemon JVM starts, but the state of the classpath entries
+     */
+    static String getKey( List<String> jvm, Properties env, List<File> classpath )
+    {
+        StringBuilder key = new StringBuilder();
+        key.append( jvm ).append( '\n' );
+        key.append( new TreeMap<Object, Object>( env ) ).append( '\n' );
+        key.append( System.getProperty( "user.dir" ) ).append( '\n' );
+        for ( File file : classpath )
+        {
+            key.append( file.getAbsolutePath() ).append( '\n' );
+        }
+        return Digests.digest( key.toString() ).substring( 0, 20 );
+    }
+
+    /**
+     * @return digest of the state of the classpath entries, as classes loaded by a daemon won't be reloaded
+     */
+    static String getState( List<File> classpath )
+    {
+        StringBuilder state = new StringBuilder();
+        for ( File file : classpath )
+        {
+            state.append( getStamp( file ) ).append( '\n' );
+        }
+        return Digests.digest( state.toString() ).substring( 0, 12 );
+    }
+
+    /**
+     * @return size and modification time of a jar, or number and latest modification time of the classes of a
+     *         directory
+     */
+    private static String getStamp( File file )
+    {
+        if ( !file.isDirectory() )
+        {
+            return file.length() + "," + file.lastModified();
+        }
+        long[] stamp = new long[2];
+        addClasses( file, stamp );
+        return stamp[0] + "," + stamp[1];
+    }
+
+    private static void addClasses( File directory, long[] stamp )
+    {
+        File[] files = directory.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                addClasses( file, stamp );
+            }
+            else if ( file.getName().endsWith( ".class" ) )
+            {
+                stamp[0]++;
+                stamp[1] = Math.max( stamp[1], file.lastModified() );
+            }
+        }
+    }
+}
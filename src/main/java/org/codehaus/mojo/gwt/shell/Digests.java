@@ -0,0 +1,108 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 digests written as hexadecimal strings, used to name cached files and to detect changed inputs.
+ *
+ * @since 2.12.0
+ */
+final class Digests
+{
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private Digests()
+    {
+    }
+
+    static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // every JRE must support SHA-1
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * @return the digest of the UTF-8 bytes of the value
+     */
+    static String digest( String value )
+    {
+        return toHex( newDigest().digest( value.getBytes( UTF8 ) ) );
+    }
+
+    /**
+     * @return the digest of the file content
+     */
+    static String digest( File file )
+        throws IOException
+    {
+        MessageDigest digest = newDigest();
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[65536];
+            int n;
+            while ( ( n = in.read( buffer ) ) > 0 )
+            {
+                digest.update( buffer, 0, n );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return toHex( digest.digest() );
+    }
+
+    static String toHex( byte[] bytes )
+    {
+        return toHex( bytes, bytes.length );
+    }
+
+    /**
+     * @param length number of leading bytes to write, for a shorter name when collisions don't matter much
+     */
+    static String toHex( byte[] bytes, int length )
+    {
+        StringBuilder hex = new StringBuilder( length * 2 );
+        for ( int i = 0; i < length; i++ )
+        {
+            hex.append( Character.forDigit( ( bytes[i] >> 4 ) & 0xF, 16 ) )
+               .append( Character.forDigit( bytes[i] & 0xF, 16 ) );
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,454 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resource usage of the processes forked by a goal : wall time, CPU time and peak resident memory sampled from
+ * <code>/proc</code> (on Linux only), and GC pauses read from a unified GC log enabled on the forked JVM (Java 9 or
+ * later). This tells whether a slow goal was CPU bound, short of memory or busy collecting garbage.
+ * <p>
+ * The forked process is sampled in <code>/proc</code> using the pid of the launched {@link Process}, once its command
+ * line holds the unique system property added to it (a shell that does not replace itself by the JVM is not sampled).
+ * Its CPU time is the one of its last sample, taken every {@value #SAMPLE_INTERVAL} ms.
+ *
+ * @since 2.12.0
+ */
+public class ForkTelemetry
+{
+    private static final long SAMPLE_INTERVAL = 200;
+
+    /** USER_HZ, the unit of CPU times in /proc, which is 100 on all common Linux platforms */
+    private static final long CLOCK_TICKS = 100;
+
+    private static final String MARKER = "-Dgwt.fork.id=";
+
+    private static final Pattern GC_PAUSE = Pattern.compile( "\\bPause\\b.*\\s(\\d+(?:\\.\\d+)?)ms\\s*$" );
+
+    private static final File PROC = new File( "/proc" );
+
+    private final File directory;
+
+    private final List<Fork> forks = new ArrayList<Fork>();
+
+    private int count;
+
+    /**
+     * @param directory where GC logs of forked JVMs are written while they run
+     */
+    public ForkTelemetry( File directory )
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * Start measuring a process about to be forked.
+     *
+     * @param javaCommand java executable of the forked JVM
+     * @param mainClass main class of the forked JVM
+     * @param args arguments of the main class
+     */
+    synchronized Fork start( String javaCommand, String mainClass, List<String> args )
+    {
+        String label = mainClass.substring( mainClass.lastIndexOf( '.' ) + 1 );
+        if ( !args.isEmpty() && !args.get( args.size() - 1 ).startsWith( "-" ) )
+        {
+            label += " " + args.get( args.size() - 1 );
+        }
+        String id = Long.toHexString( System.nanoTime() ) + "-" + ( ++count );
+        File gcLog = null;
+        String path = new File( directory, id + ".gc.log" ).getAbsolutePath();
+        // -Xlog options are separated by colons, and a path with spaces would need quoting
+        if ( JavaCommand.getJavaVersion( javaCommand ) >= 9 && path.indexOf( ':' ) < 0 && path.indexOf( ' ' ) < 0 )
+        {
+            directory.mkdirs();
+            gcLog = new File( path );
+        }
+        Fork fork = new Fork( label, args, id, gcLog );
+        forks.add( fork );
+        return fork;
+    }
+
+    /**
+     * Write all measurements as JSON.
+     */
+    public synchronized void write( File file )
+        throws IOException
+    {
+        StringBuilder json = new StringBuilder( "{\n  \"forks\": [" );
+        String separator = "\n";
+        for ( Fork fork : forks )
+        {
+            json.append( separator ).append( "    {\n" );
+            json.append( "      \"command\": " ).append( quote( fork.label ) ).append( ",\n" );
+            json.append( "      \"exitStatus\": " ).append( fork.status ).append( ",\n" );
+            json.append( "      \"wallMillis\": " ).append( fork.wall );
+            if ( fork.pid > 0 )
+            {
+                json.append( ",\n      \"userCpuMillis\": " ).append( fork.userCpu );
+                json.append( ",\n      \"systemCpuMillis\": " ).append( fork.systemCpu );
+                json.append( ",\n      \"peakRssKb\": " ).append( fork.peakRss );
+            }
+            if ( fork.gcLog != null )
+            {
+                json.append( ",\n      \"gcPauses\": " ).append( fork.gcPauses );
+                json.append( ",\n      \"gcPauseMillis\": " ).append( Math.round( fork.gcPauseTime ) );
+            }
+            json.append( "\n    }" );
+            separator = ",\n";
+        }
+        json.append( forks.isEmpty() ? "]\n}\n" : "\n  ]\n}\n" );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), "UTF-8", json.toString() );
+    }
+
+    /**
+     * Log a table of the measurements of each process.
+     */
+    public synchronized void logSummary( Log log )
+    {
+        if ( forks.isEmpty() )
+        {
+            return;
+        }
+        int width = "Command".length();
+        for ( Fork fork : forks )
+        {
+            width = Math.max( width, fork.label.length() );
+        }
+        String rowFormat = "%-" + width + "s %10s %10s %10s %10s %14s";
+        log.info( "Forked processes resource usage:" );
+        log.info( String.format( Locale.ENGLISH, rowFormat, "Command", "Wall", "User CPU", "System CPU", "Peak RSS",
+                                 "GC pauses" ) );
+        for ( Fork fork : forks )
+        {
+            boolean sampled = fork.pid > 0;
+            log.info( String.format( Locale.ENGLISH, rowFormat, fork.label, format( fork.wall ),
+                                     sampled ? format( fork.userCpu ) : "-", sampled ? format( fork.systemCpu ) : "-",
+                                     sampled ? ( fork.peakRss / 1024 ) + "M" : "-",
+                                     fork.gcLog != null ? format( Math.round( fork.gcPauseTime ) ) + " ("
+                                         + fork.gcPauses + ")" : "-" ) );
+        }
+    }
+
+    /**
+     * @param argument an argument of the forked processes, for example a module name
+     * @return the highest peak resident memory, in bytes, of the processes started with this argument, or -1 if it
+     *         was not sampled
+     */
+    public synchronized long getPeakMemory( String argument )
+    {
+        long peak = -1;
+        for ( Fork fork : forks )
+        {
+            synchronized ( fork )
+            {
+                if ( fork.pid > 0 && fork.args.contains( argument ) )
+                {
+                    peak = Math.max( peak, fork.peakRss * 1024 );
+                }
+            }
+        }
+        return peak;
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return forks.isEmpty();
+    }
+
+    private static String format( long millis )
+    {
+        return String.format( Locale.ENGLISH, "%.1fs", millis / 1000.0 );
+    }
+
+    private static String quote( String value )
+    {
+        return "\"" + value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ) + "\"";
+    }
+
+    /**
+     * Measurement of one forked process.
+     */
+    static class Fork
+        implements Runnable
+    {
+        private final String label;
+
+        private final List<String> args;
+
+        private final String marker;
+
+        private final File gcLog;
+
+        private final long start = System.currentTimeMillis();
+
+        private Thread sampler;
+
+        private volatile boolean running = true;
+
+        private volatile int pid;
+
+        private boolean identified;
+
+        private long userCpu;
+
+        private long systemCpu;
+
+        private long peakRss;
+
+        private int gcPauses;
+
+        private double gcPauseTime;
+
+        private long wall;
+
+        private int status;
+
+        Fork( String label, List<String> args, String id, File gcLog )
+        {
+            this.label = label;
+            this.args = new ArrayList<String>( args );
+            this.marker = MARKER + id;
+            this.gcLog = gcLog;
+        }
+
+        /**
+         * Start sampling the launched process.
+         */
+        void attach( Process process )
+        {
+            pid = getPid( process );
+            if ( pid > 0 && PROC.isDirectory() )
+            {
+                sampler = new Thread( this, "gwt-fork-telemetry" );
+                sampler.setDaemon( true );
+                sampler.start();
+            }
+        }
+
+        /**
+         * @return JVM arguments identifying the process and enabling its GC log
+         */
+        List<String> getJvmArgs()
+        {
+            List<String> jvmArgs = new ArrayList<String>();
+            jvmArgs.add( marker );
+            if ( gcLog != null )
+            {
+                jvmArgs.add( "-Xlog:gc:file=" + gcLog.getAbsolutePath() );
+            }
+            return jvmArgs;
+        }
+
+        /**
+         * Stop measuring, once the process exited.
+         */
+        void end( int exitStatus )
+        {
+            synchronized ( this )
+            {
+                wall = System.currentTimeMillis() - start;
+                status = exitStatus;
+            }
+            running = false;
+            if ( sampler != null )
+            {
+                sampler.interrupt();
+                try
+                {
+                    sampler.join();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if ( gcLog != null )
+            {
+                readGcLog();
+                gcLog.delete();
+            }
+        }
+
+        public void run()
+        {
+            while ( running )
+            {
+                if ( !identified )
+                {
+                    identified = isForked();
+                }
+                if ( identified )
+                {
+                    sample( new File( PROC, String.valueOf( pid ) ) );
+                }
+                try
+                {
+                    Thread.sleep( SAMPLE_INTERVAL );
+                }
+                catch ( InterruptedException e )
+                {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return true once the launched process runs the JVM, rather than the shell starting it
+         */
+        private boolean isForked()
+        {
+            try
+            {
+                // arguments are separated by NUL, a shell running the command only has it in a single argument
+                String cmdline = FileUtils.fileRead( new File( new File( PROC, String.valueOf( pid ) ), "cmdline" ),
+                                                     "UTF-8" );
+                return ( "\0" + cmdline ).contains( "\0" + marker + "\0" );
+            }
+            catch ( IOException e )
+            {
+                // process exited
+                return false;
+            }
+        }
+
+        /**
+         * @return pid of the process, from <code>Process.pid()</code> on Java 9 or later and the pid field of the
+         *         UNIX implementation on Java 8, or 0 when unknown
+         */
+        private static int getPid( Process process )
+        {
+            try
+            {
+                return ( (Long) Process.class.getMethod( "pid" ).invoke( process ) ).intValue();
+            }
+            catch ( NoSuchMethodException e )
+            {
+                // Java 8
+            }
+            catch ( Exception e )
+            {
+                return 0;
+            }
+            try
+            {
+                Field field = process.getClass().getDeclaredField( "pid" );
+                field.setAccessible( true );
+                return field.getInt( process );
+            }
+            catch ( Exception e )
+            {
+                return 0;
+            }
+        }
+
+        /**
+         * @param process the <code>/proc</code> directory of the process
+         */
+        void sample( File process )
+        {
+            try
+            {
+                String stat = FileUtils.fileRead( new File( process, "stat" ), "UTF-8" );
+                // fields after the command name, which may contain spaces : state is field 3, utime 14, stime 15
+                String[] fields = stat.substring( stat.lastIndexOf( ')' ) + 2 ).split( " " );
+                long user = Long.parseLong( fields[11] ) * 1000 / CLOCK_TICKS;
+                long system = Long.parseLong( fields[12] ) * 1000 / CLOCK_TICKS;
+                long rss = 0;
+                BufferedReader status = new BufferedReader( new FileReader( new File( process, "status" ) ) );
+                try
+                {
+                    for ( String line = status.readLine(); line != null; line = status.readLine() )
+                    {
+                        if ( line.startsWith( "VmHWM:" ) )
+                        {
+                            rss = Long.parseLong( line.substring( 6 ).replace( "kB", "" ).trim() );
+                        }
+                    }
+                }
+                finally
+                {
+                    status.close();
+                }
+                synchronized ( this )
+                {
+                    userCpu = user;
+                    systemCpu = system;
+                    peakRss = Math.max( peakRss, rss );
+                }
+            }
+            catch ( IOException e )
+            {
+                // process exited, keep the last sample
+            }
+            catch ( RuntimeException e )
+            {
+                // unexpected format
+            }
+        }
+
+        private void readGcLog()
+        {
+            if ( !gcLog.isFile() )
+            {
+                return;
+            }
+            try
+            {
+                BufferedReader reader = new BufferedReader( new FileReader( gcLog ) );
+                try
+                {
+                    for ( String line = reader.readLine(); line != null; line = reader.readLine() )
+                    {
+                        Matcher pause = GC_PAUSE.matcher( line );
+                        if ( pause.find() )
+                        {
+                            gcPauses++;
+                            gcPauseTime += Double.parseDouble( pause.group( 1 ) );
+                        }
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                // no GC summary
+            }
+        }
+    }
+}
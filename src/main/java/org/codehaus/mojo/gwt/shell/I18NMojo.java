@@ -97,6 +97,8 @@ public class I18NMojo
                 {
                     ensureTargetPackageExists( getGenerateDirectory(), target );
                     createJavaCommand()
+                        .setInProcess( isInProcess() )
+                        .setDaemons( getJvmPool() )
                         .setMainClass( "com.google.gwt.i18n.tools.I18NSync" )
                         .addToClasspath( getClasspath( Artifact.SCOPE_COMPILE ) )
                         .addToClasspath( getGwtUserJar() )
@@ -115,6 +117,8 @@ public class I18NMojo
                 {
                     ensureTargetPackageExists( getGenerateDirectory(), target );
                     createJavaCommand()
+                        .setInProcess( isInProcess() )
+                        .setDaemons( getJvmPool() )
                         .setMainClass( "com.google.gwt.i18n.tools.I18NSync" )
                         .addToClasspath( getClasspath( Artifact.SCOPE_COMPILE ) )
                         .addToClasspath( getGwtUserJar() )
@@ -132,6 +136,8 @@ public class I18NMojo
                 {
                     ensureTargetPackageExists( getGenerateDirectory(), target );
                     createJavaCommand()
+                        .setInProcess( isInProcess() )
+                        .setDaemons( getJvmPool() )
                         .setMainClass( "com.google.gwt.i18n.tools.I18NSync" )
                         .addToClasspath( getClasspath( Artifact.SCOPE_COMPILE ) )
                         .addToClasspath( getGwtUserJar() )
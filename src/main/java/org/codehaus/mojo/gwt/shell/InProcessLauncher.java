@@ -0,0 +1,462 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.mojo.gwt.daemon.ExitInterceptor;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Run the main class of a {@link JavaCommand} inside the Maven JVM, for short-lived tools whose run is much shorter
+ * than the startup of a new JVM.
+ * <p>
+ * The tool runs in an isolated class loader (not seeing the plugin nor Maven classes), cached by classpath and reused
+ * by later invocations as long as the content of the classpath doesn't change. Only the last
+ * {@value #MAX_CLASS_LOADERS} class loaders are kept, evicted ones being closed. Its <code>System.out</code> and
+ * <code>System.err</code> (including threads it starts) are sent to the command consumers while it runs, and
+ * <code>System.exit</code> is intercepted as the exit status. Commands with system properties are forked, as system
+ * properties are global to the Maven JVM. Invocations are serialized, as the security manager is global.
+ *
+ * @since 2.12.0
+ */
+final class InProcessLauncher
+{
+    private static final int MAX_CLASS_LOADERS = 4;
+
+    /** class loaders by classpath, least recently used first */
+    private static final Map<String, CachedClassLoader> CLASS_LOADERS =
+        new LinkedHashMap<String, CachedClassLoader>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CachedClassLoader> eldest )
+            {
+                if ( size() > MAX_CLASS_LOADERS )
+                {
+                    close( eldest.getValue().loader );
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    /** consumers of the output of the tool, for threads running it */
+    private static final InheritableThreadLocal<StreamConsumer[]> CAPTURE = new InheritableThreadLocal<StreamConsumer[]>();
+
+    /** whether the JVM lets us intercept <code>System.exit</code>, null until checked */
+    private static Boolean exitInterception;
+
+    private InProcessLauncher()
+    {
+    }
+
+    /**
+     * @return true if the command can run in process : it needs no environment variables nor system properties, and
+     *         the JVM lets us intercept <code>System.exit</code>
+     */
+    static synchronized boolean supports( JavaCommand cmd )
+    {
+        if ( cmd.getEnv() != null && !cmd.getEnv().isEmpty() )
+        {
+            return false;
+        }
+        if ( cmd.getSystemProperties() != null && !cmd.getSystemProperties().isEmpty() )
+        {
+            return false;
+        }
+        for ( String jvmArg : cmd.getJvmArgs() )
+        {
+            if ( jvmArg.startsWith( "-D" ) )
+            {
+                return false;
+            }
+        }
+        return isExitInterceptionSupported( cmd );
+    }
+
+    private static boolean isExitInterceptionSupported( JavaCommand cmd )
+    {
+        if ( exitInterception == null )
+        {
+            int version = JavaCommand.getJavaVersion( System.getProperty( "java.home" ) + "/bin/java" );
+            exitInterception = ExitInterceptor.isSupported( version, System.getProperty( "java.security.manager" ) );
+            if ( !exitInterception && version >= 17 )
+            {
+                cmd.getLog().info( "inProcess needs -Djava.security.manager=allow in MAVEN_OPTS on Java " + version
+                    + ", commands are forked" );
+            }
+        }
+        return exitInterception;
+    }
+
+    /**
+     * @return false if <code>System.exit</code> can't be intercepted after all, and the command has to be forked
+     */
+    static synchronized boolean execute( JavaCommand cmd )
+        throws JavaCommandException
+    {
+        if ( !ExitInterceptor.install() )
+        {
+            return false;
+        }
+        int status;
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        OutputStream toolErr = new LineOutputStream( cmd.getErr() );
+        try
+        {
+            ClassLoader loader = getClassLoader( cmd.getClasspath() );
+            // output of other threads (like other Maven modules of a parallel build) goes to the original streams
+            PrintStream routedOut = new PrintStream( new RoutingOutputStream( out, 0 ), true );
+            PrintStream routedErr = new PrintStream( new RoutingOutputStream( err, 1 ), true );
+            System.setOut( routedOut );
+            System.setErr( routedErr );
+            try
+            {
+                CAPTURE.set( new StreamConsumer[] { cmd.getOut(), cmd.getErr() } );
+                ExitInterceptor.intercept();
+                Thread.currentThread().setContextClassLoader( loader );
+                status = run( loader, cmd, new PrintStream( toolErr, true ) );
+            }
+            finally
+            {
+                Thread.currentThread().setContextClassLoader( contextClassLoader );
+                ExitInterceptor.release();
+                CAPTURE.remove();
+                routedOut.flush();
+                routedErr.flush();
+                // unless replaced in the meantime by someone else
+                if ( System.out == routedOut )
+                {
+                    System.setOut( out );
+                }
+                if ( System.err == routedErr )
+                {
+                    System.setErr( err );
+                }
+            }
+        }
+        finally
+        {
+            ExitInterceptor.uninstall();
+            close( toolErr );
+        }
+        if ( status != 0 )
+        {
+            throw new JavaCommandException( "Command failed with status " + status );
+        }
+        return true;
+    }
+
+    private static int run( ClassLoader loader, JavaCommand cmd, PrintStream err )
+        throws JavaCommandException
+    {
+        Method main;
+        try
+        {
+            main = loader.loadClass( cmd.getMainClass() ).getMethod( "main", String[].class );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            throw new JavaCommandException( "Main class " + cmd.getMainClass() + " not found", e );
+        }
+        catch ( NoSuchMethodException e )
+        {
+            throw new JavaCommandException( "No main method in " + cmd.getMainClass(), e );
+        }
+        String[] args = cmd.getArgs().toArray( new String[cmd.getArgs().size()] );
+        try
+        {
+            main.invoke( null, (Object) args );
+            return 0;
+        }
+        catch ( InvocationTargetException e )
+        {
+            Integer status = ExitInterceptor.getStatus( e.getCause() );
+            if ( status != null )
+            {
+                return status;
+            }
+            e.getCause().printStackTrace( err );
+            return 1;
+        }
+        catch ( IllegalAccessException e )
+        {
+            throw new JavaCommandException( "Can't run " + cmd.getMainClass(), e );
+        }
+    }
+
+    private static ClassLoader getClassLoader( List<File> classpath )
+        throws JavaCommandException
+    {
+        StringBuilder key = new StringBuilder();
+        for ( File entry : classpath )
+        {
+            key.append( entry.getAbsolutePath() ).append( File.pathSeparatorChar );
+        }
+        // a long lived Maven JVM may run several builds, and directories like target/classes change between them
+        String stamp = getStamp( classpath );
+        CachedClassLoader cached = CLASS_LOADERS.get( key.toString() );
+        if ( cached != null && cached.stamp.equals( stamp ) )
+        {
+            return cached.loader;
+        }
+        if ( cached != null )
+        {
+            CLASS_LOADERS.remove( key.toString() );
+            close( cached.loader );
+        }
+        URL[] urls = new URL[classpath.size()];
+        try
+        {
+            for ( int i = 0; i < urls.length; i++ )
+            {
+                urls[i] = classpath.get( i ).toURI().toURL();
+            }
+        }
+        catch ( MalformedURLException e )
+        {
+            throw new JavaCommandException( "Invalid classpath entry", e );
+        }
+        // parent is the JDK class loader, so that the tool doesn't see the plugin and Maven classes
+        URLClassLoader loader = new URLClassLoader( urls, ClassLoader.getSystemClassLoader().getParent() );
+        CLASS_LOADERS.put( key.toString(), new CachedClassLoader( stamp, loader ) );
+        return loader;
+    }
+
+    /**
+     * @return number of files, total size and latest modification time of each classpath entry, walking directories
+     */
+    private static String getStamp( List<File> classpath )
+    {
+        StringBuilder stamp = new StringBuilder();
+        for ( File entry : classpath )
+        {
+            long[] files = new long[3];
+            addStamp( entry, files );
+            stamp.append( files[0] ).append( ',' ).append( files[1] ).append( ',' ).append( files[2] )
+                 .append( File.pathSeparatorChar );
+        }
+        return stamp.toString();
+    }
+
+    private static void addStamp( File file, long[] stamp )
+    {
+        File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( File child : children )
+            {
+                addStamp( child, stamp );
+            }
+        }
+        else if ( file.isFile() )
+        {
+            stamp[0]++;
+            stamp[1] += file.length();
+            stamp[2] = Math.max( stamp[2], file.lastModified() );
+        }
+    }
+
+    private static void close( OutputStream out )
+    {
+        try
+        {
+            out.close();
+        }
+        catch ( IOException e )
+        {
+            // can't happen
+        }
+    }
+
+    private static void close( URLClassLoader loader )
+    {
+        try
+        {
+            loader.close();
+        }
+        catch ( IOException e )
+        {
+            // the jars will be closed by the garbage collector
+        }
+    }
+
+    private static class CachedClassLoader
+    {
+        private final String stamp;
+
+        private final URLClassLoader loader;
+
+        CachedClassLoader( String stamp, URLClassLoader loader )
+        {
+            this.stamp = stamp;
+            this.loader = loader;
+        }
+    }
+
+    private static class RoutingOutputStream
+        extends OutputStream
+    {
+        private final PrintStream original;
+
+        private final int stream;
+
+        /** per thread, as tool and Maven threads write concurrently */
+        private final ThreadLocal<LineOutputStream> lines = new ThreadLocal<LineOutputStream>();
+
+        RoutingOutputStream( PrintStream original, int stream )
+        {
+            this.original = original;
+            this.stream = stream;
+        }
+
+        @Override
+        public void write( int b )
+        {
+            StreamConsumer[] capture = CAPTURE.get();
+            if ( capture == null )
+            {
+                original.write( b );
+                return;
+            }
+            getLine( capture ).write( b );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+        {
+            StreamConsumer[] capture = CAPTURE.get();
+            if ( capture == null )
+            {
+                original.write( b, off, len );
+                return;
+            }
+            getLine( capture ).write( b, off, len );
+        }
+
+        private LineOutputStream getLine( StreamConsumer[] capture )
+        {
+            LineOutputStream line = lines.get();
+            if ( line == null || line.consumer != capture[stream] )
+            {
+                line = new LineOutputStream( capture[stream] );
+                lines.set( line );
+            }
+            return line;
+        }
+
+        @Override
+        public void flush()
+        {
+            if ( CAPTURE.get() == null )
+            {
+                original.flush();
+            }
+        }
+    }
+
+    /**
+     * Send each line written to a consumer.
+     */
+    private static class LineOutputStream
+        extends OutputStream
+    {
+        private final StreamConsumer consumer;
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        LineOutputStream( StreamConsumer consumer )
+        {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public synchronized void write( int b )
+        {
+            if ( b == '\n' )
+            {
+                sendLine();
+            }
+            else
+            {
+                buffer.write( b );
+            }
+        }
+
+        @Override
+        public synchronized void write( byte[] b, int off, int len )
+        {
+            int start = off;
+            for ( int i = off; i < off + len; i++ )
+            {
+                if ( b[i] == '\n' )
+                {
+                    buffer.write( b, start, i - start );
+                    sendLine();
+                    start = i + 1;
+                }
+            }
+            buffer.write( b, start, off + len - start );
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if ( buffer.size() > 0 )
+            {
+                sendLine();
+            }
+        }
+
+        private void sendLine()
+        {
+            String line = buffer.toString();
+            buffer.reset();
+            // the consumer may itself write to System.out (Maven logger), which must reach the original stream
+            StreamConsumer[] capture = CAPTURE.get();
+            CAPTURE.set( null );
+            try
+            {
+                consumer.consumeLine( line.endsWith( "\r" ) ? line.substring( 0, line.length() - 1 ) : line );
+            }
+            finally
+            {
+                CAPTURE.set( capture );
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Persistent GWT compiler work directories, one per module, so that incremental compilation can reuse the data of the
+ * previous build.
+ * <p>
+ * Each directory records the stamp (GWT version and compiler arguments) of the compilations that filled it, and is
+ * emptied when the stamp changes, as data from another GWT version or other flags can't be reused. After each
+ * successful compilation, files that were not written by the last <code>generations</code> compilations are removed
+ * as stale, and the directory is emptied if it still exceeds its maximum size.
+ *
+ * @since 2.12.0
+ */
+class IncrementalWorkDir
+{
+    private static final String STATE = ".gwt-maven-plugin.properties";
+
+    private static final String STAMP = "stamp";
+
+    private static final String GENERATIONS = "generations";
+
+    private final File root;
+
+    private final String stamp;
+
+    private final long maxSize;
+
+    private final int generations;
+
+    private final Log log;
+
+    /**
+     * @param root parent directory of the module work directories
+     * @param stamp GWT version and compiler arguments the work directories must have been built with
+     * @param maxSize maximum size of a module work directory in bytes
+     * @param generations number of compilations whose files are kept
+     */
+    IncrementalWorkDir( File root, String stamp, long maxSize, int generations, Log log )
+    {
+        this.root = root;
+        this.stamp = stamp;
+        this.maxSize = maxSize;
+        this.generations = Math.max( 1, generations );
+        this.log = log;
+    }
+
+    /**
+     * @return the work directory of the module, emptied if it was used with another GWT version or compiler arguments
+     */
+    File prepare( String module )
+        throws IOException
+    {
+        File dir = getDirectory( module );
+        Properties state = load( dir );
+        if ( state.getProperty( STAMP ) != null && !stamp.equals( state.getProperty( STAMP ) ) )
+        {
+            log.info( "GWT version or compiler arguments changed, discarding incremental compilation data of "
+                + module );
+            FileUtils.deleteDirectory( dir );
+        }
+        dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * Record a successful compilation, and prune the work directory.
+     *
+     * @param start time the compilation started at
+     */
+    void compiled( String module, long start )
+        throws IOException
+    {
+        File dir = getDirectory( module );
+        Properties state = load( dir );
+        List<String> starts = new ArrayList<String>();
+        if ( stamp.equals( state.getProperty( STAMP ) ) && state.getProperty( GENERATIONS ) != null )
+        {
+            starts.addAll( Arrays.asList( StringUtils.split( state.getProperty( GENERATIONS ), "," ) ) );
+        }
+        starts.add( String.valueOf( start ) );
+        while ( starts.size() > generations )
+        {
+            starts.remove( 0 );
+        }
+        if ( starts.size() == generations )
+        {
+            int removed = deleteOlderThan( dir, Long.parseLong( starts.get( 0 ) ) );
+            if ( removed > 0 )
+            {
+                log.debug( "Removed " + removed + " stale files from " + dir );
+            }
+        }
+
+        long size = FileUtils.sizeOfDirectory( dir );
+        if ( size > maxSize )
+        {
+            log.info( "Incremental compilation data of " + module + " exceeds " + maxSize / ( 1024 * 1024 )
+                + "m, discarding it" );
+            FileUtils.cleanDirectory( dir );
+            starts.clear();
+        }
+
+        state.setProperty( STAMP, stamp );
+        state.setProperty( GENERATIONS, StringUtils.join( starts.iterator(), "," ) );
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( new File( dir, STATE ) );
+            state.store( out, "GWT incremental compilation work directory" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    private File getDirectory( String module )
+    {
+        return new File( root, module );
+    }
+
+    private static Properties load( File dir )
+    {
+        Properties state = new Properties();
+        File file = new File( dir, STATE );
+        if ( file.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( file );
+                state.load( in );
+            }
+            catch ( IOException e )
+            {
+                // treated as a fresh directory
+                state.clear();
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @return number of deleted files
+     */
+    private static int deleteOlderThan( File dir, long time )
+    {
+        int deleted = 0;
+        File[] files = dir.listFiles();
+        if ( files == null )
+        {
+            return 0;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                deleted += deleteOlderThan( file, time );
+                // only removed if empty
+                file.delete();
+            }
+            // allow for file systems with a coarse modification time
+            else if ( !STATE.equals( file.getName() ) && file.lastModified() < time - 2000 && file.delete() )
+            {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
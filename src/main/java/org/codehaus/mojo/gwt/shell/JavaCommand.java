@@ -20,6 +20,7 @@ package org.codehaus.mojo.gwt.shell;
  */
 
 import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineTimeOutException;
@@ -28,12 +29,15 @@ import org.codehaus.plexus.util.cli.Commandline;
 import org.codehaus.plexus.util.cli.StreamConsumer;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author <a href="mailto:olamy@apache.org">Olivier Lamy</a>
@@ -41,6 +45,17 @@ import java.util.Properties;
  */
 public class JavaCommand
 {
+    /** Classpath passed in the <code>CLASSPATH</code> environment variable */
+    public static final String CLASSPATH_ENV = "env";
+
+    /** Classpath passed in a java <code>@argfile</code>, requires Java 9+ */
+    public static final String CLASSPATH_ARGFILE = "argfile";
+
+    /** Classpath passed as a pathing jar whose manifest references the classpath entries */
+    public static final String CLASSPATH_JAR = "jar";
+
+    private static final Pattern JAVA_VERSION = Pattern.compile( "JAVA_VERSION=\"(?:1\\.)?(\\d+)" );
+
     private String mainClass;
 
     private List<File> classpath = new ArrayList<File>();
@@ -88,6 +103,33 @@ public class JavaCommand
      */
     private boolean printCommandOnError = true;
 
+    /**
+     * Warm JVMs to run the command in, rather than forking a new one.
+     */
+    private CompilerDaemons daemons;
+
+    private String classpathMode = CLASSPATH_ENV;
+
+    /**
+     * Where argument files or pathing jars are created.
+     */
+    private File classpathDirectory;
+
+    /**
+     * Run the main class in the Maven JVM rather than forking one, when possible.
+     */
+    private boolean inProcess;
+
+    /**
+     * Where class data sharing archives are created, or <code>null</code> to not use them.
+     */
+    private File classDataSharingDirectory;
+
+    /**
+     * Records resource usage of the forked process, or <code>null</code>.
+     */
+    private ForkTelemetry telemetry;
+
     public String getMainClass()
     {
         return mainClass;
@@ -208,16 +250,127 @@ public class JavaCommand
         return this;
     }
 
+    public StreamConsumer getOut()
+    {
+        return out;
+    }
+
     public JavaCommand setOut( StreamConsumer out )
     {
         this.out = out;
         return this;
     }
 
+    public StreamConsumer getErr()
+    {
+        return err;
+    }
+
+    public JavaCommand setErr( StreamConsumer err )
+    {
+        this.err = err;
+        return this;
+    }
+
+    public boolean isPrintCommandOnError()
+    {
+        return printCommandOnError;
+    }
+
     public void setPrintCommandOnError( boolean printCommandOnError ) {
         this.printCommandOnError = printCommandOnError;
     }
 
+    public JavaCommand setDaemons( CompilerDaemons daemons )
+    {
+        this.daemons = daemons;
+        return this;
+    }
+
+    public String getClasspathMode()
+    {
+        return classpathMode;
+    }
+
+    /**
+     * @param classpathMode how to pass the classpath : {@link #CLASSPATH_ENV}, {@link #CLASSPATH_ARGFILE} or
+     *            {@link #CLASSPATH_JAR}
+     * @param classpathDirectory where to create argument files or pathing jars
+     */
+    public JavaCommand setClasspathMode( String classpathMode, File classpathDirectory )
+    {
+        this.classpathMode = classpathMode;
+        this.classpathDirectory = classpathDirectory;
+        return this;
+    }
+
+    /**
+     * @param inProcess run the main class in an isolated class loader of the Maven JVM, when the command doesn't
+     *            need environment variables nor system properties and <code>System.exit</code> can be intercepted.
+     *            Other JVM arguments and the time out are then ignored.
+     * @since 2.12.0
+     */
+    public JavaCommand setInProcess( boolean inProcess )
+    {
+        this.inProcess = inProcess;
+        return this;
+    }
+
+    /**
+     * @param classDataSharingDirectory where to create class data sharing archives of the leading jars of the
+     *            classpath, used by the forked JVMs, or <code>null</code> to not use them
+     * @since 2.12.0
+     */
+    public JavaCommand setClassDataSharing( File classDataSharingDirectory )
+    {
+        this.classDataSharingDirectory = classDataSharingDirectory;
+        return this;
+    }
+
+    /**
+     * @param telemetry records wall time, CPU time, peak memory and GC pauses of the forked JVM
+     * @since 2.12.0
+     */
+    public JavaCommand setTelemetry( ForkTelemetry telemetry )
+    {
+        this.telemetry = telemetry;
+        return this;
+    }
+
+    /**
+     * @return a command with the same configuration, that can be modified independently of this one
+     * @since 2.12.0
+     */
+    public JavaCommand copy()
+    {
+        JavaCommand copy = new JavaCommand()
+            .setMainClass( mainClass )
+            .setClasspath( new ArrayList<File>( classpath ) )
+            .setArgs( new ArrayList<String>( args ) )
+            .setJvmArgs( new ArrayList<String>( getJvmArgs() ) )
+            .setJvm( jvm )
+            .setLog( log )
+            .setTimeOut( timeOut )
+            .setClassPathProcessors( new ArrayList<ClassPathProcessor>( classPathProcessors ) )
+            .setOut( out )
+            .setErr( err )
+            .setDaemons( daemons )
+            .setClasspathMode( classpathMode, classpathDirectory )
+            .setInProcess( inProcess )
+            .setClassDataSharing( classDataSharingDirectory )
+            .setTelemetry( telemetry );
+        if ( systemProperties != null )
+        {
+            copy.setSystemProperties( (Properties) systemProperties.clone() );
+        }
+        if ( env != null )
+        {
+            copy.setEnv( (Properties) env.clone() );
+        }
+        copy.setPrintCommandOnError( printCommandOnError );
+        return copy;
+    }
+
     public JavaCommand addToClasspath( File file )
     {
         return addToClasspath( Collections.singleton( file ) );
@@ -277,11 +430,72 @@ public class JavaCommand
             classPathProcessor.postProcessClassPath( classpath );
         }
 
+        if ( inProcess && InProcessLauncher.supports( this ) )
+        {
+            if ( log.isDebugEnabled() )
+            {
+                log.debug( "Running " + mainClass + " in process with classpath " + toPath( classpath ) );
+            }
+            if ( InProcessLauncher.execute( this ) )
+            {
+                return;
+            }
+        }
+
+        if ( daemons != null && daemons.execute( this, getJavaCommand() ) )
+        {
+            return;
+        }
+
+        String classpath = toPath( this.classpath );
+        File classpathFile = null;
+        try
+        {
+            if ( CLASSPATH_ARGFILE.equals( classpathMode ) )
+            {
+                classpathFile = ClasspathFiles.getArgFile( classpathDirectory, this.classpath );
+            }
+            else if ( CLASSPATH_JAR.equals( classpathMode ) )
+            {
+                classpathFile = ClasspathFiles.getPathingJar( classpathDirectory, this.classpath );
+            }
+            else if ( !CLASSPATH_ENV.equals( classpathMode ) )
+            {
+                throw new JavaCommandException( "Unsupported classpath mode " + classpathMode );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new JavaCommandException( "Failed to write classpath file in " + classpathDirectory, e );
+        }
+
+        ClassDataSharing classDataSharing = null;
+        if ( classDataSharingDirectory != null && !CLASSPATH_JAR.equals( classpathMode ) )
+        {
+            // with a pathing jar, the JVM can't match the archive with the classpath
+            classDataSharing =
+                ClassDataSharing.get( classDataSharingDirectory, getJavaCommand(), this.classpath, log );
+        }
+
         List<String> command = new ArrayList<String>();
+        if ( CLASSPATH_ARGFILE.equals( classpathMode ) )
+        {
+            command.add( "@" + classpathFile.getAbsolutePath() );
+        }
         if (this.jvmArgs != null)
         {
             command.addAll( this.jvmArgs );
         }
+        if ( classDataSharing != null )
+        {
+            command.addAll( classDataSharing.getJvmArgs() );
+        }
+        ForkTelemetry.Fork fork = null;
+        if ( telemetry != null )
+        {
+            fork = telemetry.start( getJavaCommand(), mainClass, args );
+            command.addAll( fork.getJvmArgs() );
+        }
         if ( systemProperties != null )
         {
             for ( Map.Entry<?, ?> entry : systemProperties.entrySet() )
@@ -292,17 +506,35 @@ public class JavaCommand
         command.add( mainClass );
         command.addAll( args );
 
-        List<String> path = new ArrayList<String>( classpath.size() );
-        for ( File file : classpath ) path.add( file.getAbsolutePath() );
-        String classpath = StringUtils.join( path.iterator(), File.pathSeparator );
-
+        int status = -1;
         try
         {
             String[] arguments = command.toArray( new String[command.size()] );
 
-            Commandline cmd = new Commandline();
+            final ForkTelemetry.Fork measured = fork;
+            Commandline cmd = new Commandline()
+            {
+                @Override
+                public Process execute()
+                    throws CommandLineException
+                {
+                    Process process = super.execute();
+                    if ( measured != null )
+                    {
+                        measured.attach( process );
+                    }
+                    return process;
+                }
+            };
             cmd.setExecutable( this.getJavaCommand() );
-            cmd.addEnvironment( "CLASSPATH", classpath );
+            if ( CLASSPATH_ENV.equals( classpathMode ) )
+            {
+                cmd.addEnvironment( "CLASSPATH", classpath );
+            }
+            else if ( CLASSPATH_JAR.equals( classpathMode ) )
+            {
+                cmd.addEnvironment( "CLASSPATH", classpathFile.getAbsolutePath() );
+            }
             cmd.addArguments( arguments );
             if ( env != null )
             {
@@ -313,14 +545,25 @@ public class JavaCommand
                 }
             }
             log.debug( "Execute command :\n" + cmd.toString() );
-            log.debug( "With CLASSPATH :\n" + classpath );
-            int status = CommandLineUtils.executeCommandLine( cmd, out, err, timeOut );
+            if ( classpathFile != null )
+            {
+                log.debug( "With classpath from " + classpathFile );
+            }
+            else
+            {
+                log.debug( "With CLASSPATH :\n" + classpath );
+            }
+            status = CommandLineUtils.executeCommandLine( cmd, out, err, timeOut );
 
             if ( status != 0 )
             {
                 throw new JavaCommandException( "Command failed with status "  + status
                         + (printCommandOnError ? ":\n" + cmd : "" ) );
             }
+            if ( classDataSharing != null )
+            {
+                classDataSharing.completed();
+            }
         }
         catch ( CommandLineTimeOutException e )
         {
@@ -332,6 +575,62 @@ public class JavaCommand
             throw new JavaCommandException(
                     "Failed to execute command line" + (printCommandOnError ? ":\n" + command : ""), e );
         }
+        finally
+        {
+            if ( fork != null )
+            {
+                fork.end( status );
+            }
+        }
+    }
+
+    static String toPath( List<File> classpath )
+    {
+        List<String> path = new ArrayList<String>( classpath.size() );
+        for ( File file : classpath ) path.add( file.getAbsolutePath() );
+        return StringUtils.join( path.iterator(), File.pathSeparator );
+    }
+
+    /**
+     * @param javaCommand a java executable
+     * @return the home directory of its JDK
+     */
+    static File getJavaHome( String javaCommand )
+    {
+        return new File( javaCommand ).getAbsoluteFile().getParentFile().getParentFile();
+    }
+
+    /**
+     * @param javaCommand a java executable
+     * @return the content of the <code>release</code> file of its JDK, or an empty string if there is none
+     */
+    static String getJavaRelease( String javaCommand )
+    {
+        File home = getJavaHome( javaCommand );
+        File release = new File( home, "release" );
+        if ( !release.isFile() && "jre".equals( home.getName() ) )
+        {
+            // Java 8 JDK, where java.home is its jre directory
+            release = new File( home.getParentFile(), "release" );
+        }
+        try
+        {
+            return release.isFile() ? FileUtils.fileRead( release, "UTF-8" ) : "";
+        }
+        catch ( IOException e )
+        {
+            return "";
+        }
+    }
+
+    /**
+     * @param javaCommand a java executable
+     * @return the major version of its JDK, or 0 if unknown
+     */
+    static int getJavaVersion( String javaCommand )
+    {
+        Matcher version = JAVA_VERSION.matcher( getJavaRelease( javaCommand ) );
+        return version.find() ? Integer.parseInt( version.group( 1 ) ) : 0;
     }
 
     private String getJavaCommand()
@@ -0,0 +1,408 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decouple the output of forked processes from the Maven logger, which becomes the bottleneck when the GWT compiler
+ * runs with a verbose log level and then slows down the compiler through pipe back-pressure.
+ * <p>
+ * Every line read from the process pipes is written to a compressed log file, and queued in a bounded buffer for a
+ * dedicated thread writing a filtered view to the Maven log : errors and warnings are always logged, debug lines only
+ * when Maven runs in debug mode, other lines up to a number of lines per second, with a notice of the skipped ones.
+ * Lines read while the buffer is full are left out of the Maven log rather than blocking the process, and counted,
+ * except for errors (standard error and <code>[ERROR]</code> lines), which wait for room in the buffer.
+ *
+ * @since 2.12.0
+ */
+public class OutputPipeline
+{
+    private static final int CAPACITY = 8192;
+
+    private static final Line END = new Line( false, null, null );
+
+    private final Log log;
+
+    private final File logFile;
+
+    private final int consoleLinesPerSecond;
+
+    private final BlockingQueue<Line> queue = new ArrayBlockingQueue<Line>( CAPACITY );
+
+    private final Thread writer;
+
+    /** written by the threads reading the process pipes, guarded by itself */
+    private final Object fileLock = new Object();
+
+    private Writer file;
+
+    private long window;
+
+    private int windowLines;
+
+    private int skipped;
+
+    private int totalSkipped;
+
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    private volatile int totalDropped;
+
+    private final StreamConsumer out = new Consumer( false, null );
+
+    private final StreamConsumer err = new Consumer( true, null );
+
+    /**
+     * @param log the Maven log
+     * @param logFile compressed file receiving the complete output
+     * @param consoleLinesPerSecond maximum number of informational lines per second sent to the Maven log, 0 for no
+     *            limit
+     */
+    public OutputPipeline( Log log, File logFile, int consoleLinesPerSecond )
+    {
+        this.log = log;
+        this.logFile = logFile;
+        this.consoleLinesPerSecond = consoleLinesPerSecond;
+        try
+        {
+            logFile.getParentFile().mkdirs();
+            file = new BufferedWriter( new OutputStreamWriter( new GZIPOutputStream( new FileOutputStream( logFile ),
+                                                                                     65536 ), "UTF-8" ) );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to create " + logFile + ", forked process output will only be logged", e );
+        }
+        writer = new Thread( "gwt-output" )
+        {
+            @Override
+            public void run()
+            {
+                drain();
+            }
+        };
+        writer.setDaemon( true );
+        writer.start();
+    }
+
+    /**
+     * @return consumer for the standard output of forked processes
+     */
+    public StreamConsumer getOut()
+    {
+        return out;
+    }
+
+    /**
+     * @return consumer for the error output of forked processes
+     */
+    public StreamConsumer getErr()
+    {
+        return err;
+    }
+
+    public File getLogFile()
+    {
+        return logFile;
+    }
+
+    /**
+     * Prefix the lines of a consumer, typically to tell apart the output of concurrent processes. When the consumer
+     * belongs to a pipeline, the prefix is added by its writer thread.
+     *
+     * @param consumer consumer returned by {@link #getOut()} or {@link #getErr()}, or any other consumer
+     * @param prefix text to add before each line
+     * @return consumer adding the prefix to each line before passing it on
+     */
+    public static StreamConsumer prefix( final StreamConsumer consumer, final String prefix )
+    {
+        if ( consumer instanceof Consumer )
+        {
+            Consumer lines = (Consumer) consumer;
+            return lines.pipeline().new Consumer( lines.err, lines.prefix != null ? lines.prefix + prefix : prefix );
+        }
+        return new StreamConsumer()
+        {
+            public void consumeLine( String line )
+            {
+                consumer.consumeLine( prefix + line );
+            }
+        };
+    }
+
+    /**
+     * @return number of lines left out of the Maven log so far because the buffer was full
+     */
+    public int getDropped()
+    {
+        return totalDropped + dropped.get();
+    }
+
+    /**
+     * Wait for all queued lines to be written, and close the log file.
+     */
+    public void close()
+    {
+        try
+        {
+            queue.put( END );
+            writer.join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue( Line line )
+    {
+        writeFile( line );
+        if ( line.err || line.text.contains( "[ERROR]" ) )
+        {
+            try
+            {
+                queue.put( line );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+            }
+        }
+        else if ( !queue.offer( line ) )
+        {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drain()
+    {
+        try
+        {
+            while ( true )
+            {
+                Line line = queue.take();
+                reportDropped();
+                if ( line == END )
+                {
+                    break;
+                }
+                write( line );
+                if ( queue.isEmpty() )
+                {
+                    flush();
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            reportSkipped();
+            reportDropped();
+            if ( totalSkipped > 0 )
+            {
+                log.info( totalSkipped + " lines of output were not logged, see " + logFile );
+            }
+            if ( totalDropped > 0 )
+            {
+                log.warn( totalDropped + " lines of output were not logged because the output buffer was full, see "
+                    + logFile );
+            }
+            synchronized ( fileLock )
+            {
+                IOUtil.close( file );
+                file = null;
+            }
+        }
+    }
+
+    private void writeFile( Line line )
+    {
+        synchronized ( fileLock )
+        {
+            if ( file == null )
+            {
+                return;
+            }
+            try
+            {
+                if ( line.err )
+                {
+                    file.write( "[stderr] " );
+                }
+                if ( line.prefix != null )
+                {
+                    file.write( line.prefix );
+                }
+                file.write( line.text );
+                file.write( '\n' );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Failed to write " + logFile + ", forked process output will only be logged", e );
+                IOUtil.close( file );
+                file = null;
+            }
+        }
+    }
+
+    private void write( Line line )
+    {
+        String text = line.prefix != null ? line.prefix + line.text : line.text;
+        if ( line.err || line.text.contains( "[ERROR]" ) )
+        {
+            log.error( text );
+        }
+        else if ( line.text.contains( "[WARN]" ) )
+        {
+            log.warn( text );
+        }
+        else if ( line.text.contains( "[DEBUG]" ) || line.text.contains( "[TRACE]" )
+            || line.text.contains( "[SPAM]" ) )
+        {
+            log.debug( text );
+        }
+        else if ( accept() )
+        {
+            log.info( text );
+        }
+    }
+
+    /**
+     * @return true if an informational line can be logged in the current one second window
+     */
+    private boolean accept()
+    {
+        if ( consoleLinesPerSecond <= 0 )
+        {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if ( now - window >= 1000 )
+        {
+            reportSkipped();
+            window = now;
+            windowLines = 0;
+        }
+        if ( windowLines < consoleLinesPerSecond )
+        {
+            windowLines++;
+            return true;
+        }
+        skipped++;
+        return false;
+    }
+
+    private void reportSkipped()
+    {
+        if ( skipped > 0 )
+        {
+            log.info( "[" + skipped + " lines not logged]" );
+            totalSkipped += skipped;
+            skipped = 0;
+        }
+    }
+
+    private void reportDropped()
+    {
+        int count = dropped.getAndSet( 0 );
+        if ( count > 0 )
+        {
+            log.warn( "[" + count + " lines not logged, output buffer full]" );
+            totalDropped += count;
+        }
+    }
+
+    private void flush()
+    {
+        synchronized ( fileLock )
+        {
+            if ( file != null )
+            {
+                try
+                {
+                    file.flush();
+                }
+                catch ( IOException e )
+                {
+                    // reported on next write
+                }
+            }
+        }
+    }
+
+    private class Consumer
+        implements StreamConsumer
+    {
+        private final boolean err;
+
+        private final String prefix;
+
+        Consumer( boolean err, String prefix )
+        {
+            this.err = err;
+            this.prefix = prefix;
+        }
+
+        public void consumeLine( String line )
+        {
+            enqueue( new Line( err, prefix, line ) );
+        }
+
+        OutputPipeline pipeline()
+        {
+            return OutputPipeline.this;
+        }
+    }
+
+    private static class Line
+    {
+        private final boolean err;
+
+        private final String prefix;
+
+        private final String text;
+
+        Line( boolean err, String prefix, String text )
+        {
+            this.err = err;
+            this.prefix = prefix;
+            this.text = text;
+        }
+    }
+}
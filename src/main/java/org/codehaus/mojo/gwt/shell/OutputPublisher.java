@@ -0,0 +1,208 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Publish a directory written by the compiler to its final location, only touching what changed : new and modified
+ * files are copied (each one replaced atomically), files no longer produced are removed, and unchanged files are left
+ * as they are, keeping their timestamp. Downstream tools watching or copying the output then only see actual changes.
+ *
+ * @since 2.12.0
+ */
+final class OutputPublisher
+{
+    private int copied;
+
+    private int deleted;
+
+    private int unchanged;
+
+    /**
+     * Make <code>target</code> identical to <code>source</code>.
+     */
+    void publish( File source, File target )
+        throws IOException
+    {
+        if ( !source.isDirectory() )
+        {
+            if ( target.exists() )
+            {
+                deleted += countFiles( target );
+                FileUtils.forceDelete( target );
+            }
+            return;
+        }
+        if ( target.isFile() )
+        {
+            target.delete();
+        }
+        target.mkdirs();
+        String[] names = source.list();
+        for ( String name : names )
+        {
+            File from = new File( source, name );
+            File to = new File( target, name );
+            if ( from.isDirectory() )
+            {
+                publish( from, to );
+            }
+            else if ( to.isFile() && sameContent( from, to ) )
+            {
+                unchanged++;
+            }
+            else
+            {
+                if ( to.isDirectory() )
+                {
+                    FileUtils.deleteDirectory( to );
+                }
+                copy( from, to );
+                copied++;
+            }
+        }
+        String[] existing = target.list();
+        if ( existing != null )
+        {
+            Arrays.sort( names );
+            for ( String name : existing )
+            {
+                if ( Arrays.binarySearch( names, name ) < 0 )
+                {
+                    File obsolete = new File( target, name );
+                    deleted += countFiles( obsolete );
+                    FileUtils.forceDelete( obsolete );
+                }
+            }
+        }
+    }
+
+    int getCopied()
+    {
+        return copied;
+    }
+
+    int getDeleted()
+    {
+        return deleted;
+    }
+
+    int getUnchanged()
+    {
+        return unchanged;
+    }
+
+    /**
+     * Copy next to the target, then rename, so that readers never see a partially written file.
+     */
+    private static void copy( File from, File to )
+        throws IOException
+    {
+        File temp = new File( to.getParentFile(), "." + to.getName() + ".tmp" );
+        Files.copy( from.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        try
+        {
+            Files.move( temp.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( temp.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    private static boolean sameContent( File a, File b )
+        throws IOException
+    {
+        if ( a.length() != b.length() )
+        {
+            return false;
+        }
+        InputStream inA = new FileInputStream( a );
+        try
+        {
+            InputStream inB = new FileInputStream( b );
+            try
+            {
+                byte[] bufferA = new byte[8192];
+                byte[] bufferB = new byte[8192];
+                int n;
+                while ( ( n = inA.read( bufferA ) ) > 0 )
+                {
+                    int read = 0;
+                    while ( read < n )
+                    {
+                        int m = inB.read( bufferB, read, n - read );
+                        if ( m < 0 )
+                        {
+                            return false;
+                        }
+                        read += m;
+                    }
+                    for ( int i = 0; i < n; i++ )
+                    {
+                        if ( bufferA[i] != bufferB[i] )
+                        {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+            finally
+            {
+                inB.close();
+            }
+        }
+        finally
+        {
+            inA.close();
+        }
+    }
+
+    private static int countFiles( File file )
+    {
+        if ( !file.isDirectory() )
+        {
+            return 1;
+        }
+        int count = 0;
+        File[] files = file.listFiles();
+        if ( files != null )
+        {
+            for ( File child : files )
+            {
+                count += countFiles( child );
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,162 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * CPU and memory available to the build, taking the limits of the Linux control group (cgroup v1 or v2) the build runs
+ * in into account, as container runtimes do with CPU and memory limits.
+ *
+ * @since 2.12.0
+ */
+final class ResourceLimits
+{
+    private final int processors;
+
+    private final long memory;
+
+    private ResourceLimits( int processors, long memory )
+    {
+        this.processors = processors;
+        this.memory = memory;
+    }
+
+    /**
+     * @return the limits of the current process
+     */
+    static ResourceLimits detect()
+    {
+        return detect( new File( "/sys/fs/cgroup" ), Runtime.getRuntime().availableProcessors(),
+                       getPhysicalMemory() );
+    }
+
+    /**
+     * @param cgroup root of the cgroup file system
+     * @param processors number of processors of the machine
+     * @param physicalMemory memory of the machine in bytes, or 0 if unknown
+     */
+    static ResourceLimits detect( File cgroup, int processors, long physicalMemory )
+    {
+        int cpus = processors;
+        long quota = -1;
+        long period = -1;
+        // cgroup v2 : "<quota|max> <period>"
+        String cpuMax = read( new File( cgroup, "cpu.max" ) );
+        if ( cpuMax != null )
+        {
+            String[] values = cpuMax.split( "\\s+" );
+            if ( values.length == 2 )
+            {
+                quota = parse( values[0] );
+                period = parse( values[1] );
+            }
+        }
+        else
+        {
+            quota = parse( read( new File( cgroup, "cpu/cpu.cfs_quota_us" ) ) );
+            period = parse( read( new File( cgroup, "cpu/cpu.cfs_period_us" ) ) );
+        }
+        if ( quota > 0 && period > 0 )
+        {
+            cpus = (int) Math.max( 1, Math.min( processors, ( quota + period - 1 ) / period ) );
+        }
+
+        long memory = physicalMemory;
+        long limit = parse( read( new File( cgroup, "memory.max" ) ) );
+        if ( limit <= 0 )
+        {
+            limit = parse( read( new File( cgroup, "memory/memory.limit_in_bytes" ) ) );
+        }
+        // cgroup v1 reports "no limit" as a huge number
+        if ( limit > 0 && ( memory <= 0 || limit < memory ) )
+        {
+            memory = limit;
+        }
+        return new ResourceLimits( cpus, memory );
+    }
+
+    /**
+     * @return number of processors the build may use
+     */
+    int getProcessors()
+    {
+        return processors;
+    }
+
+    /**
+     * @return memory the build may use in bytes, or 0 if unknown
+     */
+    long getMemory()
+    {
+        return memory;
+    }
+
+    private static long getPhysicalMemory()
+    {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if ( os instanceof com.sun.management.OperatingSystemMXBean )
+        {
+            return ( (com.sun.management.OperatingSystemMXBean) os ).getTotalPhysicalMemorySize();
+        }
+        return 0;
+    }
+
+    private static String read( File file )
+    {
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        try
+        {
+            return FileUtils.fileRead( file, "US-ASCII" ).trim();
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return the value, or -1 for "max" or an unreadable value
+     */
+    private static long parse( String value )
+    {
+        if ( value == null )
+        {
+            return -1;
+        }
+        try
+        {
+            return Long.parseLong( value );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+}
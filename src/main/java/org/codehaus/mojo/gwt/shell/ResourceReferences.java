@@ -0,0 +1,100 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Find the resources a source file makes the GWT compiler read : <code>@Source</code> annotations of ClientBundle
+ * methods and <code>src</code> attributes of UiBinder <code>ui:style</code>, <code>ui:image</code> and
+ * <code>ui:data</code> elements.
+ *
+ * @since 2.12.0
+ */
+final class ResourceReferences
+{
+    private static final Pattern SOURCE_ANNOTATION =
+        Pattern.compile( "@(?:[\\w.]*\\.)?Source\\s*\\(\\s*(?:value\\s*=\\s*)?(\\{[^}]*\\}|\"[^\"]*\")" );
+
+    private static final Pattern STRING_LITERAL = Pattern.compile( "\"([^\"]*)\"" );
+
+    private static final Pattern UIBINDER_SRC =
+        Pattern.compile( "<ui:(?:style|image|data)\\b[^>]*?\\bsrc\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')" );
+
+    private ResourceReferences()
+    {
+    }
+
+    /**
+     * @return true if the file may reference resources
+     */
+    static boolean accept( File file )
+    {
+        return file.getName().endsWith( ".java" ) || file.getName().endsWith( ".ui.xml" );
+    }
+
+    /**
+     * @param file a java or UiBinder source file
+     * @return the referenced resources paths, as written in the file : either relative to the file package or absolute
+     *         in the classpath
+     */
+    static List<String> find( File file )
+        throws IOException
+    {
+        // annotations and attributes we look for are ASCII, so any 8-bit encoding will do
+        String content = FileUtils.fileRead( file, "ISO-8859-1" );
+        List<String> references = new ArrayList<String>();
+        if ( file.getName().endsWith( ".java" ) )
+        {
+            Matcher annotation = SOURCE_ANNOTATION.matcher( content );
+            while ( annotation.find() )
+            {
+                Matcher literal = STRING_LITERAL.matcher( annotation.group( 1 ) );
+                while ( literal.find() )
+                {
+                    references.add( literal.group( 1 ) );
+                }
+            }
+        }
+        else
+        {
+            Matcher attribute = UIBINDER_SRC.matcher( content );
+            while ( attribute.find() )
+            {
+                String value = attribute.group( 1 ) != null ? attribute.group( 1 ) : attribute.group( 2 );
+                for ( String src : value.trim().split( "\\s+" ) )
+                {
+                    if ( src.length() > 0 )
+                    {
+                        references.add( src );
+                    }
+                }
+            }
+        }
+        return references;
+    }
+}
@@ -0,0 +1,356 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compile a GWT module with the separate Precompile, CompilePerms and Link stages of the GWT compiler, each in its own
+ * JVM, instead of a single <code>Compiler</code> process running all permutations with <code>-localWorkers</code>.
+ * <p>
+ * Permutations are split in shards of a few permutations, each one compiled by a CompilePerms JVM with its own heap
+ * size. At most <code>workers</code> of those JVMs run at the same time, a new one being started as soon as another
+ * completes, and a failed shard (typically an <code>OutOfMemoryError</code>) is retried without compiling the other
+ * shards again.
+ *
+ * @since 2.12.0
+ */
+class ShardedCompilation
+{
+    /** Compiler arguments (with a value) only understood by the Link stage */
+    private static final Set<String> LINK_ARGS =
+        new HashSet<String>( Arrays.asList( "-war", "-extra", "-deploy", "-saveSourceOutput" ) );
+
+    /** Compiler arguments (with a value) handled by this class */
+    private static final Set<String> OWN_ARGS = new HashSet<String>( Arrays.asList( "-localWorkers", "-workDir" ) );
+
+    private final Log log;
+
+    private final File workDir;
+
+    private final int workers;
+
+    private final int permutationsPerShard;
+
+    private final String workerHeap;
+
+    private final int retries;
+
+    private final CompilationTimings timings;
+
+    /**
+     * @param workDir GWT compiler work directory, where stages exchange their results
+     * @param workers maximum number of CompilePerms JVMs running at the same time
+     * @param permutationsPerShard number of permutations compiled by each CompilePerms JVM
+     * @param workerHeap maximum heap size of CompilePerms JVMs, or <code>null</code> to keep the compiler one
+     * @param retries number of times a failed shard is compiled again
+     * @param timings where to record the duration of stages, or <code>null</code>
+     */
+    ShardedCompilation( Log log, File workDir, int workers, int permutationsPerShard, String workerHeap, int retries,
+                        CompilationTimings timings )
+    {
+        this.timings = timings;
+        this.log = log;
+        this.workDir = workDir;
+        this.workers = Math.max( 1, workers );
+        this.permutationsPerShard = Math.max( 1, permutationsPerShard );
+        this.workerHeap = workerHeap;
+        this.retries = Math.max( 0, retries );
+    }
+
+    /**
+     * @param compiler the <code>Compiler</code> command, without modules, from which stage commands are derived
+     * @param module the GWT module to compile
+     */
+    void compile( JavaCommand compiler, final String module )
+        throws JavaCommandException
+    {
+        List<String> precompileArgs = new ArrayList<String>();
+        List<String> linkArgs = new ArrayList<String>();
+        List<String> stageArgs = splitArgs( compiler.getArgs(), precompileArgs, linkArgs );
+
+        File compilerWorkDir = new File( new File( workDir, module ), "compiler" );
+        try
+        {
+            FileUtils.deleteDirectory( compilerWorkDir );
+        }
+        catch ( IOException e )
+        {
+            throw new JavaCommandException( "Failed to clean " + compilerWorkDir, e );
+        }
+
+        CompilationTimings.Module moduleTimings = timings != null ? timings.start( module ) : null;
+        long start = System.currentTimeMillis();
+        List<String> args = new ArrayList<String>( precompileArgs );
+        args.addAll( stageArgs );
+        args.add( module );
+        derive( compiler, "com.google.gwt.dev.Precompile", args ).execute();
+        start = recordPhase( moduleTimings, CompilationTimings.PRECOMPILE, start );
+
+        int permutations = getPermutationCount( compilerWorkDir );
+        if ( moduleTimings != null )
+        {
+            moduleTimings.setPermutationCount( permutations );
+            int shards = ( permutations + permutationsPerShard - 1 ) / permutationsPerShard;
+            moduleTimings.setWorkers( Math.min( workers, shards ) );
+        }
+        compilePermutations( compiler, module, stageArgs, permutations, moduleTimings );
+        start = recordPhase( moduleTimings, CompilationTimings.PERMUTATIONS, start );
+
+        args = new ArrayList<String>( stageArgs );
+        args.addAll( linkArgs );
+        args.add( module );
+        derive( compiler, "com.google.gwt.dev.Link", args ).execute();
+        start = recordPhase( moduleTimings, CompilationTimings.LINK, start );
+        if ( moduleTimings != null )
+        {
+            moduleTimings.end( start );
+        }
+    }
+
+    /**
+     * Split the <code>Compiler</code> arguments between the Precompile and Link stages, dropping the ones handled by
+     * this class.
+     *
+     * @param precompileArgs receives the arguments of the Precompile stage
+     * @param linkArgs receives the arguments only understood by the Link stage
+     * @return arguments of all stages : the log level and the work directory
+     */
+    List<String> splitArgs( List<String> compilerArgs, List<String> precompileArgs, List<String> linkArgs )
+    {
+        String logLevel = null;
+        for ( int i = 0; i < compilerArgs.size(); i++ )
+        {
+            String arg = compilerArgs.get( i );
+            boolean hasValue = i + 1 < compilerArgs.size();
+            if ( hasValue && LINK_ARGS.contains( arg ) )
+            {
+                linkArgs.add( arg );
+                linkArgs.add( compilerArgs.get( ++i ) );
+            }
+            else if ( hasValue && OWN_ARGS.contains( arg ) )
+            {
+                i++;
+            }
+            else
+            {
+                if ( hasValue && "-logLevel".equals( arg ) )
+                {
+                    logLevel = compilerArgs.get( i + 1 );
+                }
+                precompileArgs.add( arg );
+            }
+        }
+        List<String> stageArgs = new ArrayList<String>();
+        if ( logLevel != null )
+        {
+            stageArgs.add( "-logLevel" );
+            stageArgs.add( logLevel );
+        }
+        stageArgs.add( "-workDir" );
+        stageArgs.add( workDir.getAbsolutePath() );
+        return stageArgs;
+    }
+
+    /**
+     * @return the permutations compiled by each CompilePerms JVM
+     */
+    List<List<Integer>> getShards( int permutations )
+    {
+        List<List<Integer>> shards = new ArrayList<List<Integer>>();
+        for ( int perm = 0; perm < permutations; perm++ )
+        {
+            if ( perm % permutationsPerShard == 0 )
+            {
+                shards.add( new ArrayList<Integer>() );
+            }
+            shards.get( shards.size() - 1 ).add( perm );
+        }
+        return shards;
+    }
+
+    /**
+     * @return the end of the phase
+     */
+    private static long recordPhase( CompilationTimings.Module moduleTimings, String phase, long start )
+    {
+        long now = System.currentTimeMillis();
+        if ( moduleTimings != null )
+        {
+            moduleTimings.phase( phase, now - start );
+        }
+        return now;
+    }
+
+    private void compilePermutations( final JavaCommand compiler, final String module, final List<String> stageArgs,
+                                      int permutations, final CompilationTimings.Module moduleTimings )
+        throws JavaCommandException
+    {
+        List<List<Integer>> shards = getShards( permutations );
+        int threads = Math.min( workers, shards.size() );
+        log.info( "Compiling " + permutations + " permutations of " + module + " in " + shards.size() + " shards, "
+            + threads + " at a time" + ( workerHeap != null ? " (-Xmx" + workerHeap + " each)" : "" ) );
+
+        Map<List<Integer>, Future<?>> results = new LinkedHashMap<List<Integer>, Future<?>>();
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            for ( final List<Integer> shard : shards )
+            {
+                results.put( shard, executor.submit( new Callable<Void>()
+                {
+                    public Void call()
+                        throws JavaCommandException
+                    {
+                        long start = System.currentTimeMillis();
+                        compileShard( compiler, module, stageArgs, shard );
+                        if ( moduleTimings != null )
+                        {
+                            // permutations of a shard are compiled together
+                            long duration = System.currentTimeMillis() - start;
+                            for ( Integer permutation : shard )
+                            {
+                                moduleTimings.permutation( permutation, start, duration );
+                            }
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+
+            JavaCommandException failure = null;
+            for ( Map.Entry<List<Integer>, Future<?>> result : results.entrySet() )
+            {
+                try
+                {
+                    result.getValue().get();
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( failure == null )
+                    {
+                        failure = new JavaCommandException( "Failed to compile permutations " + result.getKey()
+                            + " of " + module, e.getCause() );
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new JavaCommandException( "Interrupted while compiling permutations of " + module, e );
+                }
+            }
+            if ( failure != null )
+            {
+                throw failure;
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void compileShard( JavaCommand compiler, String module, List<String> stageArgs, List<Integer> shard )
+        throws JavaCommandException
+    {
+        List<String> args = new ArrayList<String>( stageArgs );
+        args.add( "-perms" );
+        args.add( StringUtils.join( shard.iterator(), "," ) );
+        args.add( "-localWorkers" );
+        args.add( "1" );
+        args.add( module );
+        String prefix = "[" + module + " " + shard + "] ";
+        for ( int attempt = 0;; attempt++ )
+        {
+            JavaCommand cmd = derive( compiler, "com.google.gwt.dev.CompilePerms", args );
+            if ( workerHeap != null )
+            {
+                CompileMojo.setMaxHeap( cmd, workerHeap );
+            }
+            prefixOutput( cmd, prefix );
+            try
+            {
+                cmd.execute();
+                return;
+            }
+            catch ( JavaCommandException e )
+            {
+                if ( attempt >= retries )
+                {
+                    throw e;
+                }
+                log.warn( prefix + e.getMessage() + ", retrying" );
+            }
+        }
+    }
+
+    private static int getPermutationCount( File compilerWorkDir )
+        throws JavaCommandException
+    {
+        File permCount = new File( compilerWorkDir, "permCount.txt" );
+        try
+        {
+            return Integer.parseInt( FileUtils.fileRead( permCount, "UTF-8" ).trim() );
+        }
+        catch ( IOException e )
+        {
+            throw new JavaCommandException( "Failed to read the number of permutations from " + permCount, e );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new JavaCommandException( "Failed to read the number of permutations from " + permCount, e );
+        }
+    }
+
+    /**
+     * @return a command running a compiler stage in a JVM configured like the compiler one
+     */
+    private static JavaCommand derive( JavaCommand compiler, String mainClass, List<String> args )
+    {
+        return compiler.copy()
+            .setMainClass( mainClass )
+            .setArgs( args )
+            .setDaemons( null );
+    }
+
+    private static void prefixOutput( JavaCommand cmd, String prefix )
+    {
+        cmd.setOut( OutputPipeline.prefix( cmd.getOut(), prefix ) );
+        cmd.setErr( OutputPipeline.prefix( cmd.getErr(), prefix ) );
+    }
+}
@@ -0,0 +1,570 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Replace the GWT libraries of a compiler classpath with slimmed, uncompressed copies, so that the compiler resource
+ * oracle, which walks every entry of every jar, has less to read.
+ * <p>
+ * A GWT library is a dependency jar holding a module descriptor. Its copy keeps all its entries but the classes that
+ * the compiler builds from the sources of the same jar, unless generators or linkers may use them : classes reachable
+ * from the generators, property providers and linkers declared in module descriptors, and from service
+ * implementations, following the class references of the constant pool of each class across the whole classpath.
+ * Classes only used by reflection from generators are not detected. The GWT SDK jars are not slimmed.
+ * <p>
+ * Copies are stored (not compressed) and named after the digests of the jar and of its removed entries, so they are
+ * built once. The result for a classpath is cached as well, keyed by the size and modification time of its entries.
+ *
+ * @since 2.12.0
+ */
+final class SlimClasspath
+{
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final Pattern GENERATOR =
+        Pattern.compile( "<(?:generate-with|define-linker)\\b[^>]*?\\bclass\\s*=\\s*\"([^\"]+)\"" );
+
+    private static final Pattern PROPERTY_PROVIDER =
+        Pattern.compile( "<property-provider\\b[^>]*?\\bgenerator\\s*=\\s*\"([^\"]+)\"" );
+
+    private static final Pattern TYPE_DESCRIPTOR = Pattern.compile( "L([\\w/$]+)[;<]" );
+
+    private final File directory;
+
+    private final Set<File> sdk;
+
+    private final Log log;
+
+    private final Map<String, List<File>> results = new HashMap<String, List<File>>();
+
+    /**
+     * @param directory where slimmed jars are written
+     * @param sdk jars of the GWT SDK, left untouched
+     * @param log plugin logger
+     */
+    SlimClasspath( File directory, Collection<File> sdk, Log log )
+    {
+        this.directory = directory;
+        this.sdk = new HashSet<File>( sdk );
+        this.log = log;
+    }
+
+    /**
+     * @return the classpath with GWT libraries replaced by their slimmed copies
+     */
+    synchronized List<File> slim( List<File> classpath )
+        throws IOException
+    {
+        String key = getKey( classpath );
+        List<File> result = results.get( key );
+        if ( result != null )
+        {
+            return result;
+        }
+        File index = new File( directory, key + ".classpath" );
+        result = readIndex( index );
+        if ( result == null )
+        {
+            long start = System.currentTimeMillis();
+            result = build( classpath );
+            directory.mkdirs();
+            FileUtils.fileWrite( index.getAbsolutePath(), "UTF-8", JavaCommand.toPath( result ) );
+            log.debug( "Slimmed GWT compiler classpath in " + ( System.currentTimeMillis() - start ) + "ms" );
+        }
+        results.put( key, result );
+        return result;
+    }
+
+    private List<File> build( List<File> classpath )
+        throws IOException
+    {
+        // internal class name -> classpath entry, first one wins as for the class loader
+        Map<String, File> classes = new HashMap<String, File>();
+        Map<File, Set<String>> sources = new HashMap<File, Set<String>>();
+        Set<File> libraries = new HashSet<File>();
+        Deque<String> queue = new ArrayDeque<String>();
+        for ( File entry : classpath )
+        {
+            if ( entry.isDirectory() )
+            {
+                scanDirectory( entry, "", entry, classes, queue );
+            }
+            else if ( entry.isFile() )
+            {
+                if ( scanJar( entry, classes, sources, queue ) && !sdk.contains( entry )
+                    && !directory.getAbsoluteFile().equals( entry.getAbsoluteFile().getParentFile() ) )
+                {
+                    libraries.add( entry );
+                }
+            }
+        }
+
+        Set<String> reachable = new HashSet<String>();
+        Map<File, ZipFile> jars = new HashMap<File, ZipFile>();
+        try
+        {
+            while ( !queue.isEmpty() )
+            {
+                String name = queue.pop();
+                File entry = classes.get( name );
+                if ( entry == null || sdk.contains( entry ) || !reachable.add( name ) )
+                {
+                    // JDK or SDK classes don't reference dependencies
+                    continue;
+                }
+                byte[] bytes = readClass( entry, name, jars );
+                if ( bytes != null )
+                {
+                    for ( String reference : getReferences( bytes ) )
+                    {
+                        if ( !reachable.contains( reference ) )
+                        {
+                            queue.push( reference );
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            for ( ZipFile jar : jars.values() )
+            {
+                jar.close();
+            }
+        }
+
+        // classes compiled from a source of the same jar, including nested ones, that generators don't use
+        Map<File, Set<String>> removed = new HashMap<File, Set<String>>();
+        for ( File library : libraries )
+        {
+            removed.put( library, new TreeSet<String>() );
+        }
+        for ( Map.Entry<String, File> type : classes.entrySet() )
+        {
+            String name = type.getKey();
+            int nested = name.indexOf( '$' );
+            String source = ( nested > 0 ? name.substring( 0, nested ) : name ) + ".java";
+            if ( libraries.contains( type.getValue() ) && !reachable.contains( name )
+                && sources.get( type.getValue() ).contains( source ) )
+            {
+                removed.get( type.getValue() ).add( name );
+            }
+        }
+
+        List<File> result = new ArrayList<File>( classpath.size() );
+        for ( File entry : classpath )
+        {
+            result.add( libraries.contains( entry ) ? getSlimmedJar( entry, removed.get( entry ) ) : entry );
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the jar is a GWT library
+     */
+    private boolean scanJar( File file, Map<String, File> classes, Map<File, Set<String>> sources,
+                             Deque<String> queue )
+        throws IOException
+    {
+        boolean library = false;
+        Set<String> jarSources = new HashSet<String>();
+        ZipFile jar = new ZipFile( file );
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = jar.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if ( name.endsWith( ".class" ) )
+                {
+                    String className = name.substring( 0, name.length() - ".class".length() );
+                    if ( !classes.containsKey( className ) )
+                    {
+                        classes.put( className, file );
+                    }
+                }
+                else if ( name.endsWith( ".java" ) )
+                {
+                    jarSources.add( name );
+                }
+                else if ( name.endsWith( ".gwt.xml" ) )
+                {
+                    library = true;
+                    addRoots( read( jar.getInputStream( entry ) ), queue );
+                }
+                else if ( name.startsWith( "META-INF/services/" ) && !entry.isDirectory() )
+                {
+                    addServices( read( jar.getInputStream( entry ) ), queue );
+                }
+            }
+        }
+        finally
+        {
+            jar.close();
+        }
+        sources.put( file, jarSources );
+        return library;
+    }
+
+    private void scanDirectory( File dir, String path, File root, Map<String, File> classes, Deque<String> queue )
+        throws IOException
+    {
+        File[] files = dir.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            String name = path + file.getName();
+            if ( file.isDirectory() )
+            {
+                scanDirectory( file, name + "/", root, classes, queue );
+            }
+            else if ( name.endsWith( ".class" ) )
+            {
+                String className = name.substring( 0, name.length() - ".class".length() );
+                if ( !classes.containsKey( className ) )
+                {
+                    classes.put( className, root );
+                }
+            }
+            else if ( name.endsWith( ".gwt.xml" ) )
+            {
+                addRoots( FileUtils.fileRead( file, "UTF-8" ), queue );
+            }
+            else if ( name.startsWith( "META-INF/services/" ) )
+            {
+                addServices( FileUtils.fileRead( file, "UTF-8" ), queue );
+            }
+        }
+    }
+
+    private static void addRoots( String moduleDescriptor, Deque<String> queue )
+    {
+        for ( Pattern pattern : new Pattern[] { GENERATOR, PROPERTY_PROVIDER } )
+        {
+            Matcher matcher = pattern.matcher( moduleDescriptor );
+            while ( matcher.find() )
+            {
+                queue.push( toInternalName( matcher.group( 1 ) ) );
+            }
+        }
+    }
+
+    private static void addServices( String services, Deque<String> queue )
+    {
+        for ( String line : services.split( "\n" ) )
+        {
+            int comment = line.indexOf( '#' );
+            String service = ( comment >= 0 ? line.substring( 0, comment ) : line ).trim();
+            if ( service.length() > 0 )
+            {
+                queue.push( toInternalName( service ) );
+            }
+        }
+    }
+
+    private static String toInternalName( String className )
+    {
+        return className.trim().replace( '.', '/' );
+    }
+
+    private static byte[] readClass( File entry, String name, Map<File, ZipFile> jars )
+        throws IOException
+    {
+        if ( entry.isDirectory() )
+        {
+            return toBytes( new FileInputStream( new File( entry, name + ".class" ) ) );
+        }
+        ZipFile jar = jars.get( entry );
+        if ( jar == null )
+        {
+            jar = new ZipFile( entry );
+            jars.put( entry, jar );
+        }
+        ZipEntry classEntry = jar.getEntry( name + ".class" );
+        return classEntry == null ? null : toBytes( jar.getInputStream( classEntry ) );
+    }
+
+    /**
+     * @return internal names of the classes referenced by a class file : class constants, and types in field and
+     *         method descriptors, signatures and annotations
+     */
+    static Set<String> getReferences( byte[] classFile )
+        throws IOException
+    {
+        Set<String> references = new HashSet<String>();
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( classFile ) );
+        if ( in.readInt() != 0xCAFEBABE )
+        {
+            return references;
+        }
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        List<Integer> classIndexes = new ArrayList<Integer>();
+        for ( int i = 1; i < count; i++ )
+        {
+            int tag = in.readUnsignedByte();
+            switch ( tag )
+            {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classIndexes.add( in.readUnsignedShort() );
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.readUnsignedShort();
+                    break;
+                case 15: // MethodHandle
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.readInt();
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.readLong();
+                    i++;
+                    break;
+                default:
+                    throw new IOException( "Unknown constant pool tag " + tag );
+            }
+        }
+        for ( int index : classIndexes )
+        {
+            String name = utf8[index];
+            if ( name != null && !name.startsWith( "[" ) )
+            {
+                references.add( name );
+            }
+        }
+        for ( String value : utf8 )
+        {
+            if ( value != null && value.indexOf( ';' ) > 0 )
+            {
+                Matcher type = TYPE_DESCRIPTOR.matcher( value );
+                while ( type.find() )
+                {
+                    references.add( type.group( 1 ) );
+                }
+            }
+        }
+        return references;
+    }
+
+    /**
+     * @return a stored copy of the jar without the removed classes, created if it doesn't exist yet
+     */
+    private File getSlimmedJar( File jar, Set<String> removed )
+        throws IOException
+    {
+        MessageDigest digest = Digests.newDigest();
+        for ( String name : removed )
+        {
+            digest.update( name.getBytes( UTF8 ) );
+            digest.update( (byte) 0 );
+        }
+        String baseName = jar.getName().replaceFirst( "\\.jar$", "" );
+        File slimmed = new File( directory, baseName + "-" + Digests.digest( jar ).substring( 0, 16 ) + "-"
+            + Digests.toHex( digest.digest(), 8 ) + ".jar" );
+        if ( slimmed.isFile() )
+        {
+            return slimmed;
+        }
+        directory.mkdirs();
+        File temp = new File( directory, slimmed.getName() + ".tmp-" + Long.toHexString( System.nanoTime() ) );
+        ZipFile source = new ZipFile( jar );
+        ZipOutputStream out = null;
+        int kept = 0;
+        int total = 0;
+        try
+        {
+            out = new ZipOutputStream( new FileOutputStream( temp ) );
+            for ( Enumeration<? extends ZipEntry> entries = source.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                total++;
+                if ( name.endsWith( ".class" )
+                    && removed.contains( name.substring( 0, name.length() - ".class".length() ) ) )
+                {
+                    continue;
+                }
+                byte[] content = entry.isDirectory() ? new byte[0] : toBytes( source.getInputStream( entry ) );
+                CRC32 crc = new CRC32();
+                crc.update( content );
+                ZipEntry copy = new ZipEntry( name );
+                copy.setMethod( ZipEntry.STORED );
+                copy.setSize( content.length );
+                copy.setCompressedSize( content.length );
+                copy.setCrc( crc.getValue() );
+                copy.setTime( entry.getTime() );
+                out.putNextEntry( copy );
+                out.write( content );
+                out.closeEntry();
+                kept++;
+            }
+            out.close();
+        }
+        finally
+        {
+            IOUtil.close( out );
+            source.close();
+        }
+        if ( !temp.renameTo( slimmed ) )
+        {
+            // another build created it meanwhile
+            temp.delete();
+        }
+        log.debug( "Slimmed " + jar.getName() + " from " + total + " to " + kept + " entries" );
+        return slimmed;
+    }
+
+    private List<File> readIndex( File index )
+        throws IOException
+    {
+        if ( !index.isFile() )
+        {
+            return null;
+        }
+        List<File> result = new ArrayList<File>();
+        for ( String path : FileUtils.fileRead( index, "UTF-8" ).split( File.pathSeparator ) )
+        {
+            File file = new File( path );
+            if ( path.startsWith( directory.getAbsolutePath() ) && !file.isFile() )
+            {
+                // slimmed jar removed meanwhile
+                return null;
+            }
+            result.add( file );
+        }
+        return result;
+    }
+
+    /**
+     * @return digest of the classpath entries, with size and modification time of jars, and number and latest
+     *         modification time of files in directories, which may declare generators
+     */
+    private String getKey( List<File> classpath )
+    {
+        MessageDigest digest = Digests.newDigest();
+        for ( File entry : classpath )
+        {
+            long[] stamp = new long[] { entry.length(), entry.lastModified() };
+            if ( entry.isDirectory() )
+            {
+                stamp = new long[2];
+                addFiles( entry, stamp );
+            }
+            digest.update( ( entry.getAbsolutePath() + "," + stamp[0] + "," + stamp[1] + "\n" ).getBytes( UTF8 ) );
+        }
+        return Digests.toHex( digest.digest() );
+    }
+
+    private static void addFiles( File dir, long[] stamp )
+    {
+        File[] files = dir.listFiles();
+        if ( files == null )
+        {
+            return;
+        }
+        for ( File file : files )
+        {
+            if ( file.isDirectory() )
+            {
+                addFiles( file, stamp );
+            }
+            else
+            {
+                stamp[0]++;
+                stamp[1] = Math.max( stamp[1], file.lastModified() );
+            }
+        }
+    }
+
+    private static String read( InputStream in )
+        throws IOException
+    {
+        return new String( toBytes( in ), UTF8 );
+    }
+
+    private static byte[] toBytes( InputStream in )
+        throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtil.copy( in, out );
+            return out.toByteArray();
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+}
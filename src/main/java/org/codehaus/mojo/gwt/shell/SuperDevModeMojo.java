@@ -123,6 +123,19 @@ public class SuperDevModeMojo extends AbstractGwtShellMojo
     @Parameter(property = "gwt.codeServer.launcherDir")
     private File launcherDir;
 
+    /**
+     * Whether to drop from the code server classpath the jars the modules can't use, typically server side libraries.
+     * See the <code>pruneClasspath</code> parameter of the <code>compile</code> goal. As the classpath is analyzed
+     * when the code server starts, restart it after importing classes from a dropped jar.
+     * <p>
+     * Can be set from command line using '-Dgwt.pruneClasspath=true'.
+     * </p>
+     *
+     * @since 2.12.0
+     */
+    @Parameter(defaultValue = "false", property = "gwt.pruneClasspath")
+    private boolean pruneClasspath;
+
     /**
      * The MavenProject executed by the "process-classes" phase.
      */
@@ -145,6 +158,10 @@ public class SuperDevModeMojo extends AbstractGwtShellMojo
         cmd.addToClasspath( getClasspath( Artifact.SCOPE_COMPILE ) );
         addCompileSourceArtifacts( cmd );
         addPersistentUnitCache(cmd);
+        if ( pruneClasspath )
+        {
+            addClasspathPruning( cmd );
+        }
 
         if ( !gwtSdkFirstInClasspath )
         {
@@ -443,7 +443,8 @@ public class TestMojo
             try
             {
                 JavaCommand cmd = createJavaCommand()
-                    .setMainClass( MavenTestRunner.class.getName() );
+                    .setMainClass( MavenTestRunner.class.getName() )
+                    .setDaemons( getJvmPool() );
                 if ( gwtSdkFirstInClasspath )
                 {
                     cmd.addToClasspath( getGwtUserJar() )
@@ -0,0 +1,250 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Index of the GWT module descriptors of a classpath, to find a module without a class loader opening every jar.
+ * <p>
+ * Jars are indexed once from their central directory, keeping only the <code>.gwt.xml</code> entries, and indexes are
+ * shared by all lookups in the Maven session for the same classpath, as long as its jars don't change. An index is
+ * built by the first thread asking for it, other threads asking for the same classpath wait for it while the ones
+ * asking for other classpaths go on. Directories are not indexed, as their content may change during the build : they
+ * are checked on each lookup, in classpath order.
+ *
+ * @since 2.12.0
+ */
+public final class ClasspathResourceIndex
+{
+    /** Indexes of the last classpaths, by their entries with size and modification time of jars */
+    private static final Map<String, FutureTask<ClasspathResourceIndex>> INDEXES =
+        new LinkedHashMap<String, FutureTask<ClasspathResourceIndex>>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, FutureTask<ClasspathResourceIndex>> eldest )
+            {
+                return size() > 8;
+            }
+        };
+
+    private final List<File> classpath;
+
+    /** module descriptor name -> position in the classpath of the first jar holding it */
+    private final Map<String, Integer> resources = new HashMap<String, Integer>();
+
+    /** positions of the directories in the classpath */
+    private final List<Integer> directories = new ArrayList<Integer>();
+
+    private ClasspathResourceIndex( List<File> classpath )
+    {
+        this.classpath = classpath;
+        for ( int i = 0; i < classpath.size(); i++ )
+        {
+            File entry = classpath.get( i );
+            if ( entry.isDirectory() )
+            {
+                directories.add( i );
+            }
+            else if ( entry.isFile() )
+            {
+                addJar( entry, i );
+            }
+        }
+    }
+
+    private void addJar( File file, int position )
+    {
+        ZipFile jar;
+        try
+        {
+            jar = new ZipFile( file );
+        }
+        catch ( IOException e )
+        {
+            // not a jar, ignored as a class loader does
+            return;
+        }
+        try
+        {
+            for ( Enumeration<? extends ZipEntry> entries = jar.entries(); entries.hasMoreElements(); )
+            {
+                ZipEntry entry = entries.nextElement();
+                if ( entry.getName().endsWith( DefaultGwtModuleReader.GWT_MODULE_EXTENSION ) && !entry.isDirectory()
+                    && !resources.containsKey( entry.getName() ) )
+                {
+                    resources.put( entry.getName(), position );
+                }
+            }
+        }
+        finally
+        {
+            try
+            {
+                jar.close();
+            }
+            catch ( IOException e )
+            {
+                // read only
+            }
+        }
+    }
+
+    /**
+     * @param classpath the classpath entries, jars or directories
+     * @return the index of this classpath, built on first use
+     */
+    public static ClasspathResourceIndex get( Collection<File> classpath )
+    {
+        final List<File> entries = new ArrayList<File>( classpath );
+        StringBuilder key = new StringBuilder();
+        for ( File entry : classpath )
+        {
+            key.append( entry.getAbsolutePath() );
+            if ( entry.isFile() )
+            {
+                key.append( ',' ).append( entry.length() ).append( ',' ).append( entry.lastModified() );
+            }
+            key.append( '\n' );
+        }
+        FutureTask<ClasspathResourceIndex> index;
+        boolean owner = false;
+        synchronized ( INDEXES )
+        {
+            index = INDEXES.get( key.toString() );
+            if ( index == null )
+            {
+                index = new FutureTask<ClasspathResourceIndex>( new Callable<ClasspathResourceIndex>()
+                {
+                    public ClasspathResourceIndex call()
+                    {
+                        return new ClasspathResourceIndex( entries );
+                    }
+                } );
+                INDEXES.put( key.toString(), index );
+                owner = true;
+            }
+        }
+        if ( owner )
+        {
+            // jars are read outside of the lock
+            index.run();
+        }
+        try
+        {
+            return index.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return new ClasspathResourceIndex( entries );
+        }
+        catch ( ExecutionException e )
+        {
+            synchronized ( INDEXES )
+            {
+                if ( INDEXES.get( key.toString() ) == index )
+                {
+                    INDEXES.remove( key.toString() );
+                }
+            }
+            if ( e.getCause() instanceof Error )
+            {
+                throw (Error) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * @param name module descriptor name, like <code>com/acme/App.gwt.xml</code>
+     * @return the classpath entry holding the descriptor, the first one as for a class loader, or <code>null</code>
+     */
+    public File getEntry( String name )
+    {
+        Integer jar = resources.get( name );
+        for ( int i : directories )
+        {
+            if ( jar != null && i > jar )
+            {
+                break;
+            }
+            if ( new File( classpath.get( i ), name ).isFile() )
+            {
+                return classpath.get( i );
+            }
+        }
+        return jar == null ? null : classpath.get( jar );
+    }
+
+    /**
+     * @param name module descriptor name, like <code>com/acme/App.gwt.xml</code>
+     * @return the content of the descriptor, or <code>null</code> if it is not in the classpath
+     */
+    public InputStream getResourceAsStream( String name )
+        throws IOException
+    {
+        File entry = getEntry( name );
+        if ( entry == null )
+        {
+            return null;
+        }
+        if ( entry.isDirectory() )
+        {
+            return new FileInputStream( new File( entry, name ) );
+        }
+        ZipFile jar = new ZipFile( entry );
+        try
+        {
+            ZipEntry zipEntry = jar.getEntry( name );
+            if ( zipEntry == null )
+            {
+                // jar replaced since indexed
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtil.copy( jar.getInputStream( zipEntry ), out );
+            return new ByteArrayInputStream( out.toByteArray() );
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+}
@@ -16,20 +16,11 @@ package org.codehaus.mojo.gwt.utils;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
@@ -37,11 +28,8 @@ import org.codehaus.mojo.gwt.AbstractGwtModuleMojo;
 import org.codehaus.mojo.gwt.ClasspathBuilder;
 import org.codehaus.mojo.gwt.ClasspathBuilderException;
 import org.codehaus.mojo.gwt.GwtModule;
+import org.codehaus.mojo.gwt.GwtModuleCache;
 import org.codehaus.mojo.gwt.GwtModuleReader;
-import org.codehaus.plexus.util.DirectoryScanner;
-import org.codehaus.plexus.util.ReaderFactory;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
-import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
 
 /**
  * @author <a href="mailto:olamy@apache.org">Olivier Lamy</a>
@@ -58,60 +46,35 @@ public class DefaultGwtModuleReader
 
     private Log log;
 
+    private MavenSession session;
+
     public DefaultGwtModuleReader( MavenProject mavenProject, Log log, ClasspathBuilder classpathBuilder )
     {
+        this( null, mavenProject, log, classpathBuilder );
+    }
+
+    /**
+     * @param session the Maven session, sharing the parsed module descriptors with the other goals and projects
+     * @since 2.12.0
+     */
+    public DefaultGwtModuleReader( MavenSession session, MavenProject mavenProject, Log log,
+                                   ClasspathBuilder classpathBuilder )
+    {
+        this.session = session;
         this.mavenProject = mavenProject;
         this.log = log;
         this.classpathBuilder = classpathBuilder;
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> getGwtModules()
     {
-        //Use a Set to avoid duplicate when user set src/main/java as <resource>
-        Set<String> mods = new HashSet<String>();
+        List<String> modules = ModuleDiscovery.findModules( mavenProject, log );
 
-        Collection<String> sourcePaths = (Collection<String>) mavenProject.getCompileSourceRoots();
-        for ( String sourcePath : sourcePaths )
-        {
-            File sourceDirectory = new File( sourcePath );
-            if ( sourceDirectory.exists() )
-            {
-                DirectoryScanner scanner = new DirectoryScanner();
-                scanner.setBasedir( sourceDirectory.getAbsolutePath() );
-                scanner.setIncludes( new String[] { "**/*" + GWT_MODULE_EXTENSION } );
-                scanner.scan();
-
-                mods.addAll( Arrays.asList( scanner.getIncludedFiles() ) );
-            }
-        }
-
-        Collection<Resource> resources = (Collection<Resource>) mavenProject.getResources();
-        for ( Resource resource : resources )
-        {
-            File resourceDirectoryFile = new File( resource.getDirectory() );
-            if ( !resourceDirectoryFile.exists() )
-            {
-                continue;
-            }
-            DirectoryScanner scanner = new DirectoryScanner();
-            scanner.setBasedir( resource.getDirectory() );
-            scanner.setIncludes( new String[] { "**/*" + GWT_MODULE_EXTENSION } );
-            scanner.scan();
-            mods.addAll( Arrays.asList( scanner.getIncludedFiles() ) );
-        }
-
-        if ( mods.isEmpty() )
+        if ( modules.isEmpty() )
         {
             log.warn( "GWT plugin is configured to detect modules, but none were found." );
         }
 
-        List<String> modules = new ArrayList<String>( mods.size() );
-        for ( String fileName : mods )
-        {
-            String path = fileName.substring( 0, fileName.length() - GWT_MODULE_EXTENSION.length() );
-            modules.add( path.replace( File.separatorChar, '.' ) );
-        }
         if ( modules.size() > 0 )
         {
             log.info( "auto discovered modules " + modules );
@@ -148,23 +111,13 @@ public class DefaultGwtModuleReader
 
         try
         {
-            Collection<File> classpath = getClasspath( Artifact.SCOPE_COMPILE );
-            URL[] urls = new URL[classpath.size()];
-            int i = 0;
-            for ( File file : classpath )
+            ClasspathResourceIndex index = ClasspathResourceIndex.get( getClasspath( Artifact.SCOPE_COMPILE ) );
+            GwtModule module = GwtModuleCache.readModule( session, mavenProject, name, index, this );
+            if ( module != null )
             {
-                urls[i++] = file.toURI().toURL();
-            }
-            InputStream stream = new URLClassLoader( urls ).getResourceAsStream( modulePath );
-            if ( stream != null )
-            {
-                return readModule( name, stream );
+                return module;
             }
         }
-        catch ( MalformedURLException e )
-        {
-            // ignored;
-        }
         catch ( ClasspathBuilderException e )
         {
             throw new GwtModuleReaderException( e.getMessage(), e );
@@ -175,32 +128,8 @@ public class DefaultGwtModuleReader
 
     private GwtModule readModule( String name, File file )
         throws GwtModuleReaderException
-
     {
-        try
-        {
-            return readModule( name, new FileInputStream( file ) );
-        }
-        catch ( FileNotFoundException e )
-        {
-            throw new GwtModuleReaderException( "Failed to read module file " + file );
-        }
-    }
-
-    private GwtModule readModule( String name, InputStream xml )
-        throws GwtModuleReaderException
-    {
-        try
-        {
-            Xpp3Dom dom = Xpp3DomBuilder.build( ReaderFactory.newXmlReader( xml ) );
-            return new GwtModule( name, dom, this );
-        }
-        catch ( Exception e )
-        {
-            String error = "Failed to read module XML file " + xml;
-            log.error( error );
-            throw new GwtModuleReaderException( error, e );
-        }
+        return GwtModuleCache.readModule( session, mavenProject, name, file, this );
     }
 
     public Collection<File> getClasspath( String scope )
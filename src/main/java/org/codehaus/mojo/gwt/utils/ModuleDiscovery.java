@@ -0,0 +1,325 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Find the GWT modules of source and resource directories.
+ * <p>
+ * Directories are walked in parallel, skipping the build directory of the project when a source or resource directory
+ * contains it, as it only holds compiled and generated files. The modules found in a directory tree are recorded in an index file with the
+ * modification time of every walked directory : as adding, removing or renaming a file changes the modification time
+ * of its parent directory, the tree doesn't have to be walked again as long as these are unchanged.
+ *
+ * @since 2.12.0
+ */
+public final class ModuleDiscovery
+{
+    /** Modification times this close to the walk may still change within the file system time granularity */
+    private static final long TIME_GRANULARITY = 2000;
+
+    private static final String DIRECTORIES = ".directories";
+
+    private static final String MODULES = ".modules";
+
+    private ModuleDiscovery()
+    {
+    }
+
+    /**
+     * @return names of the modules of the compile source roots and resource directories of the project, using an
+     *         index in its build directory
+     */
+    public static List<String> findModules( MavenProject project, Log log )
+    {
+        Set<File> roots = new LinkedHashSet<File>();
+        for ( Object sourceRoot : project.getCompileSourceRoots() )
+        {
+            roots.add( new File( (String) sourceRoot ) );
+        }
+        for ( Object resource : project.getResources() )
+        {
+            roots.add( new File( ( (Resource) resource ).getDirectory() ) );
+        }
+        File buildDirectory = new File( project.getBuild().getDirectory() );
+        return findModules( roots, Collections.singleton( buildDirectory ),
+                            new File( buildDirectory, "gwt-modules.index" ), log );
+    }
+
+    /**
+     * @param roots source and resource directories
+     * @param excluded directories not to walk, like the build directory of the project
+     * @param index file recording the modules found in each directory, or <code>null</code> to always walk them
+     * @param log plugin logger
+     * @return names of the modules found
+     */
+    public static List<String> findModules( Collection<File> roots, Collection<File> excluded, File index, Log log )
+    {
+        Set<Path> skipped = new HashSet<Path>();
+        for ( File directory : excluded )
+        {
+            skipped.add( directory.getAbsoluteFile().toPath().normalize() );
+        }
+        Properties previous = index != null ? load( index ) : new Properties();
+        Properties current = new Properties();
+        Set<String> modules = new LinkedHashSet<String>();
+        for ( File root : roots )
+        {
+            String key = root.getAbsolutePath();
+            if ( !root.isDirectory() || current.containsKey( key + MODULES ) )
+            {
+                continue;
+            }
+            String directories = previous.getProperty( key + DIRECTORIES );
+            String found = previous.getProperty( key + MODULES );
+            if ( directories == null || found == null || !isUnchanged( root, directories ) )
+            {
+                long start = System.currentTimeMillis();
+                StringBuilder walked = new StringBuilder();
+                List<String> rootModules = walk( root, skipped, walked );
+                directories = walked.toString();
+                found = join( rootModules );
+                log.debug( "Found GWT modules " + rootModules + " in " + root + " in "
+                    + ( System.currentTimeMillis() - start ) + "ms" );
+            }
+            current.setProperty( key + DIRECTORIES, directories );
+            current.setProperty( key + MODULES, found );
+            for ( String module : found.split( "," ) )
+            {
+                if ( module.length() > 0 )
+                {
+                    modules.add( module );
+                }
+            }
+        }
+        if ( index != null && !current.equals( previous ) )
+        {
+            store( index, current, log );
+        }
+        return new ArrayList<String>( modules );
+    }
+
+    /**
+     * @param directories lines of relative path and modification time of the walked directories
+     */
+    private static boolean isUnchanged( File root, String directories )
+    {
+        for ( String line : directories.split( "\n" ) )
+        {
+            int separator = line.lastIndexOf( '\t' );
+            if ( separator < 0 )
+            {
+                return false;
+            }
+            File directory = new File( root, line.substring( 0, separator ) );
+            if ( !line.substring( separator + 1 ).equals( String.valueOf( directory.lastModified() ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> walk( File root, Set<Path> skipped, StringBuilder walked )
+    {
+        long now = System.currentTimeMillis();
+        Queue<String> modules = new ConcurrentLinkedQueue<String>();
+        Queue<String> directories = new ConcurrentLinkedQueue<String>();
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            pool.invoke( new DirectoryWalk( root.getAbsoluteFile().toPath().normalize(), "", skipped, modules,
+                                            directories ) );
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        List<String> sorted = new ArrayList<String>( directories );
+        Collections.sort( sorted );
+        for ( String directory : sorted )
+        {
+            long lastModified = new File( root, directory ).lastModified();
+            if ( walked.length() > 0 )
+            {
+                walked.append( '\n' );
+            }
+            // a directory changed during the walk must be walked again next time
+            walked.append( directory ).append( '\t' )
+                  .append( lastModified > now - TIME_GRANULARITY ? -1 : lastModified );
+        }
+        List<String> result = new ArrayList<String>( modules );
+        Collections.sort( result );
+        return result;
+    }
+
+    private static final class DirectoryWalk
+        extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private static final String EXTENSION = DefaultGwtModuleReader.GWT_MODULE_EXTENSION;
+
+        private final Path directory;
+
+        /** path relative to the root, with a trailing / unless empty */
+        private final String path;
+
+        private final Set<Path> skipped;
+
+        private final Queue<String> modules;
+
+        private final Queue<String> directories;
+
+        DirectoryWalk( Path directory, String path, Set<Path> skipped, Queue<String> modules,
+                       Queue<String> directories )
+        {
+            this.directory = directory;
+            this.path = path;
+            this.skipped = skipped;
+            this.modules = modules;
+            this.directories = directories;
+        }
+
+        @Override
+        protected void compute()
+        {
+            directories.add( path.length() == 0 ? "." : path.substring( 0, path.length() - 1 ) );
+            List<DirectoryWalk> children = new ArrayList<DirectoryWalk>();
+            try
+            {
+                DirectoryStream<Path> stream = Files.newDirectoryStream( directory );
+                try
+                {
+                    for ( Path child : stream )
+                    {
+                        String name = child.getFileName().toString();
+                        BasicFileAttributes attributes = Files.readAttributes( child, BasicFileAttributes.class );
+                        if ( attributes.isDirectory() )
+                        {
+                            if ( !skipped.contains( child ) )
+                            {
+                                children.add( new DirectoryWalk( child, path + name + "/", skipped, modules,
+                                                                 directories ) );
+                            }
+                        }
+                        else if ( name.endsWith( EXTENSION ) && attributes.isRegularFile() )
+                        {
+                            String simpleName = name.substring( 0, name.length() - EXTENSION.length() );
+                            modules.add( ( path + simpleName ).replace( '/', '.' ) );
+                        }
+                    }
+                }
+                finally
+                {
+                    stream.close();
+                }
+            }
+            catch ( IOException e )
+            {
+                // unreadable directory, as ignored by DirectoryScanner
+            }
+            invokeAll( children );
+        }
+    }
+
+    private static String join( List<String> modules )
+    {
+        StringBuilder joined = new StringBuilder();
+        for ( String module : modules )
+        {
+            if ( joined.length() > 0 )
+            {
+                joined.append( ',' );
+            }
+            joined.append( module );
+        }
+        return joined.toString();
+    }
+
+    private static Properties load( File index )
+    {
+        Properties properties = new Properties();
+        if ( index.isFile() )
+        {
+            InputStream in = null;
+            try
+            {
+                in = new FileInputStream( index );
+                properties.load( in );
+            }
+            catch ( IOException e )
+            {
+                properties.clear();
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+        }
+        return properties;
+    }
+
+    private static void store( File index, Properties properties, Log log )
+    {
+        index.getParentFile().mkdirs();
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( index );
+            properties.store( out, "GWT modules of source and resource directories" );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to write " + index, e );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+}
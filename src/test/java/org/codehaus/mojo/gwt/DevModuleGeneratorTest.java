@@ -0,0 +1,100 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+public class DevModuleGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGenerate() throws Exception {
+        GwtModule module = createModule( "com.acme.App", "<module rename-to='app'>"
+            + "<extend-property name='locale' values='fr,de'/><set-property name='locale' value='fr,de'/></module>" );
+        File file = new DevModuleGenerator( "safari", "", false, new SilentLog() ).generate( module,
+                                                                                             folder.getRoot() );
+
+        Assert.assertEquals( DevModuleGenerator.getFile( "com.acme.App", folder.getRoot() ), file );
+        Assert.assertEquals( new File( folder.getRoot(), "com/acme/AppDev.gwt.xml" ), file );
+        Assert.assertEquals( "com.acme.AppDev", DevModuleGenerator.getName( "com.acme.App" ) );
+        String xml = FileUtils.fileRead( file, "UTF-8" );
+        Assert.assertTrue( xml, xml.contains( "<module rename-to=\"app\">" ) );
+        Assert.assertTrue( xml, xml.contains( "<inherits name=\"com.acme.App\" />" ) );
+        Assert.assertTrue( xml, xml.contains( "<set-property name=\"user.agent\" value=\"safari\" />" ) );
+        Assert.assertTrue( "First allowed locale by default",
+                           xml.contains( "<set-property name=\"locale\" value=\"fr\" />" ) );
+        Assert.assertFalse( xml, xml.contains( "collapse-all-properties" ) );
+    }
+
+    @Test
+    public void testCollapseAllProperties() throws Exception {
+        GwtModule module = createModule( "com.acme.App", "<module/>" );
+        File file = new DevModuleGenerator( "", "en", true, new SilentLog() ).generate( module, folder.getRoot() );
+
+        String xml = FileUtils.fileRead( file, "UTF-8" );
+        Assert.assertTrue( "Module name by default", xml.contains( "<module rename-to=\"com.acme.App\">" ) );
+        Assert.assertFalse( xml, xml.contains( "user.agent" ) );
+        Assert.assertTrue( xml, xml.contains( "<set-property name=\"locale\" value=\"en\" />" ) );
+        Assert.assertTrue( xml, xml.contains( "<collapse-all-properties />" ) );
+    }
+
+    @Test
+    public void testUnchangedFileNotWritten() throws Exception {
+        GwtModule module = createModule( "com.acme.App", "<module rename-to='app'/>" );
+        DevModuleGenerator generator = new DevModuleGenerator( "safari", "", false, new SilentLog() );
+        File file = generator.generate( module, folder.getRoot() );
+        long modified = System.currentTimeMillis() - 60000;
+        file.setLastModified( modified );
+
+        generator.generate( module, folder.getRoot() );
+        Assert.assertEquals( "Unchanged module keeps its timestamp", modified, file.lastModified() );
+
+        new DevModuleGenerator( "gecko1_8", "", false, new SilentLog() ).generate( module, folder.getRoot() );
+        Assert.assertTrue( file.lastModified() > modified );
+        Assert.assertTrue( FileUtils.fileRead( file, "UTF-8" ).contains( "value=\"gecko1_8\"" ) );
+    }
+
+    private static GwtModule createModule( String name, String xml ) throws Exception {
+        return new GwtModule( name, Xpp3DomBuilder.build( new StringReader( xml ) ), new GwtModuleReader()
+        {
+            public GwtModule readModule( String name ) throws GwtModuleReaderException {
+                throw new GwtModuleReaderException( "GWT Module " + name + " not found" );
+            }
+
+            public List<String> getGwtModules() {
+                return Collections.emptyList();
+            }
+        } );
+    }
+}
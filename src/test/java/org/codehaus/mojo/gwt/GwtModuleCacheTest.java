@@ -0,0 +1,92 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.mojo.gwt.utils.DefaultGwtModuleReader;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class GwtModuleCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MavenProject project;
+
+    private File sources;
+
+    @Before
+    public void setUp() throws Exception {
+        sources = folder.newFolder( "src", "main", "java" );
+        project = new MavenProject();
+        project.addCompileSourceRoot( sources.getAbsolutePath() );
+        new File( sources, "org/example" ).mkdirs();
+        FileUtils.fileWrite( new File( sources, "org/example/App.gwt.xml" ),
+                             "<module><inherits name='org.example.Common'/>"
+                                 + "<entry-point class='org.example.client.App'/></module>" );
+        FileUtils.fileWrite( new File( sources, "org/example/Common.gwt.xml" ), "<module/>" );
+    }
+
+    @Test
+    public void testSameModuleForAllReaders() throws Exception {
+        GwtModule module = newReader().readModule( "org.example.App" );
+        Assert.assertEquals( 1, module.getInherits().size() );
+
+        GwtModule cached = newReader().readModule( "org.example.App" );
+        Assert.assertSame( "Modules are shared by the goals of a project", module, cached );
+        Assert.assertSame( "Inherited modules are resolved once", module.getInherits(), cached.getInherits() );
+        Assert.assertSame( module.getInherits().iterator().next(), newReader().readModule( "org.example.Common" ) );
+    }
+
+    @Test
+    public void testChangedDescriptorIsReadAgain() throws Exception {
+        GwtModule module = newReader().readModule( "org.example.App" );
+        FileUtils.fileWrite( new File( sources, "org/example/App.gwt.xml" ),
+                             "<module><entry-point class='org.example.client.Changed'/></module>" );
+
+        GwtModule changed = newReader().readModule( "org.example.App" );
+        Assert.assertNotSame( module, changed );
+        Assert.assertEquals( "org.example.client.Changed", changed.getEntryPoints().get( 0 ) );
+        Assert.assertTrue( changed.getInherits().isEmpty() );
+    }
+
+    @Test
+    public void testModulesAreKeptByProject() throws Exception {
+        GwtModule module = newReader().readModule( "org.example.App" );
+
+        MavenProject other = new MavenProject();
+        other.addCompileSourceRoot( sources.getAbsolutePath() );
+        GwtModule read = new DefaultGwtModuleReader( other, new SilentLog(), null ).readModule( "org.example.App" );
+        Assert.assertNotSame( module, read );
+        Assert.assertEquals( module.getEntryPoints(), read.getEntryPoints() );
+    }
+
+    private GwtModuleReader newReader() {
+        return new DefaultGwtModuleReader( project, new SilentLog(), null );
+    }
+}
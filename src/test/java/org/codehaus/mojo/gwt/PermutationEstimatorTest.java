@@ -0,0 +1,128 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.mojo.gwt.utils.GwtModuleReaderException;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PermutationEstimatorTest {
+
+    private final Map<String, String> descriptors = new HashMap<String, String>();
+
+    private final GwtModuleReader reader = new GwtModuleReader()
+    {
+        public GwtModule readModule( String name )
+            throws GwtModuleReaderException
+        {
+            try {
+                return new GwtModule( name, Xpp3DomBuilder.build( new StringReader( descriptors.get( name ) ) ),
+                                      this );
+            } catch ( Exception e ) {
+                throw new GwtModuleReaderException( "Failed to read " + name, e );
+            }
+        }
+
+        public List<String> getGwtModules() {
+            return new ArrayList<String>( descriptors.keySet() );
+        }
+    };
+
+    @Test
+    public void testDefineAndExtendProperties() throws Exception {
+        descriptors.put( "com.acme.Base", "<module><define-property name='theme' values='light, dark'/></module>" );
+        descriptors.put( "com.acme.App", "<module><inherits name='com.google.gwt.user.User'/>"
+            + "<inherits name='com.acme.Base'/><extend-property name='locale' values='fr,de'/>"
+            + "<set-property name='user.agent' value='safari,gecko1_8'/></module>" );
+        GwtModule module = reader.readModule( "com.acme.App" );
+
+        Map<String, Set<String>> values = PermutationEstimator.getPropertyValues( module );
+        Assert.assertEquals( new LinkedHashSet<String>( Arrays.asList( "default", "fr", "de" ) ),
+                             values.get( "locale" ) );
+        Assert.assertEquals( new LinkedHashSet<String>( Arrays.asList( "gecko1_8", "safari" ) ),
+                             values.get( "user.agent" ) );
+        Assert.assertEquals( new LinkedHashSet<String>( Arrays.asList( "light", "dark" ) ), values.get( "theme" ) );
+        Assert.assertEquals( 2 * 3 * 2, PermutationEstimator.estimate( module ) );
+    }
+
+    @Test
+    public void testElementsAppliedInOrder() throws Exception {
+        descriptors.put( "com.acme.Base", "<module><define-property name='theme' values='light,dark'/></module>" );
+        descriptors.put( "com.acme.Before", "<module><set-property name='theme' value='light'/>"
+            + "<inherits name='com.acme.Base'/></module>" );
+        descriptors.put( "com.acme.After", "<module><inherits name='com.acme.Base'/>"
+            + "<set-property name='theme' value='light'/></module>" );
+        descriptors.put( "com.acme.Reset", "<module><inherits name='com.acme.After'/>"
+            + "<set-property name='theme' value='light,dark'/></module>" );
+
+        Assert.assertEquals( "A set-property is overridden by a later define-property",
+                             Integer.valueOf( 2 ), getFactor( "com.acme.Before", "theme" ) );
+        Assert.assertEquals( Integer.valueOf( 1 ), getFactor( "com.acme.After", "theme" ) );
+        Assert.assertEquals( "The last set-property wins", Integer.valueOf( 2 ),
+                             getFactor( "com.acme.Reset", "theme" ) );
+        Assert.assertEquals( Integer.valueOf( 5 ), getFactor( "com.acme.After", "user.agent" ) );
+    }
+
+    @Test
+    public void testCollapseProperties() throws Exception {
+        descriptors.put( "com.acme.App", "<module><extend-property name='locale' values='fr,fr_CA,de,en'/>"
+            + "<collapse-property name='locale' values='fr*'/><collapse-property name='locale' values='de,en'/>"
+            + "<collapse-property name='user.agent' values='ie*'/></module>" );
+        descriptors.put( "com.acme.AppAll", "<module><inherits name='com.acme.App'/><collapse-all-properties/>"
+            + "</module>" );
+        descriptors.put( "com.acme.AppNone", "<module><inherits name='com.acme.AppAll'/>"
+            + "<collapse-all-properties value='false'/></module>" );
+
+        // default, fr*, de or en
+        Assert.assertEquals( Integer.valueOf( 3 ), getFactor( "com.acme.App", "locale" ) );
+        // ie8, ie9 and ie10 collapsed
+        Assert.assertEquals( Integer.valueOf( 3 ), getFactor( "com.acme.App", "user.agent" ) );
+        Assert.assertEquals( 9, PermutationEstimator.estimate( reader.readModule( "com.acme.App" ) ) );
+        Assert.assertEquals( 1, PermutationEstimator.estimate( reader.readModule( "com.acme.AppAll" ) ) );
+        Assert.assertEquals( 9, PermutationEstimator.estimate( reader.readModule( "com.acme.AppNone" ) ) );
+    }
+
+    @Test
+    public void testUserAgentsReadFromGwtUser() throws Exception {
+        descriptors.put( PermutationEstimator.USER_AGENT_MODULE, "<module>"
+            + "<define-property name='user.agent' values='gecko1_8'/>"
+            + "<extend-property name='user.agent' values='safari'/></module>" );
+        descriptors.put( "com.acme.App", "<module><inherits name='com.google.gwt.user.User'/></module>" );
+
+        Assert.assertEquals( new LinkedHashSet<String>( Arrays.asList( "gecko1_8", "safari" ) ),
+                             PermutationEstimator.getPropertyValues( reader.readModule( "com.acme.App" ) )
+                                                 .get( "user.agent" ) );
+        Assert.assertEquals( 2, PermutationEstimator.estimate( reader.readModule( "com.acme.App" ) ) );
+    }
+
+    private Integer getFactor( String module, String property ) throws Exception {
+        return PermutationEstimator.getPermutationFactors( reader.readModule( module ) ).get( property );
+    }
+}
@@ -0,0 +1,120 @@
+package org.codehaus.mojo.gwt;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+
+public class PluginArtifactsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResolvedOncePerSession() throws Exception {
+        File jar = folder.newFile( "gwt-user.jar" );
+        FileUtils.fileWrite( jar, "classes" );
+        Artifact user = newArtifact( "org.gwtproject", "gwt-user", "2.12.0", "jar", null );
+        user.setFile( jar );
+        ArtifactRepository localRepository = new MavenArtifactRepository(
+            "local", folder.newFolder( "repository" ).toURI().toString(), new DefaultRepositoryLayout(), null, null );
+        MavenSession session = newSession();
+        AbstractGwtMojo mojo = newMojo( user, localRepository, session );
+
+        // no resolver is set : artifacts are read from the lock file
+        File lockFile = new File( folder.getRoot(), "gwt-artifacts.lock" );
+        ReflectionUtils.setVariableValueInObject( mojo, "resolutionLockFile", lockFile );
+        mojo.writeLockedArtifacts( user.getId() + "|" + localRepository.getBasedir(),
+                                   Collections.singletonList( user ) );
+        Collection<Artifact> artifacts = mojo.getPluginArtifacts( "org.gwtproject:gwt-user" );
+        Assert.assertEquals( 1, artifacts.size() );
+        Assert.assertEquals( jar, artifacts.iterator().next().getFile() );
+
+        Assert.assertTrue( lockFile.delete() );
+        Assert.assertSame( "Resolved once per session", artifacts,
+                           newMojo( user, localRepository, session ).getPluginArtifacts( "org.gwtproject:gwt-user" ) );
+
+        try {
+            newMojo( user, localRepository, newSession() ).getPluginArtifacts( "org.gwtproject:gwt-user" );
+            Assert.fail( "A new session resolves again" );
+        } catch ( MojoExecutionException e ) {
+            // expected, no resolver is set
+        }
+    }
+
+    private static AbstractGwtMojo newMojo( Artifact user, ArtifactRepository localRepository, MavenSession session )
+        throws Exception {
+        AbstractGwtMojo mojo = new AbstractGwtMojo() {
+            public void execute() {
+                // not executed
+            }
+        };
+        mojo.setLog( new SilentLog() );
+        ReflectionUtils.setVariableValueInObject( mojo, "pluginArtifactMap",
+                                                  Collections.singletonMap( "org.gwtproject:gwt-user", user ) );
+        ReflectionUtils.setVariableValueInObject( mojo, "localRepository", localRepository );
+        ReflectionUtils.setVariableValueInObject( mojo, "remoteRepositories",
+                                                  Collections.<ArtifactRepository>emptyList() );
+        ReflectionUtils.setVariableValueInObject( mojo, "session", session );
+        ReflectionUtils.setVariableValueInObject( mojo, "artifactFactory", Proxy.newProxyInstance(
+            ArtifactFactory.class.getClassLoader(), new Class<?>[] { ArtifactFactory.class }, new InvocationHandler() {
+                public Object invoke( Object proxy, Method method, Object[] args ) {
+                    // createArtifactWithClassifier( groupId, artifactId, version, type, classifier )
+                    return newArtifact( (String) args[0], (String) args[1], (String) args[2], (String) args[3],
+                                        (String) args[4] );
+                }
+            } ) );
+        return mojo;
+    }
+
+    private static Artifact newArtifact( String groupId, String artifactId, String version, String type,
+                                         String classifier ) {
+        return new DefaultArtifact( groupId, artifactId, version, null, type, classifier,
+                                    new DefaultArtifactHandler( type ) );
+    }
+
+    private static MavenSession newSession() {
+        return new MavenSession( null, null, new DefaultMavenExecutionRequest(), new DefaultMavenExecutionResult() );
+    }
+}
@@ -0,0 +1,74 @@
+package org.codehaus.mojo.gwt;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+public class ResolutionLockFileTest
+    extends AbstractMojoTestCase
+{
+
+    public void testLockFileRoundTrip()
+        throws Exception
+    {
+        AbstractGwtMojo mojo = new AbstractGwtMojo()
+        {
+            public void execute()
+                throws MojoExecutionException, MojoFailureException
+            {
+                //nothing, won't be tests
+            }
+        };
+        File directory = new File( getBasedir(), "target/resolution-lock" );
+        FileUtils.deleteDirectory( directory );
+        directory.mkdirs();
+        ArtifactFactory artifactFactory = (ArtifactFactory) lookup( ArtifactFactory.ROLE );
+        setVariableValueToObject( mojo, "artifactFactory", artifactFactory );
+        setVariableValueToObject( mojo, "resolutionLockFile", new File( directory, "gwt-artifacts.lock" ) );
+
+        File jar = new File( directory, "gwt-user.jar" );
+        FileUtils.fileWrite( jar, "classes" );
+        Artifact user = artifactFactory.createArtifactWithClassifier( "org.gwtproject", "gwt-user", "2.10.0", "jar",
+                                                                      null );
+        user.setFile( jar );
+        File sourcesJar = new File( directory, "gwt-user-sources.jar" );
+        FileUtils.fileWrite( sourcesJar, "sources" );
+        Artifact sources = artifactFactory.createArtifactWithClassifier( "org.gwtproject", "gwt-user", "2.10.0",
+                                                                         "jar", "sources" );
+        sources.setFile( sourcesJar );
+
+        assertNull( mojo.readLockedArtifacts( "gwt-user" ) );
+        mojo.writeLockedArtifacts( "gwt-user", Arrays.asList( user, sources ) );
+
+        Collection<Artifact> locked = mojo.readLockedArtifacts( "gwt-user" );
+        assertEquals( 2, locked.size() );
+        Iterator<Artifact> artifacts = locked.iterator();
+        Artifact artifact = artifacts.next();
+        assertEquals( user.getId(), artifact.getId() );
+        assertNull( artifact.getClassifier() );
+        assertEquals( jar.getAbsoluteFile(), artifact.getFile() );
+        assertTrue( artifact.isResolved() );
+        artifact = artifacts.next();
+        assertEquals( sources.getId(), artifact.getId() );
+        assertEquals( "sources", artifact.getClassifier() );
+        assertNull( "Other keys are not recorded", mojo.readLockedArtifacts( "gwt-dev" ) );
+
+        // a changed file has to be resolved again
+        jar.setLastModified( jar.lastModified() + 10000 );
+        assertNull( mojo.readLockedArtifacts( "gwt-user" ) );
+
+        // an empty lock file disables the lock
+        setVariableValueToObject( mojo, "resolutionLockFile", new File( "" ) );
+        mojo.writeLockedArtifacts( "gwt-user", Arrays.asList( user, sources ) );
+        assertNull( mojo.readLockedArtifacts( "gwt-user" ) );
+    }
+
+}
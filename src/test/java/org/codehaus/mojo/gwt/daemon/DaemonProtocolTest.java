@@ -0,0 +1,96 @@
+package org.codehaus.mojo.gwt.daemon;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+
+public class DaemonProtocolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFrames() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bytes );
+        DaemonProtocol.writeString( out, "com.google.gwt.dev.Compiler" );
+        DaemonProtocol.writeLine( out, DaemonProtocol.STDERR, "caf\u00e9" );
+        DaemonProtocol.writeExit( out, 3 );
+
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+        Assert.assertEquals( "com.google.gwt.dev.Compiler", DaemonProtocol.readString( in ) );
+        Assert.assertEquals( DaemonProtocol.STDERR, in.readByte() );
+        Assert.assertEquals( "caf\u00e9", DaemonProtocol.readString( in ) );
+        Assert.assertEquals( DaemonProtocol.EXIT, in.readByte() );
+        Assert.assertEquals( 3, in.readInt() );
+        Assert.assertEquals( -1, in.read() );
+    }
+
+    @Test
+    public void testLineOutputStream() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DaemonProtocol.LineOutputStream lines =
+            new DaemonProtocol.LineOutputStream( new DataOutputStream( bytes ), DaemonProtocol.STDOUT,
+                                                 Charset.forName( "UTF-8" ) );
+        char[] longLine = new char[1000];
+        Arrays.fill( longLine, 'x' );
+        lines.write( ( "first\r\n" + new String( longLine ) + "\nlast" ).getBytes( "UTF-8" ) );
+        lines.close();
+
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+        for ( String expected : new String[] { "first", new String( longLine ), "last" } ) {
+            Assert.assertEquals( DaemonProtocol.STDOUT, in.readByte() );
+            Assert.assertEquals( expected, DaemonProtocol.readString( in ) );
+        }
+        Assert.assertEquals( "Nothing is sent after the last line", -1, in.read() );
+    }
+
+    @Test
+    public void testRestrictToOwner() throws Exception {
+        Assume.assumeTrue( FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" ) );
+        File directory = folder.newFolder( "daemons" );
+        File file = new File( directory, "slot-0.properties" );
+        Assert.assertTrue( file.createNewFile() );
+
+        CompilerDaemon.restrictToOwner( directory );
+        CompilerDaemon.restrictToOwner( file );
+
+        Assert.assertEquals( "rwx------",
+                             PosixFilePermissions.toString( Files.getPosixFilePermissions( directory.toPath() ) ) );
+        Assert.assertEquals( "rw-------",
+                             PosixFilePermissions.toString( Files.getPosixFilePermissions( file.toPath() ) ) );
+    }
+}
@@ -0,0 +1,101 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+public class ClassDataSharingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRequiresJava11AndLeadingJar() throws Exception {
+        File directory = new File( folder.getRoot(), "cds" );
+        File jar = folder.newFile( "gwt-dev.jar" );
+        File classes = folder.newFolder( "classes" );
+
+        Assert.assertNull( ClassDataSharing.get( directory, newJava( "1.8.0_402" ), Arrays.asList( jar ),
+                                                 new SilentLog() ) );
+        Assert.assertNull( "Directories can't be archived",
+                           ClassDataSharing.get( directory, newJava( "17.0.10" ), Arrays.asList( classes, jar ),
+                                                 new SilentLog() ) );
+        Assert.assertNotNull( ClassDataSharing.get( directory, newJava( "17.0.10" ), Arrays.asList( jar, classes ),
+                                                    new SilentLog() ) );
+    }
+
+    @Test
+    public void testRecordThenUseArchive() throws Exception {
+        File directory = new File( folder.getRoot(), "cds" );
+        String java = newJava( "17.0.10" );
+        List<File> classpath = Arrays.asList( folder.newFile( "gwt-dev.jar" ), folder.newFolder( "classes" ) );
+
+        List<String> args = ClassDataSharing.get( directory, java, classpath, new SilentLog() ).getJvmArgs();
+        Assert.assertEquals( 1, args.size() );
+        Assert.assertTrue( args.get( 0 ), args.get( 0 ).startsWith( "-XX:DumpLoadedClassList=" ) );
+
+        File archive = new File( directory, getKey( args.get( 0 ) ) + ".jsa" );
+        FileUtils.fileWrite( archive, "archive" );
+        Assert.assertEquals( Arrays.asList( "-XX:SharedArchiveFile=" + archive.getAbsolutePath() ),
+                             ClassDataSharing.get( directory, java, classpath, new SilentLog() ).getJvmArgs() );
+
+        classpath.get( 0 ).setLastModified( classpath.get( 0 ).lastModified() + 10000 );
+        Assert.assertTrue( "An updated jar needs a new archive",
+                           ClassDataSharing.get( directory, java, classpath, new SilentLog() ).getJvmArgs().get( 0 )
+                               .startsWith( "-XX:DumpLoadedClassList=" ) );
+    }
+
+    @Test
+    public void testFailedArchiveNotRetried() throws Exception {
+        File directory = new File( folder.getRoot(), "cds" );
+        String java = newJava( "17.0.10" );
+        List<File> classpath = Arrays.asList( folder.newFile( "gwt-dev.jar" ) );
+
+        List<String> args = ClassDataSharing.get( directory, java, classpath, new SilentLog() ).getJvmArgs();
+        FileUtils.fileWrite( new File( directory, getKey( args.get( 0 ) ) + ".classlist" ), "java/lang/Object" );
+
+        Assert.assertTrue( "A class list without archive means its creation failed",
+                           ClassDataSharing.get( directory, java, classpath, new SilentLog() ).getJvmArgs().isEmpty() );
+    }
+
+    private String newJava( String version ) throws Exception {
+        File jdk = folder.newFolder( "jdk-" + version );
+        FileUtils.fileWrite( new File( jdk, "release" ), "JAVA_VERSION=\"" + version + "\"\n" );
+        return new File( jdk, "bin/java" ).getPath();
+    }
+
+    /**
+     * @return the archive key from the path of the recorded class list
+     */
+    private static String getKey( String dumpArg ) {
+        String name = new File( dumpArg.substring( dumpArg.indexOf( '=' ) + 1 ) ).getName();
+        return name.substring( 0, name.indexOf( '.' ) );
+    }
+}
@@ -0,0 +1,76 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+
+public class ClasspathFilesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testArgFile() throws Exception {
+        File directory = new File( folder.getRoot(), "classpath" );
+        List<File> classpath =
+            Arrays.asList( folder.newFile( "gwt-dev.jar" ), new File( folder.getRoot(), "classes" ) );
+
+        File argFile = ClasspathFiles.getArgFile( directory, classpath );
+        String path = JavaCommand.toPath( classpath ).replace( "\\", "\\\\" );
+        Assert.assertEquals( "-classpath\n\"" + path + "\"\n", FileUtils.fileRead( argFile, "UTF-8" ) );
+
+        Assert.assertEquals( "The same classpath reuses the file", argFile,
+                             ClasspathFiles.getArgFile( directory, classpath ) );
+        Assert.assertFalse( argFile.equals( ClasspathFiles.getArgFile( directory, classpath.subList( 0, 1 ) ) ) );
+    }
+
+    @Test
+    public void testPathingJar() throws Exception {
+        File directory = new File( folder.getRoot(), "classpath" );
+        File jar = folder.newFile( "gwt-dev.jar" );
+        File classes = new File( folder.getRoot(), "classes" );
+        File missingJar = new File( folder.getRoot(), "missing.jar" );
+
+        File pathingJar = ClasspathFiles.getPathingJar( directory, Arrays.asList( jar, classes, missingJar ) );
+        JarFile jarFile = new JarFile( pathingJar );
+        try {
+            String classPath = jarFile.getManifest().getMainAttributes().getValue( Attributes.Name.CLASS_PATH );
+            Assert.assertEquals( "Directories end with a slash, even if they don't exist yet",
+                                 jar.toURI().toASCIIString() + " " + classes.toURI().toASCIIString() + "/ "
+                                     + missingJar.toURI().toASCIIString(), classPath );
+        } finally {
+            jarFile.close();
+        }
+        Assert.assertEquals( pathingJar,
+                             ClasspathFiles.getPathingJar( directory, Arrays.asList( jar, classes, missingJar ) ) );
+        Assert.assertEquals( "No temporary file is left", 1, directory.list().length );
+    }
+}
@@ -0,0 +1,106 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ClasspathPrunerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDropUnusedJars() throws Exception {
+        File classes = folder.newFolder( "classes" );
+        write( classes, "org/example/App.gwt.xml", "<module><inherits name=\"org.lib.Lib\"/></module>" );
+        write( classes, "org/example/client/App.java",
+               "package org.example.client;\nimport org.annotations.Binary;\nimport org.wild.*;\n" );
+        File lib = newJar( "lib.jar", "org/lib/Lib.gwt.xml",
+                           "<module><generate-with class=\"org.gen.Generator\"/><super-source path=\"jre\"/></module>",
+                           "org/lib/jre/java/util/Fake.java", "package java.util;" );
+        File generator = newJar( "generator.jar", "org/gen/Generator.class", "not a class file" );
+        File annotations = newJar( "annotations.jar", "org/annotations/Binary.class", "not a class file" );
+        File wild = newJar( "wild.jar", "org/wild/Any.class", "not a class file" );
+        File server = newJar( "server.jar", "org/server/Servlet.class", "not a class file" );
+        File sdk = newJar( "gwt-user.jar", "com/google/gwt/core/Core.gwt.xml", "<module/>" );
+        File report = new File( folder.getRoot(), "report/classpath.txt" );
+
+        ClasspathPruner pruner = new ClasspathPruner( Collections.singletonList( "org.example.App" ),
+                                                      Collections.singletonList( sdk ), report, new SilentLog() );
+        List<File> classpath = Arrays.asList( classes, lib, generator, annotations, wild, server, sdk );
+        List<File> pruned = pruner.prune( classpath );
+
+        Assert.assertEquals( Arrays.asList( classes, lib, generator, annotations, wild, sdk ), pruned );
+        String content = FileUtils.fileRead( report );
+        Assert.assertTrue( content, content.contains( "dropped " + server.getAbsolutePath() ) );
+        Assert.assertTrue( content, content.contains( "kept    " + lib.getAbsolutePath() + " : module org.lib.Lib" ) );
+        Assert.assertTrue( content,
+                           content.contains( generator.getAbsolutePath() + " : classes used at compile time" ) );
+        Assert.assertTrue( content, content.contains( sdk.getAbsolutePath() + " : GWT SDK" ) );
+    }
+
+    @Test
+    public void testMissingModuleKeepsClasspath() throws Exception {
+        File server = newJar( "server.jar", "org/server/Servlet.class", "not a class file" );
+        ClasspathPruner pruner = new ClasspathPruner( Collections.singletonList( "org.example.Missing" ),
+                                                      Collections.<File>emptyList(),
+                                                      new File( folder.getRoot(), "classpath.txt" ), new SilentLog() );
+
+        Assert.assertEquals( Arrays.asList( server ), pruner.prune( Arrays.asList( server ) ) );
+    }
+
+    private static void write( File directory, String name, String content ) throws Exception {
+        File file = new File( directory, name );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file, content );
+    }
+
+    /**
+     * @param entries names and contents of the jar entries
+     */
+    private File newJar( String name, String... entries ) throws Exception {
+        File jar = folder.newFile( name );
+        ZipOutputStream out = new ZipOutputStream( new FileOutputStream( jar ) );
+        try {
+            for ( int i = 0; i < entries.length; i += 2 ) {
+                out.putNextEntry( new ZipEntry( entries[i] ) );
+                out.write( entries[i + 1].getBytes( "UTF-8" ) );
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+}
@@ -0,0 +1,112 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CompilationCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestoreStoredOutputs() throws Exception {
+        CompilationCache cache = new CompilationCache( folder.newFolder( "cache" ), 1L << 20, new SilentLog() );
+        Map<String, File> outputs = getOutputs();
+        FileUtils.fileWrite( new File( outputs.get( "war" ), "hello.nocache.js" ), "compiled" );
+
+        Assert.assertFalse( "Expecting a miss for an unknown key", cache.restore( "abc", outputs ) );
+        cache.store( "abc", outputs );
+
+        FileUtils.fileWrite( new File( outputs.get( "war" ), "hello.nocache.js" ), "stale" );
+        FileUtils.fileWrite( new File( outputs.get( "war" ), "removed.js" ), "stale" );
+        Assert.assertTrue( cache.restore( "abc", outputs ) );
+        Assert.assertEquals( "compiled", FileUtils.fileRead( new File( outputs.get( "war" ), "hello.nocache.js" ) ) );
+        Assert.assertFalse( "Restored output should replace the previous one",
+                            new File( outputs.get( "war" ), "removed.js" ).exists() );
+        Assert.assertFalse( "Missing outputs are not stored", outputs.get( "extra" ).exists() );
+        Assert.assertEquals( 1, cache.getHits() );
+        Assert.assertEquals( 1, cache.getMisses() );
+    }
+
+    @Test
+    public void testEntriesAreKeyedByDigest() throws Exception {
+        CompilationCache cache = new CompilationCache( folder.newFolder( "cache" ), 1L << 20, new SilentLog() );
+        Map<String, File> outputs = getOutputs();
+        File script = new File( outputs.get( "war" ), "hello.nocache.js" );
+
+        FileUtils.fileWrite( script, "first" );
+        cache.store( "first", outputs );
+        FileUtils.fileWrite( script, "second" );
+        cache.store( "second", outputs );
+        FileUtils.fileWrite( script, "ignored" );
+        cache.store( "first", outputs );
+
+        Assert.assertTrue( cache.restore( "first", outputs ) );
+        Assert.assertEquals( "An existing entry is never overwritten", "first", FileUtils.fileRead( script ) );
+        Assert.assertTrue( cache.restore( "second", outputs ) );
+        Assert.assertEquals( "second", FileUtils.fileRead( script ) );
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        File directory = folder.newFolder( "cache" );
+        CompilationCache cache = new CompilationCache( directory, 25, new SilentLog() );
+        Map<String, File> outputs = getOutputs();
+        FileUtils.fileWrite( new File( outputs.get( "war" ), "hello.nocache.js" ), "0123456789" );
+
+        long now = System.currentTimeMillis();
+        for ( String key : new String[] { "old", "used", "recent" } )
+        {
+            cache.store( key, outputs );
+        }
+        new File( directory, "old/.complete" ).setLastModified( now - 30000 );
+        new File( directory, "used/.complete" ).setLastModified( now - 20000 );
+        new File( directory, "recent/.complete" ).setLastModified( now - 10000 );
+        // restoring an entry makes it the most recently used one
+        Assert.assertTrue( cache.restore( "used", outputs ) );
+
+        cache.evict();
+        Assert.assertFalse( new File( directory, "old" ).exists() );
+        Assert.assertTrue( new File( directory, "used" ).exists() );
+        Assert.assertTrue( new File( directory, "recent" ).exists() );
+        Assert.assertFalse( cache.restore( "old", outputs ) );
+
+        new CompilationCache( directory, 10, new SilentLog() ).evict();
+        Assert.assertFalse( new File( directory, "recent" ).exists() );
+        Assert.assertTrue( new File( directory, "used" ).exists() );
+    }
+
+    private Map<String, File> getOutputs() throws Exception {
+        Map<String, File> outputs = new LinkedHashMap<String, File>();
+        outputs.put( "war", folder.newFolder( "war", "hello" ) );
+        outputs.put( "extra", new File( folder.getRoot(), "extra/hello" ) );
+        return outputs;
+    }
+}
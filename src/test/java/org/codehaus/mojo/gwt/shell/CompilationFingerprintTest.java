@@ -0,0 +1,92 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class CompilationFingerprintTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUpToDateWhenOnlyTimestampChanged() throws Exception {
+        File manifest = new File( folder.getRoot(), "module.properties" );
+        File source = folder.newFile( "Hello.java" );
+        FileUtils.fileWrite( source, "class Hello {}" );
+
+        CompilationFingerprint fingerprint = new CompilationFingerprint( manifest );
+        fingerprint.addFile( "Hello.java", source );
+        fingerprint.addValue( "args", "-style OBF" );
+        Assert.assertFalse( "Expecting a missing manifest to require compilation", fingerprint.isUpToDate() );
+        fingerprint.store();
+
+        source.setLastModified( source.lastModified() + 10000 );
+        fingerprint = new CompilationFingerprint( manifest );
+        fingerprint.addFile( "Hello.java", source );
+        fingerprint.addValue( "args", "-style OBF" );
+        Assert.assertTrue( "Touched file with same content should be up to date", fingerprint.isUpToDate() );
+    }
+
+    @Test
+    public void testChangedContentAndArguments() throws Exception {
+        File manifest = new File( folder.getRoot(), "module.properties" );
+        File source = folder.newFile( "Hello.java" );
+        FileUtils.fileWrite( source, "class Hello {}" );
+
+        CompilationFingerprint fingerprint = new CompilationFingerprint( manifest );
+        fingerprint.addFile( "Hello.java", source );
+        fingerprint.addValue( "args", "-style OBF" );
+        fingerprint.store();
+
+        fingerprint = new CompilationFingerprint( manifest );
+        fingerprint.addFile( "Hello.java", source );
+        fingerprint.addValue( "args", "-style PRETTY" );
+        Assert.assertFalse( fingerprint.isUpToDate() );
+        Assert.assertEquals( 1, fingerprint.getChangedInputs().size() );
+
+        FileUtils.fileWrite( source, "class Hello { int i; }" );
+        fingerprint = new CompilationFingerprint( manifest );
+        fingerprint.addFile( "Hello.java", source );
+        fingerprint.addValue( "args", "-style OBF" );
+        Assert.assertFalse( fingerprint.isUpToDate() );
+        Assert.assertEquals( 1, fingerprint.getChangedInputs().size() );
+    }
+
+    @Test
+    public void testDigestDoesNotDependOnLocation() throws Exception {
+        File first = folder.newFolder( "first" );
+        File second = folder.newFolder( "second" );
+        FileUtils.fileWrite( new File( first, "Hello.java" ), "class Hello {}" );
+        FileUtils.fileWrite( new File( second, "Hello.java" ), "class Hello {}" );
+
+        CompilationFingerprint one = new CompilationFingerprint( new File( first, "manifest.properties" ) );
+        one.addDirectory( "src", first );
+        CompilationFingerprint two = new CompilationFingerprint( new File( second, "manifest.properties" ) );
+        two.addDirectory( "src", second );
+        Assert.assertEquals( one.getDigest(), two.getDigest() );
+    }
+}
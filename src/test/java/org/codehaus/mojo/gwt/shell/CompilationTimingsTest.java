@@ -0,0 +1,97 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompilationTimingsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPhasesRecognizedFromCompilerOutput() throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        CompilationTimings timings = new CompilationTimings();
+        CompilationTimings.OutputParser parser = timings.parse( new StreamConsumer() {
+            public void consumeLine( String line ) {
+                lines.add( line );
+            }
+        }, 1 );
+        List<String> output = Arrays.asList( "Compiling module org.example.Hello",
+                                             "   Compiling 2 permutations",
+                                             "      Compiling permutation 0...",
+                                             "      Compiling permutation 1...",
+                                             "   Compile of permutations succeeded",
+                                             "Linking into target/war/hello",
+                                             "   Linking succeeded",
+                                             "Compiling module org.example.Other" );
+        for ( String line : output ) {
+            parser.consumeLine( line );
+        }
+        parser.finish();
+
+        Assert.assertEquals( "The output is passed on", output, lines );
+        File file = new File( folder.getRoot(), "timings.json" );
+        timings.write( file );
+        String json = FileUtils.fileRead( file, "UTF-8" );
+        Assert.assertTrue( json, json.contains( "\"module\": \"org.example.Hello\"" ) );
+        Assert.assertTrue( json, json.contains( "\"permutationCount\": 2" ) );
+        Assert.assertTrue( json, json.contains( "\"precompile\": " ) );
+        Assert.assertTrue( json, json.contains( "\"compilePermutations\": " ) );
+        Assert.assertTrue( json, json.contains( "\"link\": " ) );
+        Assert.assertTrue( "Permutations have a duration with a single worker",
+                           json.matches( "(?s).*\"id\": 1, \"startMillis\": \\d+, \"durationMillis\": \\d+.*" ) );
+        Assert.assertTrue( "The last module ends with the process",
+                           json.contains( "\"module\": \"org.example.Other\"" )
+                               && !json.contains( "\"durationMillis\": -1" ) );
+    }
+
+    @Test
+    public void testPermutationDurationUnknownWithSeveralWorkers() throws Exception {
+        CompilationTimings timings = new CompilationTimings();
+        CompilationTimings.OutputParser parser = timings.parse( new StreamConsumer() {
+            public void consumeLine( String line ) {
+                // ignored
+            }
+        }, 4 );
+        for ( String line : new String[] { "Compiling module org.example.Hello", "Compiling 2 permutations",
+            "Compiling permutation 0...", "Compiling permutation 1...", "Compile of permutations succeeded" } ) {
+            parser.consumeLine( line );
+        }
+        parser.finish();
+
+        File file = new File( folder.getRoot(), "timings.json" );
+        timings.write( file );
+        String json = FileUtils.fileRead( file, "UTF-8" );
+        Assert.assertTrue( json, json.matches( "(?s).*\"id\": 0, \"startMillis\": \\d+ }.*" ) );
+        Assert.assertEquals( "Only the module has a duration", 1, json.split( "durationMillis" ).length - 1 );
+    }
+}
@@ -0,0 +1,119 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+public class CompileMojoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChangedGeneratorRequiresCompilation() throws Exception {
+        File basedir = folder.newFolder( "project" );
+        File classes = new File( basedir, "target/classes" );
+        File generator = new File( classes, "org/example/rebind/HelloGenerator.class" );
+        generator.getParentFile().mkdirs();
+        FileUtils.fileWrite( generator, "generator" );
+        CompileMojo mojo = newMojo( basedir );
+        JavaCommand cmd = new JavaCommand().setMainClass( "com.google.gwt.dev.Compiler" )
+            .setClasspath( Collections.singletonList( classes ) );
+
+        String digest = mojo.getCompilerInputs( cmd ).getDigest();
+        Assert.assertEquals( "Unchanged inputs", digest, mojo.getCompilerInputs( cmd ).getDigest() );
+
+        FileUtils.fileWrite( generator, "changed generator" );
+        Assert.assertFalse( "A changed generator class requires compilation",
+                            digest.equals( mojo.getCompilerInputs( cmd ).getDigest() ) );
+    }
+
+    @Test
+    public void testLocalWorkersDontRequireCompilation() throws Exception {
+        CompileMojo mojo = newMojo( folder.newFolder( "project" ) );
+        JavaCommand cmd = new JavaCommand().setMainClass( "com.google.gwt.dev.Compiler" )
+            .arg( "-style", "OBF" ).arg( "-localWorkers", "2" );
+        JavaCommand other = new JavaCommand().setMainClass( "com.google.gwt.dev.Compiler" )
+            .arg( "-style", "OBF" ).arg( "-localWorkers", "8" );
+
+        Assert.assertEquals( mojo.getCompilerInputs( cmd ).getDigest(), mojo.getCompilerInputs( other ).getDigest() );
+    }
+
+    @Test
+    public void testParseMemorySize() throws Exception {
+        Assert.assertEquals( 2048L, CompileMojo.parseMemorySize( "2048" ) );
+        Assert.assertEquals( 512L * 1024, CompileMojo.parseMemorySize( "512k" ) );
+        Assert.assertEquals( 1536L * 1024 * 1024, CompileMojo.parseMemorySize( " 1536M " ) );
+        Assert.assertEquals( 4L * 1024 * 1024 * 1024, CompileMojo.parseMemorySize( "4g" ) );
+        try {
+            CompileMojo.parseMemorySize( "lots" );
+            Assert.fail( "Expecting an invalid memory size" );
+        } catch ( MojoExecutionException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testHeapBudgetSplitBetweenForks() throws Exception {
+        CompileMojo mojo = newMojo( folder.newFolder( "project" ) );
+        Assert.assertNull( "No heap budget keeps the heap of extraJvmArgs", mojo.getForkHeap( 2 ) );
+
+        ReflectionUtils.setVariableValueInObject( mojo, "compilerHeapBudget", "4g" );
+        Assert.assertEquals( "4096m", mojo.getForkHeap( 1 ) );
+        Assert.assertEquals( "1365m", mojo.getForkHeap( 3 ) );
+
+        ReflectionUtils.setVariableValueInObject( mojo, "compilerHeapBudget", "2m" );
+        try {
+            mojo.getForkHeap( 4 );
+            Assert.fail( "Expecting a budget too small for the forks" );
+        } catch ( MojoExecutionException e ) {
+            // expected
+        }
+    }
+
+    private CompileMojo newMojo( File basedir ) throws Exception {
+        MavenProject project = new MavenProject();
+        project.setFile( new File( basedir, "pom.xml" ) );
+        project.getBuild().setOutputDirectory( new File( basedir, "target/classes" ).getAbsolutePath() );
+        project.addCompileSourceRoot( new File( basedir, "src/main/java" ).getAbsolutePath() );
+
+        CompileMojo mojo = new CompileMojo();
+        mojo.setLog( new SilentLog() );
+        ReflectionUtils.setVariableValueInObject( mojo, "project", project );
+        ReflectionUtils.setVariableValueInObject( mojo, "localRepository", new MavenArtifactRepository(
+            "local", folder.newFolder( "repository" ).toURI().toString(), new DefaultRepositoryLayout(), null, null ) );
+        ReflectionUtils.setVariableValueInObject( mojo, "fingerprintDirectory",
+                                                  new File( basedir, "target/gwt-fingerprints" ) );
+        return mojo;
+    }
+}
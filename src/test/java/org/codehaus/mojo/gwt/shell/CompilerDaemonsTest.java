@@ -0,0 +1,134 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+public class CompilerDaemonsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testKeyDependsOnJvmAndEnvironment() throws Exception {
+        List<File> classpath = Arrays.asList( folder.newFile( "gwt-dev.jar" ) );
+        List<String> jvm = Arrays.asList( "java", "-Xmx1g" );
+        String key = CompilerDaemons.getKey( jvm, new Properties(), classpath );
+
+        Assert.assertEquals( key, CompilerDaemons.getKey( Arrays.asList( "java", "-Xmx1g" ), new Properties(),
+                                                          classpath ) );
+        Assert.assertFalse( key.equals( CompilerDaemons.getKey( Arrays.asList( "java", "-Xmx2g" ), new Properties(),
+                                                                classpath ) ) );
+        Properties env = new Properties();
+        env.setProperty( "LANG", "C" );
+        Assert.assertFalse( key.equals( CompilerDaemons.getKey( jvm, env, classpath ) ) );
+        Assert.assertFalse( key.equals( CompilerDaemons.getKey( jvm, new Properties(),
+                                                                Arrays.asList( folder.newFile( "other.jar" ) ) ) ) );
+    }
+
+    @Test
+    public void testStateDependsOnClasspathEntries() throws Exception {
+        File jar = folder.newFile( "generator.jar" );
+        File classes = folder.newFolder( "classes" );
+        File generator = new File( classes, "Generator.class" );
+        FileUtils.fileWrite( generator, "v1" );
+        FileUtils.fileWrite( new File( classes, "messages.properties" ), "v1" );
+        List<File> classpath = Arrays.asList( jar, classes );
+        List<String> jvm = Arrays.asList( "java" );
+        String key = CompilerDaemons.getKey( jvm, new Properties(), classpath );
+        String state = CompilerDaemons.getState( classpath );
+
+        FileUtils.fileWrite( new File( classes, "messages.properties" ), "changed" );
+        Assert.assertEquals( "Only classes of a directory are stamped", state, CompilerDaemons.getState( classpath ) );
+
+        generator.setLastModified( generator.lastModified() + 10000 );
+        String recompiled = CompilerDaemons.getState( classpath );
+        Assert.assertFalse( "A recompiled class needs a new daemon", state.equals( recompiled ) );
+
+        FileUtils.fileWrite( jar, "rebuilt" );
+        Assert.assertFalse( "A rebuilt jar needs a new daemon",
+                            recompiled.equals( CompilerDaemons.getState( classpath ) ) );
+        Assert.assertEquals( "The key doesn't depend on the classpath state", key,
+                             CompilerDaemons.getKey( jvm, new Properties(), classpath ) );
+    }
+
+    @Test
+    public void testExitInterceptionDependsOnTargetJvm() throws Exception {
+        File jdk = folder.newFolder( "jdk" );
+        FileUtils.fileWrite( new File( jdk, "release" ), "JAVA_VERSION=\"21.0.2\"\n" );
+        String java = new File( jdk, "bin/java" ).getPath();
+
+        Assert.assertFalse( CompilerDaemons.isExitInterceptionSupported( Arrays.asList( java, "-Xmx1g" ) ) );
+        Assert.assertTrue( CompilerDaemons.isExitInterceptionSupported(
+            Arrays.asList( java, "-Djava.security.manager=allow" ) ) );
+        Assert.assertFalse( "The last value wins", CompilerDaemons.isExitInterceptionSupported(
+            Arrays.asList( java, "-Djava.security.manager=allow", "-Djava.security.manager=disallow" ) ) );
+
+        FileUtils.fileWrite( new File( jdk, "release" ), "JAVA_VERSION=\"1.8.0_402\"\n" );
+        Assert.assertTrue( CompilerDaemons.isExitInterceptionSupported( Arrays.asList( java ) ) );
+    }
+
+    @Test
+    public void testRetireSuperseded() throws Exception {
+        File directory = folder.newFolder( "daemons" );
+        File home = newHome( directory, "key-current" );
+        File superseded = newHome( directory, "key-previous" );
+        FileUtils.fileWrite( new File( superseded, "slot-0.properties" ), "port=stale" );
+        File otherSession = newHome( directory, "key-previous-0123" );
+        File otherKey = newHome( directory, "other-previous" );
+        File busy = newHome( directory, "key-busy" );
+        RandomAccessFile lockFile = new RandomAccessFile( new File( busy, "slot-0.lock" ), "rw" );
+        FileLock lock = lockFile.getChannel().lock();
+        try
+        {
+            new CompilerDaemons( directory, 1, 100, new SilentLog() ).retireSuperseded( "key", home );
+        }
+        finally
+        {
+            lock.release();
+            lockFile.close();
+        }
+
+        Assert.assertFalse( "Daemons of a previous state are retired", superseded.exists() );
+        Assert.assertTrue( home.isDirectory() );
+        Assert.assertTrue( "Daemons of another build are left alone", otherSession.isDirectory() );
+        Assert.assertTrue( otherKey.isDirectory() );
+        Assert.assertTrue( "Daemons in use are left alone", busy.isDirectory() );
+    }
+
+    private static File newHome( File directory, String name ) throws Exception {
+        File home = new File( directory, name );
+        home.mkdirs();
+        FileUtils.fileWrite( new File( home, "slot-0.lock" ), "" );
+        return home;
+    }
+}
@@ -0,0 +1,97 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ForkTelemetryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSampleProc() throws Exception {
+        ForkTelemetry telemetry = new ForkTelemetry( folder.newFolder( "telemetry" ) );
+        ForkTelemetry.Fork fork = telemetry.start( newJava( "1.8.0_402" ), "com.google.gwt.dev.Compiler",
+                                                   Arrays.asList( "-war", "target/war", "org.example.Hello" ) );
+        ReflectionUtils.setVariableValueInObject( fork, "pid", 4242 );
+        File process = folder.newFolder( "4242" );
+        // the command name holds spaces and parentheses
+        FileUtils.fileWrite( new File( process, "stat" ),
+                             "4242 (java (gwt) main) S 1 4242 4242 0 -1 4194304 1000 0 0 0 250 37 0 0 20 0 42" );
+        FileUtils.fileWrite( new File( process, "status" ), "Name:\tjava\nVmHWM:\t  524288 kB\nVmRSS:\t 262144 kB\n" );
+        fork.sample( process );
+        FileUtils.fileWrite( new File( process, "status" ), "Name:\tjava\nVmHWM:\t  262144 kB\n" );
+        fork.sample( process );
+        fork.end( 0 );
+
+        Assert.assertEquals( "Peak memory of the processes compiling the module", 524288L * 1024,
+                             telemetry.getPeakMemory( "org.example.Hello" ) );
+        Assert.assertEquals( -1, telemetry.getPeakMemory( "org.example.Other" ) );
+        File json = new File( folder.getRoot(), "telemetry.json" );
+        telemetry.write( json );
+        String content = FileUtils.fileRead( json );
+        Assert.assertTrue( content, content.contains( "\"command\": \"Compiler org.example.Hello\"" ) );
+        Assert.assertTrue( content, content.contains( "\"userCpuMillis\": 2500" ) );
+        Assert.assertTrue( content, content.contains( "\"systemCpuMillis\": 370" ) );
+        Assert.assertTrue( content, content.contains( "\"peakRssKb\": 524288" ) );
+        Assert.assertFalse( "No GC log before Java 9", content.contains( "gcPauses" ) );
+    }
+
+    @Test
+    public void testGcPauses() throws Exception {
+        ForkTelemetry telemetry = new ForkTelemetry( folder.newFolder( "telemetry" ) );
+        ForkTelemetry.Fork fork = telemetry.start( newJava( "17.0.10" ), "com.google.gwt.i18n.tools.I18NSync",
+                                                   Collections.<String>emptyList() );
+        String gcLogArg = fork.getJvmArgs().get( 1 );
+        Assert.assertTrue( gcLogArg, gcLogArg.startsWith( "-Xlog:gc:file=" ) );
+        File gcLog = new File( gcLogArg.substring( "-Xlog:gc:file=".length() ) );
+        FileUtils.fileWrite( gcLog, "[0.010s][info][gc] Using G1\n"
+            + "[0.512s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 24M->3M(256M) 4.250ms\n"
+            + "[1.024s][info][gc] GC(1) Pause Full (System.gc()) 30M->12M(256M) 15.750ms\n" );
+        fork.end( 1 );
+
+        Assert.assertFalse( "The GC log is removed", gcLog.exists() );
+        File json = new File( folder.getRoot(), "telemetry.json" );
+        telemetry.write( json );
+        String content = FileUtils.fileRead( json );
+        Assert.assertTrue( content, content.contains( "\"command\": \"I18NSync\"" ) );
+        Assert.assertTrue( content, content.contains( "\"exitStatus\": 1" ) );
+        Assert.assertTrue( content, content.contains( "\"gcPauses\": 2" ) );
+        Assert.assertTrue( content, content.contains( "\"gcPauseMillis\": 20" ) );
+        Assert.assertFalse( "Processes without pid are not sampled", content.contains( "userCpuMillis" ) );
+    }
+
+    private String newJava( String version ) throws Exception {
+        File jdk = folder.newFolder( "jdk-" + version );
+        FileUtils.fileWrite( new File( jdk, "release" ), "JAVA_VERSION=\"" + version + "\"\n" );
+        return new File( jdk, "bin/java" ).getPath();
+    }
+}
@@ -0,0 +1,88 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.mojo.gwt.daemon.ExitInterceptor;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class InProcessLauncherTest {
+
+    @Test
+    public void testExitInterceptionSupport() {
+        Assert.assertTrue( ExitInterceptor.isSupported( 8, null ) );
+        Assert.assertFalse( ExitInterceptor.isSupported( 17, null ) );
+        Assert.assertTrue( ExitInterceptor.isSupported( 17, "allow" ) );
+        Assert.assertFalse( "The security manager is disabled since Java 24", ExitInterceptor.isSupported( 24, "allow" ) );
+        Assert.assertFalse( "Unknown versions are not trusted", ExitInterceptor.isSupported( 0, "allow" ) );
+    }
+
+    @Test
+    public void testOutputRoutedAndStreamsRestored() throws Exception {
+        final List<String> out = new ArrayList<String>();
+        final List<String> err = new ArrayList<String>();
+        JavaCommand cmd = new JavaCommand().setLog( new SilentLog() ).setMainClass( Tool.class.getName() );
+        cmd.addToClasspath( new File( Tool.class.getProtectionDomain().getCodeSource().getLocation().toURI() ) );
+        cmd.setOut( new StreamConsumer() {
+            public void consumeLine( String line ) {
+                out.add( line );
+            }
+        } );
+        cmd.setErr( new StreamConsumer() {
+            public void consumeLine( String line ) {
+                err.add( line );
+            }
+        } );
+        Assume.assumeTrue( InProcessLauncher.supports( cmd ) );
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+
+        try {
+            InProcessLauncher.execute( cmd );
+            Assert.fail( "Expecting the exit status to fail the command" );
+        } catch ( JavaCommandException e ) {
+            Assert.assertTrue( e.getMessage().endsWith( "status 3" ) );
+        }
+        Assert.assertEquals( Arrays.asList( "hello", "world" ), out );
+        Assert.assertEquals( Arrays.asList( "oops" ), err );
+        Assert.assertSame( stdout, System.out );
+        Assert.assertSame( stderr, System.err );
+        Assert.assertNull( "The security manager is removed", System.getSecurityManager() );
+    }
+
+    public static class Tool {
+        public static void main( String[] args ) {
+            System.out.print( "hel" );
+            System.out.println( "lo" );
+            System.out.write( "world\n".getBytes(), 0, 6 );
+            System.err.println( "oops" );
+            System.exit( 3 );
+        }
+    }
+}
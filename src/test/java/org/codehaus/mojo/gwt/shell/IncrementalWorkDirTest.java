@@ -0,0 +1,86 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class IncrementalWorkDirTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDiscardedWhenStampChanges() throws Exception {
+        IncrementalWorkDir workDirs = new IncrementalWorkDir( folder.getRoot(), "2.8.2 -style OBF", 1L << 20, 2,
+                                                              new SilentLog() );
+        File dir = workDirs.prepare( "org.example.Hello" );
+        FileUtils.fileWrite( new File( dir, "unit.cache" ), "data" );
+        workDirs.compiled( "org.example.Hello", System.currentTimeMillis() );
+
+        Assert.assertTrue( "Same stamp keeps the data", new File( workDirs.prepare( "org.example.Hello" ),
+                                                                  "unit.cache" ).isFile() );
+
+        workDirs = new IncrementalWorkDir( folder.getRoot(), "2.8.2 -style PRETTY", 1L << 20, 2, new SilentLog() );
+        dir = workDirs.prepare( "org.example.Hello" );
+        Assert.assertTrue( dir.isDirectory() );
+        Assert.assertFalse( "Changed stamp discards the data", new File( dir, "unit.cache" ).exists() );
+    }
+
+    @Test
+    public void testStaleFilesRemovedAfterGenerations() throws Exception {
+        IncrementalWorkDir workDirs = new IncrementalWorkDir( folder.getRoot(), "stamp", 1L << 20, 2,
+                                                              new SilentLog() );
+        long now = System.currentTimeMillis();
+        File dir = workDirs.prepare( "org.example.Hello" );
+        File stale = new File( dir, "old/stale.cache" );
+        stale.getParentFile().mkdirs();
+        FileUtils.fileWrite( stale, "stale" );
+        stale.setLastModified( now - 60000 );
+        File used = new File( dir, "used.cache" );
+        FileUtils.fileWrite( used, "used" );
+        used.setLastModified( now - 20000 );
+
+        workDirs.compiled( "org.example.Hello", now - 30000 );
+        Assert.assertTrue( "Files are kept until enough compilations are recorded", stale.isFile() );
+
+        workDirs.compiled( "org.example.Hello", now - 10000 );
+        Assert.assertFalse( "Files older than the oldest recorded compilation are removed", stale.exists() );
+        Assert.assertFalse( "Emptied directories are removed", stale.getParentFile().exists() );
+        Assert.assertTrue( used.isFile() );
+    }
+
+    @Test
+    public void testEmptiedWhenTooLarge() throws Exception {
+        IncrementalWorkDir workDirs = new IncrementalWorkDir( folder.getRoot(), "stamp", 10, 2, new SilentLog() );
+        File dir = workDirs.prepare( "org.example.Hello" );
+        FileUtils.fileWrite( new File( dir, "unit.cache" ), "more than ten bytes" );
+
+        workDirs.compiled( "org.example.Hello", System.currentTimeMillis() );
+        Assert.assertFalse( new File( dir, "unit.cache" ).exists() );
+        Assert.assertTrue( "The stamp is still recorded", dir.list().length == 1 );
+    }
+}
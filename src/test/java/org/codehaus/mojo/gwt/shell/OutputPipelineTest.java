@@ -0,0 +1,139 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+
+public class OutputPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOnlyConsoleLosesLinesWhenBufferIsFull() throws Exception {
+        final CountDownLatch logging = new CountDownLatch( 1 );
+        final CountDownLatch resume = new CountDownLatch( 1 );
+        RecordingLog log = new RecordingLog() {
+            @Override
+            public void info( CharSequence content ) {
+                logging.countDown();
+                await( resume );
+                super.info( content );
+            }
+        };
+        File logFile = new File( folder.getRoot(), "compile.log.gz" );
+        OutputPipeline pipeline = new OutputPipeline( log, logFile, 0 );
+        pipeline.getOut().consumeLine( "first" );
+        // the writer thread is now stuck in the Maven log
+        logging.await();
+        for ( int i = 0; i < 8192 + 10; i++ ) {
+            pipeline.getOut().consumeLine( "line " + i );
+        }
+        Assert.assertEquals( 10, pipeline.getDropped() );
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep( 100 );
+                } catch ( InterruptedException e ) {
+                    // resume now
+                }
+                resume.countDown();
+            }
+        }.start();
+        pipeline.getErr().consumeLine( "failure" );
+        pipeline.getOut().consumeLine( "[ERROR] compilation failed" );
+        pipeline.close();
+
+        Assert.assertEquals( "Errors wait for room in the buffer",
+                             Arrays.asList( "failure", "[ERROR] compilation failed" ), log.errors );
+        Assert.assertEquals( 1 + 8192, log.infos.size() );
+        String content = IOUtil.toString( new InputStreamReader( new GZIPInputStream( new FileInputStream( logFile ) ),
+                                                                 "UTF-8" ) );
+        String[] lines = content.split( "\n" );
+        Assert.assertEquals( "Every line is written to the file", 1 + 8192 + 10 + 2, lines.length );
+        Assert.assertEquals( "line " + ( 8192 + 9 ), lines[8192 + 10] );
+        Assert.assertEquals( "[stderr] failure", lines[8192 + 11] );
+    }
+
+    @Test
+    public void testInformationalLinesAreRateLimited() throws Exception {
+        RecordingLog log = new RecordingLog();
+        OutputPipeline pipeline = new OutputPipeline( log, new File( folder.getRoot(), "compile.log.gz" ), 2 );
+        for ( int i = 0; i < 5; i++ ) {
+            pipeline.getOut().consumeLine( "line " + i );
+        }
+        pipeline.getOut().consumeLine( "[WARN] deprecated" );
+        pipeline.close();
+
+        Assert.assertEquals( "line 0", log.infos.get( 0 ) );
+        Assert.assertEquals( "line 1", log.infos.get( 1 ) );
+        Assert.assertEquals( "[3 lines not logged]", log.infos.get( 2 ) );
+        Assert.assertEquals( "Warnings are not limited", Collections.singletonList( "[WARN] deprecated" ), log.warns );
+        Assert.assertEquals( 0, pipeline.getDropped() );
+    }
+
+    private static void await( CountDownLatch latch ) {
+        try {
+            latch.await();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingLog extends SilentLog {
+        final List<String> infos = Collections.synchronizedList( new ArrayList<String>() );
+
+        final List<String> warns = Collections.synchronizedList( new ArrayList<String>() );
+
+        final List<String> errors = Collections.synchronizedList( new ArrayList<String>() );
+
+        @Override
+        public void info( CharSequence content ) {
+            infos.add( content.toString() );
+        }
+
+        @Override
+        public void warn( CharSequence content ) {
+            warns.add( content.toString() );
+        }
+
+        @Override
+        public void error( CharSequence content ) {
+            errors.add( content.toString() );
+        }
+    }
+}
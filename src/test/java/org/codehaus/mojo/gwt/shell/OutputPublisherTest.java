@@ -0,0 +1,92 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class OutputPublisherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPublishOnlyChanges() throws Exception {
+        File source = folder.newFolder( "staging" );
+        File target = folder.newFolder( "war" );
+        FileUtils.fileWrite( new File( source, "same.js" ), "same" );
+        FileUtils.fileWrite( new File( source, "changed.js" ), "new content" );
+        new File( source, "deferredjs" ).mkdirs();
+        FileUtils.fileWrite( new File( source, "deferredjs/1.cache.js" ), "added" );
+        File same = new File( target, "same.js" );
+        FileUtils.fileWrite( same, "same" );
+        same.setLastModified( System.currentTimeMillis() - 60000 );
+        long sameModified = same.lastModified();
+        FileUtils.fileWrite( new File( target, "changed.js" ), "old content" );
+        new File( target, "gone" ).mkdirs();
+        FileUtils.fileWrite( new File( target, "gone/a.js" ), "removed" );
+        FileUtils.fileWrite( new File( target, "gone/b.js" ), "removed" );
+
+        OutputPublisher publisher = new OutputPublisher();
+        publisher.publish( source, target );
+
+        Assert.assertEquals( "Unchanged files keep their timestamp", sameModified, same.lastModified() );
+        Assert.assertEquals( "new content", FileUtils.fileRead( new File( target, "changed.js" ) ) );
+        Assert.assertEquals( "added", FileUtils.fileRead( new File( target, "deferredjs/1.cache.js" ) ) );
+        Assert.assertFalse( new File( target, "gone" ).exists() );
+        Assert.assertFalse( "No temporary file is left", new File( target, ".changed.js.tmp" ).exists() );
+        Assert.assertEquals( 2, publisher.getCopied() );
+        Assert.assertEquals( 2, publisher.getDeleted() );
+        Assert.assertEquals( 1, publisher.getUnchanged() );
+    }
+
+    @Test
+    public void testReplaceFileByDirectory() throws Exception {
+        File source = folder.newFolder( "staging" );
+        File target = folder.newFolder( "war" );
+        new File( source, "hello" ).mkdirs();
+        FileUtils.fileWrite( new File( source, "hello/hello.nocache.js" ), "script" );
+        FileUtils.fileWrite( new File( source, "index.html" ), "page" );
+        FileUtils.fileWrite( new File( target, "hello" ), "file" );
+        new File( target, "index.html" ).mkdirs();
+
+        new OutputPublisher().publish( source, target );
+
+        Assert.assertEquals( "script", FileUtils.fileRead( new File( target, "hello/hello.nocache.js" ) ) );
+        Assert.assertEquals( "page", FileUtils.fileRead( new File( target, "index.html" ) ) );
+    }
+
+    @Test
+    public void testMissingSourceDeletesTarget() throws Exception {
+        File target = folder.newFolder( "war" );
+        FileUtils.fileWrite( new File( target, "hello.nocache.js" ), "script" );
+
+        OutputPublisher publisher = new OutputPublisher();
+        publisher.publish( new File( folder.getRoot(), "missing" ), target );
+
+        Assert.assertFalse( target.exists() );
+        Assert.assertEquals( 1, publisher.getDeleted() );
+    }
+}
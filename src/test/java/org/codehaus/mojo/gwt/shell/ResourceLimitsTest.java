@@ -0,0 +1,71 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class ResourceLimitsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCgroupV2Limits() throws Exception {
+        File cgroup = folder.getRoot();
+        FileUtils.fileWrite( new File( cgroup, "cpu.max" ), "250000 100000\n" );
+        FileUtils.fileWrite( new File( cgroup, "memory.max" ), "4294967296\n" );
+
+        ResourceLimits limits = ResourceLimits.detect( cgroup, 32, 64L << 30 );
+        Assert.assertEquals( 3, limits.getProcessors() );
+        Assert.assertEquals( 4L << 30, limits.getMemory() );
+    }
+
+    @Test
+    public void testCgroupV1Limits() throws Exception {
+        File cgroup = folder.getRoot();
+        new File( cgroup, "cpu" ).mkdirs();
+        new File( cgroup, "memory" ).mkdirs();
+        FileUtils.fileWrite( new File( cgroup, "cpu/cpu.cfs_quota_us" ), "400000" );
+        FileUtils.fileWrite( new File( cgroup, "cpu/cpu.cfs_period_us" ), "100000" );
+        FileUtils.fileWrite( new File( cgroup, "memory/memory.limit_in_bytes" ), "2147483648" );
+
+        ResourceLimits limits = ResourceLimits.detect( cgroup, 32, 64L << 30 );
+        Assert.assertEquals( 4, limits.getProcessors() );
+        Assert.assertEquals( 2L << 30, limits.getMemory() );
+    }
+
+    @Test
+    public void testNoLimits() throws Exception {
+        File cgroup = folder.getRoot();
+        FileUtils.fileWrite( new File( cgroup, "cpu.max" ), "max 100000" );
+        FileUtils.fileWrite( new File( cgroup, "memory.max" ), "max" );
+
+        ResourceLimits limits = ResourceLimits.detect( cgroup, 8, 16L << 30 );
+        Assert.assertEquals( 8, limits.getProcessors() );
+        Assert.assertEquals( 16L << 30, limits.getMemory() );
+    }
+}
@@ -0,0 +1,75 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ResourceReferencesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testClientBundleSources() throws Exception {
+        File file = folder.newFile( "Resources.java" );
+        FileUtils.fileWrite( file, "interface Resources extends ClientBundle {\n"
+            + "  @Source(\"logo.png\") ImageResource logo();\n"
+            + "  @ClientBundle.Source( value = { \"base.css\", \"/org/example/theme.css\" } ) CssResource style();\n"
+            + "  @Deprecated ImageResource icon();\n"
+            + "}\n" );
+
+        Assert.assertEquals( Arrays.asList( "logo.png", "base.css", "/org/example/theme.css" ),
+                             ResourceReferences.find( file ) );
+    }
+
+    @Test
+    public void testUiBinderSources() throws Exception {
+        File file = folder.newFile( "Hello.ui.xml" );
+        FileUtils.fileWrite( file, "<ui:UiBinder xmlns:ui='urn:ui:com.google.gwt.uibinder'>\n"
+            + "  <ui:style src=\"common.css  hello.css\"/>\n"
+            + "  <ui:image field='logo' src='logo.png'/>\n"
+            + "  <ui:data field='doc' src=\"/org/example/doc.pdf\"/>\n"
+            + "  <ui:with field='res' type='org.example.Resources'/>\n"
+            + "</ui:UiBinder>\n" );
+
+        Assert.assertEquals( Arrays.asList( "common.css", "hello.css", "logo.png", "/org/example/doc.pdf" ),
+                             ResourceReferences.find( file ) );
+    }
+
+    @Test
+    public void testAccept() throws Exception {
+        Assert.assertTrue( ResourceReferences.accept( new File( "Hello.java" ) ) );
+        Assert.assertTrue( ResourceReferences.accept( new File( "Hello.ui.xml" ) ) );
+        Assert.assertFalse( ResourceReferences.accept( new File( "Hello.gwt.xml" ) ) );
+
+        File file = folder.newFile( "Plain.java" );
+        FileUtils.fileWrite( file, "class Plain { String source = \"@Source\"; }" );
+        Assert.assertEquals( Collections.emptyList(), ResourceReferences.find( file ) );
+    }
+}
@@ -0,0 +1,77 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShardedCompilationTest {
+
+    private final File workDir = new File( "target/gwt-shards" );
+
+    @Test
+    public void testSplitArgs() {
+        ShardedCompilation compilation = new ShardedCompilation( new SilentLog(), workDir, 2, 3, null, 0, null );
+        List<String> precompileArgs = new ArrayList<String>();
+        List<String> linkArgs = new ArrayList<String>();
+        List<String> stageArgs = compilation.splitArgs(
+            Arrays.asList( "-logLevel", "INFO", "-style", "OBF", "-war", "target/war", "-localWorkers", "4",
+                           "-workDir", "target/other", "-extra", "target/extra", "-strict" ),
+            precompileArgs, linkArgs );
+
+        Assert.assertEquals( Arrays.asList( "-logLevel", "INFO", "-style", "OBF", "-strict" ), precompileArgs );
+        Assert.assertEquals( Arrays.asList( "-war", "target/war", "-extra", "target/extra" ), linkArgs );
+        Assert.assertEquals( Arrays.asList( "-logLevel", "INFO", "-workDir", workDir.getAbsolutePath() ), stageArgs );
+    }
+
+    @Test
+    public void testSplitArgsWithoutValue() {
+        ShardedCompilation compilation = new ShardedCompilation( new SilentLog(), workDir, 2, 3, null, 0, null );
+        List<String> precompileArgs = new ArrayList<String>();
+        List<String> linkArgs = new ArrayList<String>();
+        List<String> stageArgs = compilation.splitArgs( Arrays.asList( "-draftCompile", "-war" ), precompileArgs,
+                                                        linkArgs );
+
+        // a trailing option without its value is left to the compiler to report
+        Assert.assertEquals( Arrays.asList( "-draftCompile", "-war" ), precompileArgs );
+        Assert.assertTrue( linkArgs.isEmpty() );
+        Assert.assertEquals( Arrays.asList( "-workDir", workDir.getAbsolutePath() ), stageArgs );
+    }
+
+    @Test
+    public void testShards() {
+        ShardedCompilation compilation = new ShardedCompilation( new SilentLog(), workDir, 2, 3, null, 0, null );
+        List<List<Integer>> shards = compilation.getShards( 7 );
+
+        Assert.assertEquals( 3, shards.size() );
+        Assert.assertEquals( Arrays.asList( 0, 1, 2 ), shards.get( 0 ) );
+        Assert.assertEquals( Arrays.asList( 3, 4, 5 ), shards.get( 1 ) );
+        Assert.assertEquals( Arrays.asList( 6 ), shards.get( 2 ) );
+
+        compilation = new ShardedCompilation( new SilentLog(), workDir, 2, 0, null, 0, null );
+        Assert.assertEquals( "At least one permutation per shard", 7, compilation.getShards( 7 ).size() );
+    }
+}
@@ -0,0 +1,136 @@
+package org.codehaus.mojo.gwt.shell;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class SlimClasspathTest {
+
+    private static final String PATH = "org/codehaus/mojo/gwt/shell/SlimClasspathTest";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReferences() throws Exception {
+        Set<String> references = SlimClasspath.getReferences( getClassFile( Helper.class ) );
+
+        Assert.assertTrue( "Class constants", references.contains( PATH + "$Helper" ) );
+        Assert.assertTrue( "Field descriptors", references.contains( "java/util/Map" ) );
+        Assert.assertTrue( "Generic signatures", references.contains( "java/util/Deque" ) );
+        Assert.assertTrue( "Array element types", references.contains( PATH + "$Generator" ) );
+        Assert.assertFalse( "Array classes are not classes", references.contains( "[L" + PATH + "$Generator;" ) );
+        Assert.assertTrue( "Not a class file",
+                           SlimClasspath.getReferences( "not a class".getBytes( "UTF-8" ) ).isEmpty() );
+    }
+
+    @Test
+    public void testRemoveClassesCompiledFromSources() throws Exception {
+        File library = folder.newFile( "library.jar" );
+        ZipOutputStream out = new ZipOutputStream( new FileOutputStream( library ) );
+        try {
+            addEntry( out, "org/example/Library.gwt.xml",
+                      ( "<module><generate-with class=\"" + PATH.replace( '/', '.' ) + "$Generator\"/></module>" )
+                          .getBytes( "UTF-8" ) );
+            addEntry( out, PATH + ".java", "// sources of all the classes".getBytes( "UTF-8" ) );
+            for ( Class<?> type : new Class<?>[] { Generator.class, Helper.class, Widget.class } ) {
+                addEntry( out, type.getName().replace( '.', '/' ) + ".class", getClassFile( type ) );
+            }
+        } finally {
+            out.close();
+        }
+        File directory = new File( folder.getRoot(), "slim" );
+        SlimClasspath slimClasspath =
+            new SlimClasspath( directory, Collections.<File>emptyList(), new SilentLog() );
+
+        List<File> classpath = slimClasspath.slim( Arrays.asList( library ) );
+        Assert.assertEquals( 1, classpath.size() );
+        Assert.assertEquals( directory, classpath.get( 0 ).getParentFile() );
+        ZipFile slimmed = new ZipFile( classpath.get( 0 ) );
+        try {
+            Assert.assertNotNull( slimmed.getEntry( "org/example/Library.gwt.xml" ) );
+            Assert.assertNotNull( slimmed.getEntry( PATH + ".java" ) );
+            Assert.assertNotNull( "Generators are kept", slimmed.getEntry( PATH + "$Generator.class" ) );
+            Assert.assertNotNull( "Classes used by generators are kept", slimmed.getEntry( PATH + "$Helper.class" ) );
+            Assert.assertNull( "Classes compiled from sources are removed",
+                               slimmed.getEntry( PATH + "$Widget.class" ) );
+            Assert.assertEquals( "Entries are stored", ZipEntry.STORED,
+                                 slimmed.getEntry( PATH + "$Generator.class" ).getMethod() );
+        } finally {
+            slimmed.close();
+        }
+
+        Assert.assertEquals( "The slimmed classpath is reused", classpath,
+                             new SlimClasspath( directory, Collections.<File>emptyList(), new SilentLog() )
+                                 .slim( Arrays.asList( library ) ) );
+        Assert.assertEquals( "GWT SDK jars are not slimmed", Arrays.asList( library ),
+                             new SlimClasspath( new File( folder.getRoot(), "sdk" ), Arrays.asList( library ),
+                                                new SilentLog() ).slim( Arrays.asList( library ) ) );
+    }
+
+    private static byte[] getClassFile( Class<?> type ) throws Exception {
+        InputStream in = type.getResourceAsStream( type.getName().substring( type.getName().lastIndexOf( '.' ) + 1 )
+            + ".class" );
+        try {
+            return IOUtil.toByteArray( in );
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void addEntry( ZipOutputStream out, String name, byte[] content ) throws Exception {
+        out.putNextEntry( new ZipEntry( name ) );
+        out.write( content );
+        out.closeEntry();
+    }
+
+    static class Generator {
+        Helper helper = new Helper();
+    }
+
+    static class Helper {
+        static final long LONG = 1L << 40;
+        static final double DOUBLE = Math.PI;
+        Map<String, Deque<Generator>> cache;
+        Generator[] generators;
+    }
+
+    static class Widget {
+    }
+}
@@ -0,0 +1,139 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ClasspathResourceIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFirstEntryWins() throws Exception {
+        File classes = folder.newFolder( "classes" );
+        File first = createJar( "first.jar", "com/acme/App.gwt.xml", "first" );
+        File second = createJar( "second.jar", "com/acme/App.gwt.xml", "second" );
+        File resources = folder.newFolder( "resources" );
+        ClasspathResourceIndex index =
+            ClasspathResourceIndex.get( Arrays.asList( classes, first, second, resources ) );
+
+        Assert.assertEquals( first, index.getEntry( "com/acme/App.gwt.xml" ) );
+        Assert.assertEquals( "first", read( index, "com/acme/App.gwt.xml" ) );
+        Assert.assertNull( index.getEntry( "com/acme/Missing.gwt.xml" ) );
+        Assert.assertNull( index.getResourceAsStream( "com/acme/Missing.gwt.xml" ) );
+
+        // directories are checked on each lookup, in classpath order
+        writeFile( resources, "com/acme/App.gwt.xml", "resources" );
+        Assert.assertEquals( first, index.getEntry( "com/acme/App.gwt.xml" ) );
+        writeFile( resources, "com/acme/Other.gwt.xml", "other" );
+        Assert.assertEquals( resources, index.getEntry( "com/acme/Other.gwt.xml" ) );
+        writeFile( classes, "com/acme/App.gwt.xml", "classes" );
+        Assert.assertEquals( classes, index.getEntry( "com/acme/App.gwt.xml" ) );
+        Assert.assertEquals( "classes", read( index, "com/acme/App.gwt.xml" ) );
+    }
+
+    @Test
+    public void testIndexSharedUntilJarChanges() throws Exception {
+        File jar = createJar( "module.jar", "com/acme/App.gwt.xml", "v1" );
+        ClasspathResourceIndex index = ClasspathResourceIndex.get( Arrays.asList( jar ) );
+        Assert.assertSame( index, ClasspathResourceIndex.get( Arrays.asList( jar ) ) );
+
+        long modified = jar.lastModified();
+        createJar( "module.jar", "com/acme/Other.gwt.xml", "v2" );
+        jar.setLastModified( modified + 10000 );
+        ClasspathResourceIndex rebuilt = ClasspathResourceIndex.get( Arrays.asList( jar ) );
+        Assert.assertNotSame( index, rebuilt );
+        Assert.assertNull( rebuilt.getEntry( "com/acme/App.gwt.xml" ) );
+        Assert.assertEquals( "v2", read( rebuilt, "com/acme/Other.gwt.xml" ) );
+        Assert.assertNull( "A stale index does not find resources of a replaced jar",
+                           index.getResourceAsStream( "com/acme/App.gwt.xml" ) );
+    }
+
+    @Test
+    public void testOnlyModuleDescriptorsIndexed() throws Exception {
+        File jar = createJar( "library.jar", "com/acme/client/App.java", "class" );
+        Assert.assertNull( ClasspathResourceIndex.get( Arrays.asList( jar ) ).getEntry( "com/acme/client/App.java" ) );
+    }
+
+    @Test
+    public void testIndexBuiltOnceForConcurrentLookups() throws Exception {
+        final File jar = createJar( "shared.jar", "com/acme/App.gwt.xml", "shared" );
+        final ClasspathResourceIndex[] indexes = new ClasspathResourceIndex[4];
+        Thread[] threads = new Thread[indexes.length];
+        for ( int i = 0; i < threads.length; i++ ) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    indexes[thread] = ClasspathResourceIndex.get( Arrays.asList( jar ) );
+                }
+            };
+            threads[i].start();
+        }
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+        for ( ClasspathResourceIndex index : indexes ) {
+            Assert.assertSame( indexes[0], index );
+        }
+        Assert.assertEquals( jar, indexes[0].getEntry( "com/acme/App.gwt.xml" ) );
+    }
+
+    private File createJar( String name, String resource, String content ) throws Exception {
+        File jar = new File( folder.getRoot(), name );
+        ZipOutputStream out = new ZipOutputStream( new FileOutputStream( jar ) );
+        try {
+            out.putNextEntry( new ZipEntry( resource ) );
+            out.write( content.getBytes( "UTF-8" ) );
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    private static void writeFile( File directory, String name, String content ) throws Exception {
+        File file = new File( directory, name );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file, content );
+    }
+
+    private static String read( ClasspathResourceIndex index, String name ) throws Exception {
+        InputStream in = index.getResourceAsStream( name );
+        try {
+            return IOUtil.toString( in, "UTF-8" );
+        } finally {
+            in.close();
+        }
+    }
+}
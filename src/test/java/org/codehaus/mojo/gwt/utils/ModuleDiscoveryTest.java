@@ -0,0 +1,118 @@
+package org.codehaus.mojo.gwt.utils;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.testing.SilentLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ModuleDiscoveryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFindModules() throws Exception {
+        File sources = folder.newFolder( "java" );
+        File resources = folder.newFolder( "resources" );
+        writeFile( sources, "com/acme/App.gwt.xml" );
+        writeFile( sources, "com/acme/client/App.java" );
+        writeFile( resources, "com/acme/Common.gwt.xml" );
+        writeFile( resources, "com/acme/App.gwt.xml" );
+        new File( sources, "com/acme/Dir.gwt.xml" ).mkdirs();
+
+        List<String> modules =
+            ModuleDiscovery.findModules( Arrays.asList( sources, resources, new File( folder.getRoot(), "missing" ) ),
+                                         Collections.<File>emptyList(), null, new SilentLog() );
+        Assert.assertEquals( Arrays.asList( "com.acme.App", "com.acme.Common" ), modules );
+    }
+
+    @Test
+    public void testFindModulesWithNonIdentifierPath() throws Exception {
+        File sources = folder.newFolder( "java" );
+        writeFile( sources, "com/acme-web/App.gwt.xml" );
+        writeFile( sources, "com/acme/1.0/Legacy.gwt.xml" );
+        writeFile( sources, "META-INF/Resources.gwt.xml" );
+
+        Assert.assertEquals( Arrays.asList( "META-INF.Resources", "com.acme-web.App", "com.acme.1.0.Legacy" ),
+                             find( sources, null ) );
+    }
+
+    @Test
+    public void testBuildDirectorySkipped() throws Exception {
+        File basedir = folder.newFolder( "project" );
+        File target = new File( basedir, "target" );
+        writeFile( basedir, "com/acme/App.gwt.xml" );
+        writeFile( target, "generated-sources/gwt/com/acme/Generated.gwt.xml" );
+        writeFile( target, "classes/com/acme/App.gwt.xml" );
+
+        Assert.assertEquals( Arrays.asList( "com.acme.App" ),
+                             ModuleDiscovery.findModules( Arrays.asList( basedir ), Arrays.asList( target ), null,
+                                                          new SilentLog() ) );
+    }
+
+    @Test
+    public void testIndexReusedUntilDirectoryChanges() throws Exception {
+        File sources = folder.newFolder( "java" );
+        File index = new File( folder.getRoot(), "target/gwt-modules.index" );
+        writeFile( sources, "com/acme/App.gwt.xml" );
+        long past = System.currentTimeMillis() - 60000;
+        setLastModified( sources, past );
+
+        Assert.assertEquals( Arrays.asList( "com.acme.App" ), find( sources, index ) );
+        Assert.assertTrue( index.isFile() );
+
+        // a file added without changing the directory modification time is not seen, as the index is used
+        writeFile( sources, "com/acme/Other.gwt.xml" );
+        setLastModified( sources, past );
+        Assert.assertEquals( Arrays.asList( "com.acme.App" ), find( sources, index ) );
+
+        new File( sources, "com/acme" ).setLastModified( past + 10000 );
+        Assert.assertEquals( Arrays.asList( "com.acme.App", "com.acme.Other" ), find( sources, index ) );
+    }
+
+    private static List<String> find( File root, File index ) {
+        return ModuleDiscovery.findModules( Arrays.asList( root ), Collections.<File>emptyList(), index,
+                                            new SilentLog() );
+    }
+
+    private static void writeFile( File directory, String name ) throws Exception {
+        File file = new File( directory, name );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file, "<module/>" );
+    }
+
+    private static void setLastModified( File directory, long time ) {
+        for ( File file : directory.listFiles() ) {
+            if ( file.isDirectory() ) {
+                setLastModified( file, time );
+            }
+        }
+        directory.setLastModified( time );
+    }
+}